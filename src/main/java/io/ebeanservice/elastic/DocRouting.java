@@ -0,0 +1,45 @@
+package io.ebeanservice.elastic;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the property used as the ElasticSearch routing key of a doc store mapped bean.
+ * <pre>{@code
+ *
+ *   @DocStore
+ *   @DocRouting("customer.id")
+ *   @Entity
+ *   public class Order { ...
+ *
+ * }</pre>
+ * <p>
+ * Documents are indexed and updated with the routing value of the property such that all the
+ * documents of a customer (or tenant) are on one shard. Queries with a where clause that pins
+ * the property using eq or in are sent with the routing and search only the matching shards.
+ * </p>
+ * <p>
+ * The index mapping has routing required. Deleting a bean (with the routing property loaded)
+ * deletes the document with the routing value of the bean. Deletes where only the id is known
+ * use delete by query (after the bulk request, refreshed).
+ * </p>
+ * <p>
+ * findById and findByIds use get / multi get with the routing value when the query pins a single
+ * routing value (e.g. <code>where().eq("customer.id", 7).setId(42)</code>) and are realtime as per
+ * types without routing. Otherwise they use an ids query across the shards (bypassing the query
+ * result cache) which is NOT realtime, documents are found once the index has refreshed.
+ * </p>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface DocRouting {
+
+  /**
+   * The property (or path such as "customer.id") holding the routing value.
+   */
+  String value();
+}
@@ -1,9 +1,11 @@
 package io.ebeanservice.elastic;
 
+import io.ebean.FetchPath;
 import io.ebean.bean.EntityBean;
 import io.ebean.docstore.DocUpdateContext;
 import io.ebeaninternal.server.core.PersistRequestBean;
 import io.ebeaninternal.server.deploy.BeanDescriptor;
+import io.ebeaninternal.server.deploy.BeanProperty;
 import io.ebeaninternal.server.deploy.meta.DeployBeanDescriptor;
 import io.ebeaninternal.server.json.WriteJson;
 import io.ebeanservice.docstore.api.DocStoreUpdateContext;
@@ -18,15 +20,40 @@ import java.io.IOException;
  */
 public class ElasticDocStoreBeanAdapter<T> extends DocStoreBeanBaseAdapter<T> {
 
+  /**
+   * The property holding the routing value (null when routing is not used).
+   */
+  private final String routingProperty;
+
   public ElasticDocStoreBeanAdapter(BeanDescriptor<T> desc, DeployBeanDescriptor<T> deploy) {
     super(desc, deploy);
+    DocRouting routing = deploy.getBeanType().getAnnotation(DocRouting.class);
+    this.routingProperty = (routing == null) ? null : routing.value();
   }
 
   @Override
   public void deleteById(Object idValue, DocUpdateContext docTxn) throws IOException {
     BulkBuffer txn = asElasticBulkUpdate(docTxn);
-    JsonGenerator gen = txn.gen();
-    writeBulkHeader(gen, idValue, "delete");
+    if (routingProperty != null) {
+      // routing value is not known so delete by query across the shards
+      txn.deleteByQuery(indexName, idValue);
+    } else {
+      writeBulkHeader(txn, idValue, "delete", null);
+    }
+  }
+
+  /**
+   * Delete the document of the deleted bean with the routing value of the bean.
+   * <p>
+   * When the routing property of the bean is not loaded this falls back to {@link #deleteById(Object, DocUpdateContext)}.
+   * </p>
+   */
+  public void delete(Object idValue, T bean, DocUpdateContext docTxn) throws IOException {
+    if (routingProperty != null && !routingLoaded(bean)) {
+      deleteById(idValue, docTxn);
+    } else {
+      writeBulkHeader(asElasticBulkUpdate(docTxn), idValue, "delete", routing(bean));
+    }
   }
 
   @Override
@@ -38,7 +65,7 @@ public class ElasticDocStoreBeanAdapter<T> extends DocStoreBeanBaseAdapter<T> {
   public void index(Object idValue, T entityBean, DocUpdateContext docTxn) throws IOException {
     BulkBuffer txn = asElasticBulkUpdate(docTxn);
     JsonGenerator gen = txn.gen();
-    writeBulkHeader(gen, idValue, "index");
+    writeBulkHeader(txn, idValue, "index", routing(entityBean));
 
     // use the pathProperties for 'index' requests
     WriteJson writeJson = txn.createWriteJson(server, gen, docStructure.doc());
@@ -51,7 +78,7 @@ public class ElasticDocStoreBeanAdapter<T> extends DocStoreBeanBaseAdapter<T> {
 
     BulkBuffer txn = asElasticBulkUpdate(docTxn);
     JsonGenerator gen = txn.gen();
-    writeBulkHeader(gen, idValue, "update");
+    writeBulkHeader(txn, idValue, "update", routing(persistRequest.bean()));
 
     gen.writeStartObject();
     gen.writeFieldName("doc");
@@ -66,11 +93,21 @@ public class ElasticDocStoreBeanAdapter<T> extends DocStoreBeanBaseAdapter<T> {
     return (BulkBuffer)docTxn;
   }
 
+  /**
+   * Update the embedded document of the document with the given id.
+   * <p>
+   * Not supported for routed types as the routing value is not known from the id alone, use
+   * {@link #updateEmbedded(Object, String, Object, FetchPath, DocUpdateContext)} with the bean instead.
+   * </p>
+   */
   @Override
   public void updateEmbedded(Object idValue, String embeddedProperty, String embeddedRawContent, DocUpdateContext docTxn) throws IOException {
+    if (routingProperty != null) {
+      throw new IllegalStateException("updateEmbedded by id is not supported for " + desc.fullName() + " with routing on " + routingProperty);
+    }
     BulkBuffer txn = asElasticBulkUpdate(docTxn);
     JsonGenerator gen = txn.gen();
-    writeBulkHeader(gen, idValue, "update");
+    writeBulkHeader(txn, idValue, "update", null);
     gen.writeStartObject();
     gen.writeFieldName("doc");
     gen.writeStartObject();
@@ -82,7 +119,46 @@ public class ElasticDocStoreBeanAdapter<T> extends DocStoreBeanBaseAdapter<T> {
     gen.writeRaw("\n");
   }
 
-  private void writeBulkHeader(JsonGenerator gen, Object idValue, String event) throws IOException {
+  /**
+   * Update the embedded document of the bean writing the embedded value directly to the bulk buffer.
+   */
+  public void updateEmbedded(T bean, String embeddedProperty, Object embeddedValue, FetchPath embeddedDoc, DocUpdateContext docTxn) throws IOException {
+    BulkBuffer txn = asElasticBulkUpdate(docTxn);
+    JsonGenerator gen = txn.gen();
+    writeBulkHeader(txn, desc.id(bean), "update", routing(bean));
+    gen.writeStartObject();
+    gen.writeFieldName("doc");
+    gen.writeStartObject();
+    gen.writeFieldName(embeddedProperty);
+    server.json().toJson(embeddedValue, gen, embeddedDoc);
+    gen.writeEndObject();
+    gen.writeEndObject();
+    gen.writeRaw("\n");
+  }
+
+  /**
+   * Return the routing value of the bean (null when routing is not used).
+   */
+  private Object routing(T bean) {
+    if (routingProperty == null) {
+      return null;
+    }
+    return desc.expressionPath(routingProperty).pathGet(bean);
+  }
+
+  /**
+   * Return true if the (first property of the) routing path is loaded such that reading it does not lazy load.
+   */
+  private boolean routingLoaded(T bean) {
+    int dot = routingProperty.indexOf('.');
+    String name = (dot == -1) ? routingProperty : routingProperty.substring(0, dot);
+    BeanProperty property = desc.property(name);
+    return property != null && ((EntityBean) bean)._ebean_getIntercept().isLoadedProperty(property.propertyIndex());
+  }
+
+  private void writeBulkHeader(BulkBuffer txn, Object idValue, String event, Object routing) throws IOException {
+    txn.written(indexName, idValue);
+    JsonGenerator gen = txn.gen();
     gen.writeStartObject();
     gen.writeFieldName(event);
     gen.writeStartObject();
@@ -91,6 +167,9 @@ public class ElasticDocStoreBeanAdapter<T> extends DocStoreBeanBaseAdapter<T> {
       gen.writeStringField("_id", idValue.toString());
     }
     gen.writeStringField("_index", indexName);
+    if (routing != null) {
+      gen.writeStringField("routing", routing.toString());
+    }
     gen.writeEndObject();
     gen.writeEndObject();
     gen.writeRaw("\n");
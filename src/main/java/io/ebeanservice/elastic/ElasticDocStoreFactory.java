@@ -12,8 +12,13 @@ import io.ebeanservice.docstore.api.DocStoreBeanAdapter;
 import io.ebeanservice.docstore.api.DocStoreFactory;
 import io.ebeanservice.docstore.api.DocStoreIntegration;
 import io.ebeanservice.docstore.api.DocStoreUpdateProcessor;
+import io.ebeanservice.elastic.bulk.BulkListenerList;
+import io.ebeanservice.elastic.query.DocumentCache;
+import io.ebeanservice.elastic.query.QueryResultCache;
 import io.ebeanservice.elastic.support.BaseHttpMessageSender;
+import io.ebeanservice.elastic.support.BaseIndexQueueReader;
 import io.ebeanservice.elastic.support.BaseIndexQueueWriter;
+import io.ebeanservice.elastic.support.ElasticConfig;
 import io.ebeanservice.elastic.support.IndexMessageSender;
 import io.ebeanservice.elastic.support.IndexQueueWriter;
 
@@ -22,6 +27,8 @@ import io.ebeanservice.elastic.support.IndexQueueWriter;
  */
 public class ElasticDocStoreFactory implements DocStoreFactory {
 
+  private static final String QUEUE_TABLE = "eb_elastic_queue";
+
   @Override
   public <T> DocStoreBeanAdapter<T> createAdapter(BeanDescriptor<T> desc, DeployBeanDescriptor<T> deploy) {
     return new ElasticDocStoreBeanAdapter<>(desc, deploy);
@@ -33,14 +40,33 @@ public class ElasticDocStoreFactory implements DocStoreFactory {
     DatabaseConfig config = server.config();
     Object objectMapper = config.getObjectMapper();
     DocStoreConfig docStoreConfig = config.getDocStoreConfig();
+    ElasticConfig elasticConfig = new ElasticConfig();
+    elasticConfig.loadSettings(config.getProperties());
 
     JsonFactory jsonFactory = new JsonFactory();
-    IndexQueueWriter indexQueueWriter = new BaseIndexQueueWriter(server, "eb_elastic_queue");
+    IndexQueueWriter indexQueueWriter = new BaseIndexQueueWriter(server, QUEUE_TABLE, elasticConfig.getQueueBuckets());
     IndexMessageSender messageSender = new BaseHttpMessageSender(docStoreConfig);
 
-    ElasticUpdateProcessor updateProcessor = new ElasticUpdateProcessor(server, indexQueueWriter, jsonFactory, objectMapper, messageSender, docStoreConfig.getBulkBatchSize());
-    ElasticDocumentStore docStore = new ElasticDocumentStore(server, updateProcessor, messageSender, jsonFactory);
-    return new Components(updateProcessor, docStore);
+    QueryResultCache queryCache = null;
+    if (elasticConfig.getQueryCacheMaxEntries() > 0) {
+      queryCache = new QueryResultCache(elasticConfig.getQueryCacheMaxEntries(), elasticConfig.getQueryCacheTtlMillis(),
+        elasticConfig.getQueryCacheGraceMillis());
+    }
+
+    DocumentCache documentCache = null;
+    if (elasticConfig.getNearCacheMaxEntries() > 0) {
+      documentCache = new DocumentCache(elasticConfig.getNearCacheMaxEntries(), elasticConfig.getNearCacheMaxBytes(),
+        elasticConfig.getNearCacheTtlMillis(), elasticConfig.getNearCacheIndexes());
+    }
+
+    ElasticUpdateProcessor updateProcessor = new ElasticUpdateProcessor(server, indexQueueWriter, jsonFactory, objectMapper, messageSender,
+      docStoreConfig.getBulkBatchSize(), BulkListenerList.of(queryCache, documentCache),
+      elasticConfig.getReindexChunkSize(), elasticConfig.getReindexParallelism());
+    BaseIndexQueueReader queueReader = new BaseIndexQueueReader(server, updateProcessor, QUEUE_TABLE,
+      elasticConfig.getQueueBatchSize(), elasticConfig.getQueueDrainMillis(),
+      elasticConfig.getQueueBuckets(), elasticConfig.getQueueLeaseMillis(), elasticConfig.getQueueClaimTimeoutMillis());
+    ElasticDocumentStore docStore = new ElasticDocumentStore(server, updateProcessor, messageSender, jsonFactory, elasticConfig, queryCache, documentCache);
+    return new Components(updateProcessor, docStore, queueReader);
   }
 
 
@@ -48,10 +74,12 @@ public class ElasticDocStoreFactory implements DocStoreFactory {
 
     final ElasticUpdateProcessor updateProcessor;
     final ElasticDocumentStore documentStore;
+    final BaseIndexQueueReader queueReader;
 
-    Components(ElasticUpdateProcessor updateProcessor, ElasticDocumentStore documentStore) {
+    Components(ElasticUpdateProcessor updateProcessor, ElasticDocumentStore documentStore, BaseIndexQueueReader queueReader) {
       this.updateProcessor = updateProcessor;
       this.documentStore = documentStore;
+      this.queueReader = queueReader;
     }
 
     @Override
@@ -74,12 +102,13 @@ public class ElasticDocStoreFactory implements DocStoreFactory {
       if (online) {
         updateProcessor.onStartup();
         documentStore.onStartup();
+        queueReader.onStartup();
       }
     }
 
     @Override
     public void shutdown() {
-
+      queueReader.shutdown();
     }
   }
 }
@@ -10,12 +10,28 @@ import io.ebean.plugin.BeanType;
 import io.ebean.plugin.SpiServer;
 import io.ebeaninternal.api.SpiQuery;
 import io.ebeanservice.docstore.api.DocStoreQueryUpdate;
+import io.ebeanservice.elastic.aggregation.Aggregation;
+import io.ebeanservice.elastic.aggregation.AggregationResult;
 import io.ebeanservice.elastic.bulk.BulkUpdate;
 import io.ebeanservice.elastic.index.EIndexService;
+import io.ebeanservice.elastic.query.DocumentCache;
 import io.ebeanservice.elastic.query.EQueryService;
+import io.ebeanservice.elastic.query.QueryResultCache;
+import io.ebeanservice.elastic.query.SearchHints;
+import io.ebeanservice.elastic.query.SingleFlight;
+import io.ebeanservice.elastic.querywriter.Collapse;
+import io.ebeanservice.elastic.search.CollapsedList;
+import io.ebeanservice.elastic.search.HitsPagedList;
+import io.ebeanservice.elastic.search.rawsource.ExportFormat;
+import io.ebeanservice.elastic.support.ElasticConfig;
 import io.ebeanservice.elastic.support.IndexMessageSender;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -38,10 +54,17 @@ public class ElasticDocumentStore implements DocumentStore {
 
   private final EIndexService indexService;
 
-  ElasticDocumentStore(SpiServer server, ElasticUpdateProcessor updateProcessor, IndexMessageSender sender, JsonFactory jsonFactory) {
+  private final QueryResultCache queryCache;
+
+  private final DocumentCache documentCache;
+
+  ElasticDocumentStore(SpiServer server, ElasticUpdateProcessor updateProcessor, IndexMessageSender sender, JsonFactory jsonFactory,
+                       ElasticConfig config, QueryResultCache queryCache, DocumentCache documentCache) {
     this.server = server;
     this.updateProcessor = updateProcessor;
-    this.queryService = new EQueryService(server, jsonFactory, sender);
+    this.queryCache = queryCache;
+    this.documentCache = documentCache;
+    this.queryService = new EQueryService(server, jsonFactory, sender, config, queryCache, documentCache);
     this.indexService = new EIndexService(server, jsonFactory, sender);
   }
 
@@ -178,6 +201,42 @@ public class ElasticDocumentStore implements DocumentStore {
     queryService.findEachWhile(indexName, rawQuery, consumer);
   }
 
+  /**
+   * Export the _source of all the hits of the raw query to the output stream (scrolling all the hits).
+   * <p>
+   * The _source of each hit is copied token by token from the response to the output with
+   * no per document object model. The output stream is flushed but not closed.
+   * </p>
+   * <pre>{@code
+   *
+   *   long count = documentStore.export("product", rawQuery, response.getOutputStream(), ExportFormat.NDJSON);
+   *
+   * }</pre>
+   *
+   * @return The number of documents exported
+   */
+  public long export(String indexName, String rawQuery, OutputStream out, ExportFormat format) {
+    return queryService.export(indexName, rawQuery, out, format);
+  }
+
+  /**
+   * Export the _source of all the hits of the query to the output stream (scrolling all the hits).
+   *
+   * @return The number of documents exported
+   */
+  public <T> long export(Query<T> query, OutputStream out, ExportFormat format) {
+    return queryService.export((SpiQuery<T>) query, out, format);
+  }
+
+  /**
+   * Export the _source of all the hits of the query to the channel (scrolling all the hits).
+   *
+   * @return The number of documents exported
+   */
+  public <T> long export(Query<T> query, WritableByteChannel channel, ExportFormat format) {
+    return queryService.export((SpiQuery<T>) query, Channels.newOutputStream(channel), format);
+  }
+
   @Override
   public <T> List<T> findList(DocQueryContext<T> request) {
     return queryService.findList(request);
@@ -193,6 +252,215 @@ public class ElasticDocumentStore implements DocumentStore {
     return queryService.findById(request);
   }
 
+  /**
+   * Return the statistics of the query result cache (null when the query result cache is not used).
+   */
+  public QueryResultCache.Statistics queryCacheStatistics() {
+    return queryCache == null ? null : queryCache.statistics();
+  }
+
+  /**
+   * Return the statistics of the findById near cache (null when the near cache is not used).
+   */
+  public QueryResultCache.Statistics nearCacheStatistics() {
+    return documentCache == null ? null : documentCache.statistics();
+  }
+
+  /**
+   * Return the statistics of coalesced identical concurrent requests (null when requests are not coalesced).
+   */
+  public SingleFlight.Statistics coalesceStatistics() {
+    return queryService.coalesceStatistics();
+  }
+
+  /**
+   * Invalidate the document in the findById near cache.
+   * <p>
+   * Use this when the document has been changed by another node (e.g. from a change notification).
+   * </p>
+   */
+  public void invalidateNearCache(String indexName, Object id) {
+    if (documentCache != null) {
+      documentCache.invalidate(indexName, id.toString());
+    }
+  }
+
+  /**
+   * Invalidate all the documents of the index in the findById near cache.
+   */
+  public void invalidateNearCache(String indexName) {
+    if (documentCache != null) {
+      documentCache.invalidateAll(indexName);
+    }
+  }
+
+  /**
+   * Execute the queries as a single multi search (_msearch) request returning the results of each query in order.
+   * <pre>{@code
+   *
+   *   List<List<?>> results = documentStore.findListBatch(Arrays.asList(ordersQuery, productsQuery));
+   *   List<Order> orders = (List<Order>) results.get(0);
+   *
+   * }</pre>
+   */
+  public List<List<?>> findListBatch(List<? extends Query<?>> queries) {
+    return queryService.findListBatch(queries);
+  }
+
+  /**
+   * Execute the query with the given search hints (request_cache, preference etc).
+   * <p>
+   * The hints override the default search hints of the index set via ElasticConfig.
+   * </p>
+   * <pre>{@code
+   *
+   *   // use the same shard copies for the searches of the user session
+   *   List<Order> orders = documentStore.findList(query, SearchHints.create().preference(sessionId));
+   *
+   * }</pre>
+   */
+  public <T> List<T> findList(Query<T> query, SearchHints hints) {
+    return queryService.findList((SpiQuery<T>) query, hints);
+  }
+
+  /**
+   * Execute the query reading the _source of the hits directly into DTOs (or records).
+   * <p>
+   * The _source is mapped using Jackson with no entity beans, persistence context or lazy
+   * loading involved. When the query has no select clause the _source is filtered to the
+   * properties of the DTO. The document id is set on an "id" property when the DTO has one.
+   * </p>
+   * <pre>{@code
+   *
+   *   List<OrderSummary> summaries = documentStore.findDto(query, OrderSummary.class);
+   *
+   * }</pre>
+   */
+  public <T, D> List<D> findDto(Query<T> query, Class<D> dtoType) {
+    return queryService.findDto((SpiQuery<T>) query, dtoType);
+  }
+
+  /**
+   * Return the beans for the given ids using a single multi get (_mget) request.
+   * <p>
+   * The select and fetch properties of the query are used to filter the _source. Beans are
+   * returned in the order of the ids with ids not found in the index omitted.
+   * </p>
+   * <pre>{@code
+   *
+   *   List<Customer> customers = documentStore.findByIds(DB.find(Customer.class).select("name"), ids);
+   *
+   * }</pre>
+   */
+  public <T> List<T> findByIds(Query<T> query, Collection<?> ids) {
+    return queryService.findByIds((SpiQuery<T>) query, ids);
+  }
+
+  /**
+   * Return the page of the query after the cursor using search_after (rather than from/size).
+   * <p>
+   * The query must have maxRows set with firstRow ignored. The pages are read from a point in time
+   * (kept alive for a minute between pages) with a tiebreaker sort on _shard_doc added to the orderBy
+   * of the query. Pass the next cursor of a page to fetch the following page with the next cursor
+   * being null on the last page.
+   * </p>
+   * <pre>{@code
+   *
+   *   HitsPagedList<Order> page = documentStore.findPagedList(query.orderBy("orderDate").setMaxRows(50), null);
+   *   ...
+   *   HitsPagedList<Order> nextPage = documentStore.findPagedList(query, page.getNextCursor());
+   *
+   * }</pre>
+   *
+   * @param cursor The next cursor of the prior page (null for the first page)
+   */
+  public <T> HitsPagedList<T> findPagedList(Query<T> query, String cursor) {
+    return queryService.findPagedList((SpiQuery<T>) query, cursor);
+  }
+
+  /**
+   * Return the top hit per value of the collapse property (field collapsing).
+   * <p>
+   * The property must be a keyword or numeric property. The maxRows of the query is the
+   * number of collapsed values returned and inner hits are returned as raw documents.
+   * </p>
+   * <pre>{@code
+   *
+   *   CollapsedList<Order> orders = documentStore.findCollapsed(query, Collapse.on("customer.id").innerHits(3));
+   *
+   * }</pre>
+   */
+  public <T> CollapsedList<T> findCollapsed(Query<T> query, Collapse collapse) {
+    return queryService.findCollapsed((SpiQuery<T>) query, collapse);
+  }
+
+  /**
+   * Return the count of documents matching the query (using the _count API).
+   */
+  public <T> int findCount(Query<T> query) {
+    return queryService.findCount((SpiQuery<T>) query);
+  }
+
+  /**
+   * Return the count of documents matching the query with the given search hints (preference).
+   */
+  public <T> int findCount(Query<T> query, SearchHints hints) {
+    return queryService.findCount((SpiQuery<T>) query, hints);
+  }
+
+  /**
+   * Return the ids of the documents matching the query (fetching no _source).
+   */
+  public <A, T> List<A> findIds(Query<T> query) {
+    return queryService.findIds((SpiQuery<T>) query);
+  }
+
+  /**
+   * Return the values of the single selected property of the documents matching the query.
+   * <p>
+   * The values are read using doc values or when the query is distinct using a composite aggregation.
+   * </p>
+   */
+  public <A, T> List<A> findSingleAttributeList(Query<T> query) {
+    return queryService.findSingleAttributeList((SpiQuery<T>) query);
+  }
+
+  /**
+   * Execute the aggregations for the documents matching the query returning the results by aggregation name.
+   * <pre>{@code
+   *
+   *   Map<String, AggregationResult> results = documentStore.aggregate(query,
+   *     Aggregation.terms("byStatus", "status"),
+   *     Aggregation.cardinality("customers", "customer.id"));
+   *
+   * }</pre>
+   */
+  public <T> Map<String, AggregationResult> aggregate(Query<T> query, Aggregation... aggregations) {
+    return queryService.aggregate((SpiQuery<T>) query, null, Arrays.asList(aggregations));
+  }
+
+  /**
+   * Execute the aggregations for the query with the given search hints.
+   * <pre>{@code
+   *
+   *   // repeated dashboard aggregations served from the shard request cache
+   *   Map<String, AggregationResult> results = documentStore.aggregate(query,
+   *     SearchHints.create().requestCache(true),
+   *     Aggregation.terms("byStatus", "status"));
+   *
+   * }</pre>
+   */
+  public <T> Map<String, AggregationResult> aggregate(Query<T> query, SearchHints hints, Aggregation... aggregations) {
+    return queryService.aggregate((SpiQuery<T>) query, hints, Arrays.asList(aggregations));
+  }
+
+  /**
+   * Execute the composite aggregation processing all the buckets (paging using the after key).
+   */
+  public <T> void aggregateEach(Query<T> query, Aggregation composite, Consumer<AggregationResult.Bucket> consumer) {
+    queryService.aggregateEach((SpiQuery<T>) query, composite, consumer);
+  }
+
   void onStartup() {
 
     try {
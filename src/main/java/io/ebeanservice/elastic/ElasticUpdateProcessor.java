@@ -3,10 +3,16 @@ package io.ebeanservice.elastic;
 import com.fasterxml.jackson.core.JsonFactory;
 import io.avaje.applog.AppLog;
 import io.ebean.DocStoreQueueEntry;
+import io.ebean.Transaction;
+import io.ebean.TransactionCallbackAdapter;
 import io.ebean.config.JsonConfig;
 import io.ebean.plugin.BeanType;
 import io.ebean.plugin.SpiServer;
+import io.ebeaninternal.server.core.PersistRequest;
+import io.ebeaninternal.server.core.PersistRequestBean;
 import io.ebeanservice.docstore.api.*;
+import io.ebeanservice.elastic.bulk.BulkBuffer;
+import io.ebeanservice.elastic.bulk.BulkListener;
 import io.ebeanservice.elastic.bulk.BulkSender;
 import io.ebeanservice.elastic.bulk.BulkTransaction;
 import io.ebeanservice.elastic.bulk.BulkUpdate;
@@ -37,21 +43,33 @@ public class ElasticUpdateProcessor implements DocStoreUpdateProcessor {
 
   private final int defaultBatchSize;
 
+  private final int reindexChunkSize;
+
+  private final int reindexParallelism;
+
   private final BulkSender bulkSender;
 
   public ElasticUpdateProcessor(SpiServer server, IndexQueueWriter queueWriter, JsonFactory jsonFactory,
-                                Object defaultObjectMapper, IndexMessageSender messageSender, int defaultBatchSize) {
+                                Object defaultObjectMapper, IndexMessageSender messageSender, int defaultBatchSize, BulkListener bulkListener,
+                                int reindexChunkSize, int reindexParallelism) {
 
     this.server = server;
     this.queueWriter = queueWriter;
     this.defaultBatchSize = defaultBatchSize;
-    this.bulkSender = new BulkSender(jsonFactory, JsonConfig.Include.NON_EMPTY, defaultObjectMapper, messageSender);
+    this.reindexChunkSize = reindexChunkSize;
+    this.reindexParallelism = reindexParallelism;
+    this.bulkSender = new BulkSender(jsonFactory, JsonConfig.Include.NON_EMPTY, defaultObjectMapper, messageSender, bulkListener);
   }
 
   @Override
   public DocStoreTransaction createTransaction(int batchSize) {
     try {
-      return new BulkTransaction(createBulkUpdate(batchSize));
+      BulkTransaction bulkTransaction = new BulkTransaction(createBulkUpdate(batchSize));
+      Transaction transaction = server.currentTransaction();
+      if (transaction != null && transaction.isActive()) {
+        transaction.register(new QueueOnPreCommit(transaction, bulkTransaction));
+      }
+      return bulkTransaction;
     } catch (IOException e) {
       throw new PersistenceException("Error creating bulk transaction", e);
     }
@@ -60,16 +78,42 @@ public class ElasticUpdateProcessor implements DocStoreUpdateProcessor {
   @Override
   public void commit(DocStoreTransaction docStoreTxn) {
     docStoreTxn.flush();
-    queue(docStoreTxn.queue());
+    boolean written = docStoreTxn instanceof BulkTransaction && ((BulkTransaction) docStoreTxn).isQueueWritten();
+    queue(docStoreTxn.queue(), written);
+  }
+
+  /**
+   * Inserts the queue entries in the committing transaction such that they commit (or roll back) with it.
+   */
+  private class QueueOnPreCommit extends TransactionCallbackAdapter {
+
+    private final Transaction transaction;
+
+    private final BulkTransaction bulkTransaction;
+
+    QueueOnPreCommit(Transaction transaction, BulkTransaction bulkTransaction) {
+      this.transaction = transaction;
+      this.bulkTransaction = bulkTransaction;
+    }
+
+    @Override
+    public void preCommit() {
+      queueWriter.queue(transaction, bulkTransaction.queue().queueEntries());
+      bulkTransaction.setQueueWritten();
+    }
   }
 
-  private void queue(final DocStoreUpdates changesToQueue) {
+  private void queue(final DocStoreUpdates changesToQueue, boolean written) {
     if (changesToQueue != null) {
+      if (!written) {
+        // not written in the committing transaction so write them before commit returns
+        sendQueueEvents(changesToQueue);
+      }
       server.backgroundExecutor().execute(() -> {
         try {
           logger.log(DEBUG, "queue wait for changes...");
           Thread.sleep(1000);
-          process(changesToQueue, 0);
+          processUpdates(changesToQueue, 0);
         } catch (Exception e) {
           logger.log(ERROR, "Error processing queued changes ", e);
         }
@@ -108,18 +152,7 @@ public class ElasticUpdateProcessor implements DocStoreUpdateProcessor {
   public void process(DocStoreUpdates updates, int batchSize) {
 
     try {
-      BulkUpdate txn = createBulkUpdate(batchSize);
-
-      for (DocStoreUpdate persistEvent : updates.persistEvents()) {
-        persistEvent.docStoreUpdate(txn.obtain());
-      }
-      for (DocStoreUpdate deleteEvent : updates.deleteEvents()) {
-        deleteEvent.docStoreUpdate(txn.obtain());
-      }
-
-      processQueue(txn, updates.nestedEvents());
-      txn.flush();
-
+      processUpdates(updates, batchSize);
       sendQueueEvents(updates);
 
     } catch (IOException e) {
@@ -128,6 +161,43 @@ public class ElasticUpdateProcessor implements DocStoreUpdateProcessor {
     }
   }
 
+  /**
+   * Send the persist, delete and nested updates via the bulk API.
+   */
+  private void processUpdates(DocStoreUpdates updates, int batchSize) throws IOException {
+    BulkUpdate txn = createBulkUpdate(batchSize);
+
+    for (DocStoreUpdate persistEvent : updates.persistEvents()) {
+      send(persistEvent, txn.obtain());
+    }
+    for (DocStoreUpdate deleteEvent : updates.deleteEvents()) {
+      send(deleteEvent, txn.obtain());
+    }
+
+    processQueue(txn, updates.nestedEvents());
+    txn.flush();
+  }
+
+  /**
+   * Send the event with deletes of beans using the bean (and hence its routing value).
+   */
+  private void send(DocStoreUpdate event, BulkBuffer buffer) throws IOException {
+    if (event instanceof PersistRequestBean && ((PersistRequestBean<?>) event).type() == PersistRequest.Type.DELETE) {
+      delete((PersistRequestBean<?>) event, buffer);
+    } else {
+      event.docStoreUpdate(buffer);
+    }
+  }
+
+  private <T> void delete(PersistRequestBean<T> request, BulkBuffer buffer) throws IOException {
+    DocStoreBeanAdapter<T> adapter = request.descriptor().docStoreAdapter();
+    if (adapter instanceof ElasticDocStoreBeanAdapter) {
+      ((ElasticDocStoreBeanAdapter<T>) adapter).delete(request.beanId(), request.bean(), buffer);
+    } else {
+      request.docStoreUpdate(buffer);
+    }
+  }
+
   /**
    * Process queue entries.
    */
@@ -139,7 +209,7 @@ public class ElasticUpdateProcessor implements DocStoreUpdateProcessor {
 
     for (UpdateGroup group : groups) {
       BeanType<?> desc = server.beanTypeForQueueId(group.getQueueId());
-      count += ProcessGroup.process(server, desc, group, txn);
+      count += ProcessGroup.process(server, desc, group, txn, reindexChunkSize, reindexParallelism);
     }
 
     return count;
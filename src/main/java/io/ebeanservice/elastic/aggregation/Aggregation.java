@@ -0,0 +1,159 @@
+package io.ebeanservice.elastic.aggregation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.ebean.plugin.BeanDocType;
+import io.ebean.text.json.EJson;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An ElasticSearch aggregation to execute along with a doc store query.
+ * <pre>{@code
+ *
+ *   Aggregation byStatus = Aggregation.terms("status", "status")
+ *     .size(20)
+ *     .subAggregation(Aggregation.stats("amount", "totalAmount"));
+ *
+ * }</pre>
+ * <p>
+ * Properties are translated to the raw (un-analysed) field of the document as per query expressions.
+ * </p>
+ */
+public class Aggregation {
+
+  private final String name;
+
+  private final String type;
+
+  private final String property;
+
+  private final Map<String, Object> params = new LinkedHashMap<>();
+
+  private final List<Aggregation> sources;
+
+  private final List<Aggregation> subAggregations = new ArrayList<>();
+
+  private Aggregation(String name, String type, String property, List<Aggregation> sources) {
+    this.name = name;
+    this.type = type;
+    this.property = property;
+    this.sources = sources;
+  }
+
+  /**
+   * Create a terms aggregation bucketing by the values of the property.
+   */
+  public static Aggregation terms(String name, String property) {
+    return new Aggregation(name, "terms", property, null);
+  }
+
+  /**
+   * Create a date_histogram aggregation using the given calendar interval (e.g. "day", "month").
+   */
+  public static Aggregation dateHistogram(String name, String property, String calendarInterval) {
+    return new Aggregation(name, "date_histogram", property, null).param("calendar_interval", calendarInterval);
+  }
+
+  /**
+   * Create a stats aggregation (count, min, max, avg and sum) for the property.
+   */
+  public static Aggregation stats(String name, String property) {
+    return new Aggregation(name, "stats", property, null);
+  }
+
+  /**
+   * Create a cardinality aggregation (approximate distinct count) for the property.
+   */
+  public static Aggregation cardinality(String name, String property) {
+    return new Aggregation(name, "cardinality", property, null);
+  }
+
+  /**
+   * Create a composite aggregation with the given terms or date_histogram sources.
+   * <p>
+   * Composite aggregations page through all the buckets using the after key.
+   * </p>
+   */
+  public static Aggregation composite(String name, Aggregation... sources) {
+    return new Aggregation(name, "composite", null, Arrays.asList(sources));
+  }
+
+  /**
+   * Set the number of buckets to return.
+   */
+  public Aggregation size(int size) {
+    return param("size", size);
+  }
+
+  /**
+   * Set an additional parameter of the aggregation (e.g. "min_doc_count", "format").
+   */
+  public Aggregation param(String key, Object value) {
+    params.put(key, value);
+    return this;
+  }
+
+  /**
+   * Add a sub aggregation that is executed per bucket.
+   */
+  public Aggregation subAggregation(Aggregation subAggregation) {
+    subAggregations.add(subAggregation);
+    return this;
+  }
+
+  /**
+   * Return the name of the aggregation.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Return true if this is a composite aggregation.
+   */
+  public boolean isComposite() {
+    return sources != null;
+  }
+
+  /**
+   * Write the aggregation with the after key used for composite aggregations.
+   */
+  void write(JsonGenerator json, BeanDocType<?> docType, Map<String, Object> afterKey) throws IOException {
+    json.writeObjectFieldStart(name);
+    json.writeObjectFieldStart(type);
+    if (property != null) {
+      json.writeStringField("field", docType.rawProperty(property));
+    }
+    for (Map.Entry<String, Object> entry : params.entrySet()) {
+      json.writeFieldName(entry.getKey());
+      EJson.write(entry.getValue(), json);
+    }
+    if (sources != null) {
+      json.writeArrayFieldStart("sources");
+      for (Aggregation source : sources) {
+        json.writeStartObject();
+        source.write(json, docType, null);
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+      if (afterKey != null) {
+        json.writeFieldName("after");
+        EJson.write(afterKey, json);
+      }
+    }
+    json.writeEndObject();
+    if (!subAggregations.isEmpty()) {
+      json.writeObjectFieldStart("aggs");
+      for (Aggregation subAggregation : subAggregations) {
+        subAggregation.write(json, docType, null);
+      }
+      json.writeEndObject();
+    }
+    json.writeEndObject();
+  }
+}
@@ -0,0 +1,64 @@
+package io.ebeanservice.elastic.aggregation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.ebean.plugin.BeanDocType;
+import io.ebeanservice.elastic.querywriter.ElasticJsonContext;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search request with size 0 executing aggregations for a query clause.
+ */
+public class AggregationQuery {
+
+  private final ElasticJsonContext context;
+
+  private final BeanDocType<?> docType;
+
+  private final String queryJson;
+
+  private final List<Aggregation> aggregations;
+
+  /**
+   * Construct with the query clause JSON and the aggregations to execute.
+   */
+  public AggregationQuery(ElasticJsonContext context, BeanDocType<?> docType, String queryJson, List<Aggregation> aggregations) {
+    this.context = context;
+    this.docType = docType;
+    this.queryJson = queryJson;
+    this.aggregations = aggregations;
+  }
+
+  /**
+   * Return the JSON request with the after keys applied to the composite aggregations.
+   *
+   * @param afterKeys The after key of each composite aggregation keyed by aggregation name (null for the first page)
+   */
+  public String json(Map<String, Map<String, Object>> afterKeys) throws IOException {
+    StringWriter writer = new StringWriter(200);
+    JsonGenerator json = context.createGenerator(writer);
+    json.writeStartObject();
+    json.writeNumberField("size", 0);
+    json.writeBooleanField("track_total_hits", false);
+    json.writeFieldName("query");
+    json.writeRawValue(queryJson);
+    json.writeObjectFieldStart("aggs");
+    for (Aggregation aggregation : aggregations) {
+      aggregation.write(json, docType, afterKey(afterKeys, aggregation));
+    }
+    json.writeEndObject();
+    json.writeEndObject();
+    json.flush();
+    return writer.toString();
+  }
+
+  private Map<String, Object> afterKey(Map<String, Map<String, Object>> afterKeys, Aggregation aggregation) {
+    if (afterKeys == null || !aggregation.isComposite()) {
+      return null;
+    }
+    return afterKeys.get(aggregation.getName());
+  }
+}
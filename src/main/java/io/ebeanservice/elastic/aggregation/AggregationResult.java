@@ -0,0 +1,160 @@
+package io.ebeanservice.elastic.aggregation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of an aggregation providing the buckets and/or metric values.
+ */
+public class AggregationResult {
+
+  private final Map<String, Object> raw;
+
+  private AggregationResult(Map<String, Object> raw) {
+    this.raw = raw;
+  }
+
+  /**
+   * Return the results by aggregation name from the aggregations of a search response.
+   */
+  @SuppressWarnings("unchecked")
+  public static Map<String, AggregationResult> of(Map<String, Object> aggregations) {
+    if (aggregations == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, AggregationResult> results = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : aggregations.entrySet()) {
+      if (entry.getValue() instanceof Map) {
+        results.put(entry.getKey(), new AggregationResult((Map<String, Object>) entry.getValue()));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Return the buckets (terms, date_histogram and composite aggregations).
+   */
+  @SuppressWarnings("unchecked")
+  public List<Bucket> getBuckets() {
+    Object buckets = raw.get("buckets");
+    if (!(buckets instanceof List)) {
+      return Collections.emptyList();
+    }
+    List<Bucket> list = new ArrayList<>();
+    for (Object bucket : (List<Object>) buckets) {
+      list.add(new Bucket((Map<String, Object>) bucket));
+    }
+    return list;
+  }
+
+  /**
+   * Return the after key of a composite aggregation (null when there are no more buckets).
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> getAfterKey() {
+    return (Map<String, Object>) raw.get("after_key");
+  }
+
+  /**
+   * Return the value of a single value metric (e.g. cardinality).
+   */
+  public Double getValue() {
+    return number("value");
+  }
+
+  /**
+   * Return the count of a stats aggregation.
+   */
+  public Double getCount() {
+    return number("count");
+  }
+
+  /**
+   * Return the min of a stats aggregation.
+   */
+  public Double getMin() {
+    return number("min");
+  }
+
+  /**
+   * Return the max of a stats aggregation.
+   */
+  public Double getMax() {
+    return number("max");
+  }
+
+  /**
+   * Return the avg of a stats aggregation.
+   */
+  public Double getAvg() {
+    return number("avg");
+  }
+
+  /**
+   * Return the sum of a stats aggregation.
+   */
+  public Double getSum() {
+    return number("sum");
+  }
+
+  /**
+   * Return the raw aggregation response.
+   */
+  public Map<String, Object> getRaw() {
+    return raw;
+  }
+
+  private Double number(String key) {
+    Object value = raw.get(key);
+    return (value instanceof Number) ? ((Number) value).doubleValue() : null;
+  }
+
+  /**
+   * A bucket of a terms, date_histogram or composite aggregation.
+   */
+  public static class Bucket {
+
+    private final Map<String, Object> raw;
+
+    Bucket(Map<String, Object> raw) {
+      this.raw = raw;
+    }
+
+    /**
+     * Return the key of the bucket (a Map of source name to value for composite aggregations).
+     */
+    public Object getKey() {
+      return raw.get("key");
+    }
+
+    /**
+     * Return the formatted key (date_histogram aggregations).
+     */
+    public String getKeyAsString() {
+      Object key = raw.get("key_as_string");
+      return key == null ? null : key.toString();
+    }
+
+    /**
+     * Return the number of documents in the bucket.
+     */
+    public long getDocCount() {
+      Object count = raw.get("doc_count");
+      return (count instanceof Number) ? ((Number) count).longValue() : 0;
+    }
+
+    /**
+     * Return the results of the sub aggregations by name.
+     */
+    public Map<String, AggregationResult> getAggregations() {
+      Map<String, Object> subAggregations = new LinkedHashMap<>(raw);
+      subAggregations.remove("key");
+      subAggregations.remove("key_as_string");
+      subAggregations.remove("doc_count");
+      return AggregationResult.of(subAggregations);
+    }
+  }
+}
@@ -9,6 +9,10 @@ import com.fasterxml.jackson.core.JsonGenerator;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * For ElasticSearch Bulk API processing this holds the JsonGenerator and associated data.
@@ -26,17 +30,75 @@ public class BulkBuffer implements DocStoreUpdateContext {
 
   private final JsonConfig.Include defaultInclude;
 
+  private final BulkListener listener;
+
+  private final Map<String, Set<String>> writtenIds = new LinkedHashMap<>();
+
+  private final Map<String, Set<String>> deleteByQueryIds = new LinkedHashMap<>();
+
+  private boolean repeatedIds;
+
   public BulkBuffer(JsonGenerator generator, Writer writer, Object defaultObjectMapper, JsonConfig.Include defaultInclude) {
+    this(generator, writer, defaultObjectMapper, defaultInclude, null);
+  }
+
+  public BulkBuffer(JsonGenerator generator, Writer writer, Object defaultObjectMapper, JsonConfig.Include defaultInclude, BulkListener listener) {
     this.generator = generator;
     this.writer = writer;
     this.defaultObjectMapper = defaultObjectMapper;
     this.defaultInclude = defaultInclude;
+    this.listener = listener;
   }
 
   public WriteJson createWriteJson(SpiEbeanServer server, JsonGenerator gen, FetchPath fetchPath) {
     return new WriteJson(server, gen, fetchPath, null, defaultObjectMapper, defaultInclude);
   }
 
+  /**
+   * Register that a document of the given index is written to the buffer.
+   */
+  public void written(String indexName, Object id) {
+    Set<String> ids = writtenIds.computeIfAbsent(indexName, name -> new LinkedHashSet<>());
+    if (id != null) {
+      String docId = id.toString();
+      if (!ids.add(docId)) {
+        repeatedIds = true;
+      } else if (listener != null) {
+        // notified once per document matching the written ids given to flushed
+        listener.written(indexName, docId);
+      }
+    }
+  }
+
+  /**
+   * Register a delete of a document with an unknown routing value (sent using delete by query).
+   */
+  public void deleteByQuery(String indexName, Object id) {
+    written(indexName, id);
+    deleteByQueryIds.computeIfAbsent(indexName, name -> new LinkedHashSet<>()).add(id.toString());
+  }
+
+  /**
+   * Return the ids of documents to delete using delete by query by index name.
+   */
+  public Map<String, Set<String>> getDeleteByQueryIds() {
+    return deleteByQueryIds;
+  }
+
+  /**
+   * Return the ids of the documents written to by index name.
+   */
+  public Map<String, Set<String>> getWrittenIds() {
+    return writtenIds;
+  }
+
+  /**
+   * Return true if a document was written to more than once (such that operations can be collapsed).
+   */
+  public boolean hasRepeatedIds() {
+    return repeatedIds;
+  }
+
   /**
    * Return the buffer content (Bulk API JSON with new lines etc).
    */
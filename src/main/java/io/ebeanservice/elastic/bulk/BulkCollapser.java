@@ -0,0 +1,190 @@
+package io.ebeanservice.elastic.bulk;
+
+import io.ebean.text.json.EJson;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses the operations of a Bulk API request such that only the net operation per document is sent.
+ * <p>
+ * Operations on the same document (index name, id and routing) are combined with the prior operation.
+ * Other combinations (like create or updates using scripts) are sent unchanged.
+ * </p>
+ * <ul>
+ *   <li>any then delete - delete</li>
+ *   <li>any then index - index</li>
+ *   <li>update then update - update with the merged doc</li>
+ *   <li>index then update - index with the doc merged into the source</li>
+ * </ul>
+ */
+class BulkCollapser {
+
+  private final Map<String, List<Operation>> byDocument = new LinkedHashMap<>();
+
+  private int unkeyed;
+
+  /**
+   * Return the bulk content with the operations collapsed per document.
+   */
+  static String collapse(String content) throws IOException {
+    return new BulkCollapser().read(content).write(content.length());
+  }
+
+  private BulkCollapser read(String content) throws IOException {
+    String[] lines = content.split("\n");
+    for (int i = 0; i < lines.length; i++) {
+      String header = lines[i].trim();
+      if (header.isEmpty()) {
+        continue;
+      }
+      Operation operation = new Operation(header);
+      if (!operation.isDelete()) {
+        operation.source = lines[++i].trim();
+      }
+      add(operation);
+    }
+    return this;
+  }
+
+  private void add(Operation operation) throws IOException {
+    String key = operation.key();
+    if (key == null) {
+      // document id generated by ElasticSearch
+      byDocument.put("\u0000" + (unkeyed++), singleList(operation));
+      return;
+    }
+    List<Operation> operations = byDocument.get(key);
+    if (operations == null) {
+      byDocument.put(key, singleList(operation));
+      return;
+    }
+    int lastIndex = operations.size() - 1;
+    Operation combined = operations.get(lastIndex).combine(operation);
+    if (combined == null) {
+      operations.add(operation);
+    } else {
+      operations.set(lastIndex, combined);
+    }
+  }
+
+  private List<Operation> singleList(Operation operation) {
+    List<Operation> list = new ArrayList<>(1);
+    list.add(operation);
+    return list;
+  }
+
+  private String write(int capacity) {
+    StringBuilder sb = new StringBuilder(capacity);
+    for (List<Operation> operations : byDocument.values()) {
+      for (Operation operation : operations) {
+        sb.append(operation.header).append('\n');
+        if (operation.source != null) {
+          sb.append(operation.source).append('\n');
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * A bulk operation with the header (action and metadata) line and source line (null for delete).
+   */
+  private static class Operation {
+
+    private final String header;
+
+    private final String action;
+
+    private final Map<String, Object> meta;
+
+    private String source;
+
+    @SuppressWarnings("unchecked")
+    Operation(String header) throws IOException {
+      this.header = header;
+      Map<String, Object> map = EJson.parseObject(header);
+      Map.Entry<String, Object> entry = map.entrySet().iterator().next();
+      this.action = entry.getKey();
+      this.meta = (Map<String, Object>) entry.getValue();
+    }
+
+    boolean isDelete() {
+      return "delete".equals(action);
+    }
+
+    /**
+     * Return the key of the document (null when the id is generated by ElasticSearch).
+     */
+    String key() {
+      Object id = meta.get("_id");
+      if (id == null) {
+        return null;
+      }
+      return meta.get("_index") + "\u0000" + id + "\u0000" + meta.get("routing");
+    }
+
+    /**
+     * Return the net operation of this followed by the next operation (null when they can not be combined).
+     */
+    Operation combine(Operation next) throws IOException {
+      switch (next.action) {
+        case "delete":
+        case "index":
+          return next;
+        case "update":
+          return combineUpdate(next);
+        default:
+          return null;
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Operation combineUpdate(Operation next) throws IOException {
+      Map<String, Object> nextSource = EJson.parseObject(next.source);
+      if (nextSource.size() != 1 || !(nextSource.get("doc") instanceof Map)) {
+        // a script, upsert etc
+        return null;
+      }
+      Map<String, Object> nextDoc = (Map<String, Object>) nextSource.get("doc");
+      if ("index".equals(action)) {
+        Map<String, Object> merged = EJson.parseObject(source);
+        merge(merged, nextDoc);
+        return withSource(EJson.write(merged));
+      }
+      if ("update".equals(action)) {
+        Map<String, Object> thisSource = EJson.parseObject(source);
+        if (thisSource.size() != 1 || !(thisSource.get("doc") instanceof Map)) {
+          return null;
+        }
+        merge((Map<String, Object>) thisSource.get("doc"), nextDoc);
+        return withSource(EJson.write(thisSource));
+      }
+      return null;
+    }
+
+    private Operation withSource(String mergedSource) {
+      this.source = mergedSource;
+      return this;
+    }
+
+    /**
+     * Merge the partial document into the target recursively (as ElasticSearch does for doc updates).
+     */
+    @SuppressWarnings("unchecked")
+    private static void merge(Map<String, Object> target, Map<String, Object> partial) {
+      for (Map.Entry<String, Object> entry : partial.entrySet()) {
+        Object value = entry.getValue();
+        Object existing = target.get(entry.getKey());
+        if (value instanceof Map && existing instanceof Map) {
+          merge((Map<String, Object>) existing, (Map<String, Object>) value);
+        } else {
+          target.put(entry.getKey(), value);
+        }
+      }
+    }
+  }
+}
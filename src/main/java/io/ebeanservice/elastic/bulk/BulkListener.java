@@ -0,0 +1,27 @@
+package io.ebeanservice.elastic.bulk;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Listener notified of writes sent to ElasticSearch (typically to invalidate caches).
+ */
+public interface BulkListener {
+
+  /**
+   * A write (index, update or delete) of the document has been added to a Bulk API request.
+   * <p>
+   * This is called synchronously as the write is added and before the request is sent.
+   * </p>
+   */
+  default void written(String indexName, String id) {
+    // do nothing by default
+  }
+
+  /**
+   * Requests writing to the given documents have been sent.
+   *
+   * @param writtenIds The ids written by index name (null ids for update by query meaning any document)
+   */
+  void flushed(Map<String, Set<String>> writtenIds);
+}
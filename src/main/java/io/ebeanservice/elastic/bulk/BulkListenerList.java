@@ -0,0 +1,52 @@
+package io.ebeanservice.elastic.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Notifies a list of bulk listeners.
+ */
+public class BulkListenerList implements BulkListener {
+
+  private final List<BulkListener> listeners;
+
+  private BulkListenerList(List<BulkListener> listeners) {
+    this.listeners = listeners;
+  }
+
+  /**
+   * Return a listener for the given listeners ignoring nulls (null if there are none).
+   */
+  public static BulkListener of(BulkListener... listeners) {
+    List<BulkListener> list = new ArrayList<>();
+    for (BulkListener listener : listeners) {
+      if (listener != null) {
+        list.add(listener);
+      }
+    }
+    switch (list.size()) {
+      case 0:
+        return null;
+      case 1:
+        return list.get(0);
+      default:
+        return new BulkListenerList(list);
+    }
+  }
+
+  @Override
+  public void written(String indexName, String id) {
+    for (BulkListener listener : listeners) {
+      listener.written(indexName, id);
+    }
+  }
+
+  @Override
+  public void flushed(Map<String, Set<String>> writtenIds) {
+    for (BulkListener listener : listeners) {
+      listener.flushed(writtenIds);
+    }
+  }
+}
@@ -11,10 +11,14 @@ import io.ebeanservice.elastic.support.StringBuilderWriter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.System.Logger.Level.DEBUG;
 import static java.lang.System.Logger.Level.TRACE;
+import static java.lang.System.Logger.Level.WARNING;
 
 /**
  * Sends Bulk API messages to ElasticSearch.
@@ -23,6 +27,27 @@ public class BulkSender {
 
   private static final System.Logger bulkLogger = ElasticDocumentStore.BULK;
 
+  /**
+   * Update by query run as an async task with automatic slicing proceeding on version conflicts.
+   */
+  private static final String UPDATE_QUERY_PARAMS = "conflicts=proceed&slices=auto&wait_for_completion=false";
+
+  /**
+   * Bulk API requests (followed by delete by query) wait for the writes to be visible to search.
+   */
+  private static final String REFRESH_WAIT_FOR = "refresh=wait_for";
+
+  /**
+   * Delete by query refreshes the affected shards such that the deletes are visible to search.
+   */
+  private static final String DELETE_QUERY_PARAMS = "refresh=true";
+
+  private static final long TASK_POLL_MIN_MILLIS = 50;
+
+  private static final long TASK_POLL_MAX_MILLIS = 2000;
+
+  private static final long TASK_TIMEOUT_MILLIS = 600_000;
+
   private final JsonFactory jsonFactory;
 
   private final JsonConfig.Include defaultInclude;
@@ -31,14 +56,35 @@ public class BulkSender {
 
   private final IndexMessageSender messageSender;
 
+  private final BulkListener listener;
+
+  private final Set<String> storedScripts = ConcurrentHashMap.newKeySet();
+
+  private long taskTimeoutMillis = TASK_TIMEOUT_MILLIS;
+
   /**
    * Construct with appropriate JSON configuration.
    */
   public BulkSender(JsonFactory jsonFactory, JsonConfig.Include defaultInclude, Object defaultObjectMapper, IndexMessageSender messageSender) {
+    this(jsonFactory, defaultInclude, defaultObjectMapper, messageSender, null);
+  }
+
+  /**
+   * Construct with a listener notified of the indexes written to.
+   */
+  public BulkSender(JsonFactory jsonFactory, JsonConfig.Include defaultInclude, Object defaultObjectMapper, IndexMessageSender messageSender, BulkListener listener) {
     this.jsonFactory = jsonFactory;
     this.defaultInclude = defaultInclude;
     this.defaultObjectMapper = defaultObjectMapper;
     this.messageSender = messageSender;
+    this.listener = listener;
+  }
+
+  /**
+   * Set the maximum time to wait for an update by query task to complete (defaults to 10 minutes).
+   */
+  public void setTaskTimeoutMillis(long taskTimeoutMillis) {
+    this.taskTimeoutMillis = taskTimeoutMillis;
   }
 
   /**
@@ -48,17 +94,47 @@ public class BulkSender {
 
     StringBuilderWriter writer = new StringBuilderWriter(500);
     JsonGenerator gen = jsonFactory.createGenerator(writer);
-    return new BulkBuffer(gen, writer, defaultObjectMapper, defaultInclude);
+    return new BulkBuffer(gen, writer, defaultObjectMapper, defaultInclude, listener);
   }
 
   /**
    * Send the bulk buffer returning the response.
+   * <p>
+   * The listener is notified of the written documents even when sending fails (as the
+   * request may have been partially applied).
+   * </p>
    */
   public Map<String, Object> sendBulk(BulkBuffer buffer) throws IOException {
+    try {
+      return send(buffer);
+    } finally {
+      if (listener != null && !buffer.getWrittenIds().isEmpty()) {
+        listener.flushed(buffer.getWrittenIds());
+      }
+    }
+  }
+
+  private Map<String, Object> send(BulkBuffer buffer) throws IOException {
 
     buffer.flush();
 
+    Map<String, Set<String>> deleteIds = buffer.getDeleteByQueryIds();
+    Map<String, Object> response = sendContent(buffer, !deleteIds.isEmpty());
+    // after the bulk request such that documents indexed by it are also deleted
+    sendDeleteByQuery(deleteIds);
+    return response;
+  }
+
+  /**
+   * Send the bulk content waiting for refresh when followed by delete by query.
+   */
+  private Map<String, Object> sendContent(BulkBuffer buffer, boolean deleteByQuery) throws IOException {
+
     String content = buffer.getContent();
+    if (buffer.hasRepeatedIds()) {
+      // only send the net operation per document
+      content = BulkCollapser.collapse(content);
+    }
     if (content.isEmpty()) {
       if (bulkLogger.isLoggable(DEBUG)) {
         bulkLogger.log(DEBUG, "ElasticBulkMessage is empty?");
@@ -69,14 +145,49 @@ public class BulkSender {
     if (bulkLogger.isLoggable(TRACE)) {
       bulkLogger.log(TRACE, "ElasticBulkMessage Request:\n{0}", content);
     }
-    String response = messageSender.postBulk(content);
+    String response = messageSender.postBulk(deleteByQuery ? REFRESH_WAIT_FOR : null, content);
     if (bulkLogger.isLoggable(TRACE)) {
       bulkLogger.log(TRACE, "ElasticBulkMessage Response:\n{0}", response);
     }
-
     return parseBulkResponse(response);
   }
 
+  /**
+   * Delete the documents (with unknown routing values) using delete by query with an ids query.
+   * <p>
+   * The deletes are refreshed and a failed delete by query (or any failures it reports) throws.
+   * </p>
+   */
+  private void sendDeleteByQuery(Map<String, Set<String>> deleteIds) throws IOException {
+    for (Map.Entry<String, Set<String>> entry : deleteIds.entrySet()) {
+      StringBuilderWriter writer = new StringBuilderWriter(100);
+      try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+        gen.writeStartObject();
+        gen.writeObjectFieldStart("query");
+        gen.writeObjectFieldStart("ids");
+        gen.writeArrayFieldStart("values");
+        for (String id : entry.getValue()) {
+          gen.writeString(id);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeEndObject();
+        gen.writeEndObject();
+      }
+      IndexMessageResponse response = messageSender.postDeleteQuery(entry.getKey(), DELETE_QUERY_PARAMS, writer.toString());
+      if (bulkLogger.isLoggable(DEBUG)) {
+        bulkLogger.log(DEBUG, "delete by query index:{0} response:{1}", entry.getKey(), response.getBody());
+      }
+      if (response.getCode() != 200) {
+        throw new IOException("Error deleting by query index:" + entry.getKey() + " code:" + response.getCode() + " response:" + response.getBody());
+      }
+      Object failures = EJson.parseObject(response.getBody()).get("failures");
+      if (failures instanceof List && !((List<?>) failures).isEmpty()) {
+        throw new IOException("Failures deleting by query index:" + entry.getKey() + " failures:" + failures);
+      }
+    }
+  }
+
   /**
    * Parse the returned JSON response into a Map.
    */
@@ -84,8 +195,101 @@ public class BulkSender {
     return EJson.parseObject(response);
   }
 
-  public Map<String, Object> setUpdateQuery(String indexName, String indexType, String script) throws IOException {
-    IndexMessageResponse response = messageSender.postUpdateQuery(indexName, indexType, script);
-    return EJson.parseObject(response.getBody());
+  /**
+   * Store the script with the given id (once per script id).
+   */
+  public void storeScript(String scriptId, String scriptJson) throws IOException {
+    if (storedScripts.contains(scriptId)) {
+      return;
+    }
+    IndexMessageResponse response = messageSender.putScript(scriptId, scriptJson);
+    if (response.getCode() != 200) {
+      throw new IOException("Error storing script " + scriptId + " code:" + response.getCode() + " response:" + response.getBody());
+    }
+    storedScripts.add(scriptId);
+  }
+
+  /**
+   * Execute the update by query as a sliced task (proceeding on version conflicts) waiting for it to complete.
+   * <p>
+   * Returns the response of the completed task (with total, updated, noops etc).
+   * </p>
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> updateByQuery(String indexName, String jsonQuery) throws IOException {
+    IndexMessageResponse response = messageSender.postUpdateQuery(indexName, UPDATE_QUERY_PARAMS, jsonQuery);
+    if (response.getCode() != 200) {
+      throw new IOException("Error performing updateByQuery index:" + indexName + " code:" + response.getCode() + " response:" + response.getBody());
+    }
+    String taskId = (String) EJson.parseObject(response.getBody()).get("task");
+    try {
+      Map<String, Object> result = awaitTask(taskId);
+      bulkLogger.log(DEBUG, "update by query index:{0} task:{1} response:{2}", indexName, taskId, result);
+      return (Map<String, Object>) result.get("response");
+    } finally {
+      if (listener != null) {
+        listener.flushed(Collections.singletonMap(indexName, null));
+      }
+    }
+  }
+
+  /**
+   * Poll the task until it has completed (or the timeout is reached) returning the task result.
+   * <p>
+   * A task that completed with an error or failures throws and the stored task result is deleted
+   * once it has been read.
+   * </p>
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> awaitTask(String taskId) throws IOException {
+    long deadline = System.currentTimeMillis() + taskTimeoutMillis;
+    long pollMillis = TASK_POLL_MIN_MILLIS;
+    while (true) {
+      IndexMessageResponse response = messageSender.getTask(taskId);
+      if (response.getCode() != 200) {
+        throw new IOException("Error getting task " + taskId + " code:" + response.getCode() + " response:" + response.getBody());
+      }
+      Map<String, Object> result = EJson.parseObject(response.getBody());
+      if (Boolean.TRUE.equals(result.get("completed"))) {
+        deleteTaskResult(taskId);
+        Object error = result.get("error");
+        if (error != null) {
+          throw new IOException("Task " + taskId + " failed with " + error);
+        }
+        Object taskResponse = result.get("response");
+        if (taskResponse instanceof Map) {
+          Object failures = ((Map<String, Object>) taskResponse).get("failures");
+          if (failures instanceof List && !((List<?>) failures).isEmpty()) {
+            throw new IOException("Task " + taskId + " completed with failures " + failures);
+          }
+        }
+        return result;
+      }
+      long remainingMillis = deadline - System.currentTimeMillis();
+      if (remainingMillis <= 0) {
+        throw new IOException("Timeout waiting " + taskTimeoutMillis + "ms for task " + taskId + " to complete");
+      }
+      try {
+        Thread.sleep(Math.min(pollMillis, remainingMillis));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted waiting for task " + taskId, e);
+      }
+      pollMillis = Math.min(pollMillis * 2, TASK_POLL_MAX_MILLIS);
+    }
+  }
+
+  /**
+   * Delete the stored result of the completed task (logging rather than throwing when that fails).
+   */
+  private void deleteTaskResult(String taskId) {
+    try {
+      IndexMessageResponse response = messageSender.deleteTaskResult(taskId);
+      if (response.getCode() != 200 && response.getCode() != 404) {
+        bulkLogger.log(WARNING, "Error deleting result of task {0} code:{1} response:{2}", taskId, response.getCode(), response.getBody());
+      }
+    } catch (IOException e) {
+      bulkLogger.log(WARNING, "Error deleting result of task " + taskId, e);
+    }
   }
 }
@@ -10,6 +10,8 @@ public class BulkTransaction implements DocStoreTransaction {
 
   private DocStoreUpdates queueUpdates;
 
+  private boolean queueWritten;
+
   public BulkTransaction(BulkUpdate bulkUpdate) {
     this.bulkUpdate = bulkUpdate;
   }
@@ -27,6 +29,20 @@ public class BulkTransaction implements DocStoreTransaction {
     return queueUpdates;
   }
 
+  /**
+   * Return true if the queue entries have been written (in the committing transaction).
+   */
+  public boolean isQueueWritten() {
+    return queueWritten;
+  }
+
+  /**
+   * Mark the queue entries as written (in the committing transaction).
+   */
+  public void setQueueWritten() {
+    this.queueWritten = true;
+  }
+
   @Override
   public void flush() {
     bulkUpdate.flush();
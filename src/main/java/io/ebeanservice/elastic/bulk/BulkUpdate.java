@@ -59,7 +59,9 @@ public class BulkUpdate {
 
     try {
       if (currentBuffer != null) {
-        collectErrors(bulkSender.sendBulk(currentBuffer));
+        BulkBuffer buffer = currentBuffer;
+        currentBuffer = null;
+        collectErrors(bulkSender.sendBulk(buffer));
       }
     } catch (IOException e) {
       throw new PersistenceException("Error send Bulk updates", e);
@@ -79,7 +81,17 @@ public class BulkUpdate {
 
   }
 
-  public Map<String, Object> sendUpdateQuery(String indexName, String indexType, String script) throws IOException {
-    return bulkSender.setUpdateQuery(indexName, indexType, script);
+  /**
+   * Store the script (once per script id) used by update by query.
+   */
+  public void storeScript(String scriptId, String scriptJson) throws IOException {
+    bulkSender.storeScript(scriptId, scriptJson);
+  }
+
+  /**
+   * Execute the update by query waiting for it to complete returning the response.
+   */
+  public Map<String, Object> updateByQuery(String indexName, String jsonQuery) throws IOException {
+    return bulkSender.updateByQuery(indexName, jsonQuery);
   }
 }
@@ -11,6 +11,7 @@ import io.ebeanservice.docstore.api.mapping.DocPropertyAdapter;
 import io.ebeanservice.docstore.api.mapping.DocPropertyMapping;
 import io.ebeanservice.docstore.api.mapping.DocPropertyOptions;
 import io.ebeanservice.docstore.api.mapping.DocumentMapping;
+import io.ebeanservice.elastic.DocRouting;
 import io.ebeanservice.elastic.support.StringBuilderWriter;
 
 import java.io.IOException;
@@ -62,6 +63,11 @@ public class EIndexMappingsBuilder {
       }
 
       gen.writeObjectFieldStart("mappings");
+      if (beanType.root().type().isAnnotationPresent(DocRouting.class)) {
+        gen.writeObjectFieldStart("_routing");
+        gen.writeBooleanField("required", true);
+        gen.writeEndObject();
+      }
       gen.writeObjectFieldStart("properties");
 
       IndexVisitor visitor = new IndexVisitor(gen, typeMapping);
@@ -0,0 +1,253 @@
+package io.ebeanservice.elastic.query;
+
+import io.ebeanservice.elastic.bulk.BulkListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Near cache of document _source (as UTF-8 bytes) keyed by index name and document id used by findById.
+ * <p>
+ * The cache is bounded by both the number of entries and the total bytes held with least recently
+ * used entries evicted first. A document is invalidated synchronously when a write to it is added
+ * to a Bulk API request and is not cached again until that request has been sent. A pending write
+ * of a request that is never sent (for example the transaction rolled back) stops blocking the
+ * document being cached after the ttl. Changes made by other nodes can be invalidated via
+ * {@link #invalidate(String, String)}.
+ * </p>
+ * <p>
+ * Gets with routing are not cached as the same id with different routing can be different documents.
+ * </p>
+ */
+public class DocumentCache implements BulkListener {
+
+  private final int maxEntries;
+
+  private final long maxBytes;
+
+  private final long ttlNanos;
+
+  private final Set<String> indexNames;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+  private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  private long bytes;
+
+  /**
+   * Create the cache for the given indexes (empty for all indexes).
+   */
+  public DocumentCache(int maxEntries, long maxBytes, int ttlMillis, Set<String> indexNames) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.indexNames = indexNames;
+  }
+
+  /**
+   * Return true if documents of the index are cached.
+   */
+  boolean isCached(String indexName) {
+    return indexNames.isEmpty() || indexNames.contains(indexName);
+  }
+
+  /**
+   * Return the current version of the index (obtain before loading the document).
+   */
+  long version(String indexName) {
+    return versions.computeIfAbsent(indexName, name -> new AtomicLong()).get();
+  }
+
+  /**
+   * Return the cached document source or null if not in the cache.
+   */
+  byte[] get(String indexName, String id) {
+    Key key = new Key(indexName, id);
+    if (!isPending(key)) {
+      synchronized (entries) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+          if (System.nanoTime() - entry.loadedNanos < ttlNanos) {
+            hits.increment();
+            return entry.source;
+          }
+          remove(key);
+          evictions.increment();
+        }
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Put the document source into the cache if there has been no write to the index since the given version.
+   */
+  void put(String indexName, String id, long version, byte[] source) {
+    Key key = new Key(indexName, id);
+    if (source.length > maxBytes || version(indexName) != version || isPending(key)) {
+      return;
+    }
+    synchronized (entries) {
+      remove(key);
+      entries.put(key, new Entry(System.nanoTime(), source));
+      bytes += source.length;
+      Iterator<Entry> it = entries.values().iterator();
+      while (entries.size() > maxEntries || bytes > maxBytes) {
+        bytes -= it.next().source.length;
+        it.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Invalidate the document (for example due to a change made by another node).
+   */
+  public void invalidate(String indexName, String id) {
+    versions.computeIfAbsent(indexName, name -> new AtomicLong()).incrementAndGet();
+    synchronized (entries) {
+      remove(new Key(indexName, id));
+    }
+  }
+
+  /**
+   * Invalidate all the documents of the index.
+   */
+  public void invalidateAll(String indexName) {
+    versions.computeIfAbsent(indexName, name -> new AtomicLong()).incrementAndGet();
+    synchronized (entries) {
+      Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<Key, Entry> entry = it.next();
+        if (entry.getKey().indexName.equals(indexName)) {
+          bytes -= entry.getValue().source.length;
+          it.remove();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void written(String indexName, String id) {
+    long now = System.nanoTime();
+    pending.compute(new Key(indexName, id), (key, prior) -> new Pending(prior == null ? 1 : prior.count + 1, now));
+    invalidate(indexName, id);
+  }
+
+  @Override
+  public void flushed(Map<String, Set<String>> writtenIds) {
+    for (Map.Entry<String, Set<String>> entry : writtenIds.entrySet()) {
+      String indexName = entry.getKey();
+      Set<String> ids = entry.getValue();
+      if (ids == null) {
+        invalidateAll(indexName);
+      } else {
+        for (String id : ids) {
+          Key key = new Key(indexName, id);
+          pending.computeIfPresent(key, (k, prior) -> prior.count > 1 ? new Pending(prior.count - 1, prior.writtenNanos) : null);
+          invalidate(indexName, id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Return true if there is a write to the document that has not been sent (and is within the ttl).
+   */
+  private boolean isPending(Key key) {
+    Pending write = pending.get(key);
+    if (write == null) {
+      return false;
+    }
+    if (System.nanoTime() - write.writtenNanos >= ttlNanos) {
+      // the request was never sent (rolled back) so stop blocking the document
+      pending.remove(key, write);
+      return false;
+    }
+    return true;
+  }
+
+  private void remove(Key key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      bytes -= removed.source.length;
+    }
+  }
+
+  /**
+   * Return the statistics of the cache.
+   */
+  public QueryResultCache.Statistics statistics() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return new QueryResultCache.Statistics(size, hits.sum(), misses.sum(), evictions.sum(), 0);
+  }
+
+  private static final class Key {
+
+    private final String indexName;
+
+    private final String id;
+
+    Key(String indexName, String id) {
+      this.indexName = indexName;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return indexName.equals(key.indexName) && id.equals(key.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(indexName, id);
+    }
+  }
+
+  private static final class Pending {
+
+    private final int count;
+
+    private final long writtenNanos;
+
+    Pending(int count, long writtenNanos) {
+      this.count = count;
+      this.writtenNanos = writtenNanos;
+    }
+  }
+
+  private static final class Entry {
+
+    private final long loadedNanos;
+
+    private final byte[] source;
+
+    Entry(long loadedNanos, byte[] source) {
+      this.loadedNanos = loadedNanos;
+      this.source = source;
+    }
+  }
+}
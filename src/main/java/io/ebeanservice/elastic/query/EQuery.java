@@ -5,6 +5,7 @@ import io.ebean.text.json.JsonBeanReader;
 import io.ebean.text.json.JsonContext;
 import io.ebean.text.json.JsonReadOptions;
 import io.ebeaninternal.api.SpiQuery;
+import io.ebeanservice.elastic.search.bean.BeanMultiGetParser;
 import io.ebeanservice.elastic.search.bean.BeanSearchParser;
 import com.fasterxml.jackson.core.JsonParser;
 
@@ -50,6 +51,13 @@ public class EQuery<T> {
     return jsonContext.createBeanReader(beanType, json, jsonOptions);
   }
 
+  /**
+   * Create a parser for multi get (_mget) responses.
+   */
+  BeanMultiGetParser<T> createMultiGetParser(JsonParser json) {
+    return new BeanMultiGetParser<>(json, beanType, createReader(json));
+  }
+
   private BeanSearchParser<T> createParser(JsonParser json, JsonBeanReader<T> reader) {
     return new BeanSearchParser<>(json, beanType, reader, query.getLazyLoadMany());
   }
@@ -20,6 +20,7 @@ public class EQueryEach<T> extends EQuery<T> implements EConsumeWhile<T> {
   private final DocQueryRequest<T> request;
   private final EQuerySend send;
   private final String indexName;
+  private final String urlParams;
   private final String jsonQuery;
 
   private final Set<String> allScrollIds = new LinkedHashSet<>();
@@ -28,11 +29,12 @@ public class EQueryEach<T> extends EQuery<T> implements EConsumeWhile<T> {
 
   private String currentScrollId;
 
-  EQueryEach(DocQueryRequest<T> request, EQuerySend send, JsonContext jsonContext, String indexName, String jsonQuery) {
+  EQueryEach(DocQueryRequest<T> request, EQuerySend send, JsonContext jsonContext, String indexName, String urlParams, String jsonQuery) {
     super(request.query(), jsonContext, request.createJsonReadOptions());
     this.send = send;
     this.request = request;
     this.indexName = indexName;
+    this.urlParams = urlParams;
     this.jsonQuery = jsonQuery;
   }
 
@@ -54,7 +56,7 @@ public class EQueryEach<T> extends EQuery<T> implements EConsumeWhile<T> {
    * Perform the initial scroll query.
    */
   private List<T> fetchInitial() throws IOException {
-    JsonParser initialJson = send.findScroll(indexName, jsonQuery);
+    JsonParser initialJson = send.findScroll(indexName, urlParams, jsonQuery);
     beanParser = createParser(initialJson);
     return read();
   }
@@ -2,12 +2,20 @@ package io.ebeanservice.elastic.query;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import io.avaje.applog.AppLog;
+import io.ebean.text.json.EJson;
 import io.ebeanservice.docstore.api.DocumentNotFoundException;
+import io.ebeanservice.elastic.support.ElasticConfig;
 import io.ebeanservice.elastic.support.IndexMessageResponse;
 import io.ebeanservice.elastic.support.IndexMessageSender;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static java.lang.System.Logger.Level.ERROR;
@@ -23,28 +31,244 @@ public class EQuerySend {
 
   private final IndexMessageSender messageSender;
 
-  EQuerySend(JsonFactory jsonFactory, IndexMessageSender messageSender) {
+  private final MultiSearchBatcher batcher;
+
+  private final QueryResultCache queryCache;
+
+  private final DocumentCache documentCache;
+
+  private final SingleFlight singleFlight;
+
+  EQuerySend(JsonFactory jsonFactory, IndexMessageSender messageSender, ElasticConfig config, QueryResultCache queryCache, DocumentCache documentCache) {
     this.jsonFactory = jsonFactory;
     this.messageSender = messageSender;
+    this.queryCache = queryCache;
+    this.documentCache = documentCache;
+    this.singleFlight = config.isCoalesceRequests() ? new SingleFlight() : null;
+    int windowMillis = config.getMultiSearchWindowMillis();
+    this.batcher = (windowMillis <= 0) ? null : new MultiSearchBatcher(this, windowMillis, config.getMultiSearchMaxBatch());
   }
 
   /**
    * Execute as find hits returning the resulting JSON response.
+   * <p>
+   * The response may come from the query result cache and with multi search batching on
+   * concurrent calls are sent together as a single _msearch.
+   * </p>
    */
   JsonParser findHits(String indexName, String jsonQuery) throws IOException {
-    return findInternal(false, indexName, jsonQuery);
+    return findHits(indexName, null, jsonQuery);
+  }
+
+  /**
+   * Execute as find hits with additional URL parameters (such as routing).
+   *
+   * @param urlParams Additional URL parameters (null for none)
+   */
+  JsonParser findHits(String indexName, String urlParams, String jsonQuery) throws IOException {
+    return jsonFactory.createParser(findHitsBody(indexName, urlParams, jsonQuery));
+  }
+
+  private String findHitsBody(String indexName, String urlParams, String jsonQuery) throws IOException {
+    if (queryCache == null) {
+      return search(indexName, urlParams, jsonQuery);
+    }
+    String key = requestKey(urlParams, jsonQuery);
+    String cached = queryCache.get(indexName, key);
+    if (cached != null) {
+      return cached;
+    }
+    long version = queryCache.version(indexName);
+    String body = search(indexName, urlParams, jsonQuery);
+    queryCache.put(indexName, key, version, body);
+    return body;
+  }
+
+  /**
+   * Return the key identifying the request (URL parameters and body) for an index.
+   */
+  private String requestKey(String urlParams, String jsonQuery) {
+    return (urlParams == null) ? jsonQuery : urlParams + '\n' + jsonQuery;
+  }
+
+  private String search(String indexName, String urlParams, String jsonQuery) throws IOException {
+    if (singleFlight != null) {
+      return singleFlight.execute(indexName, requestKey(urlParams, jsonQuery), () -> searchBatched(indexName, urlParams, jsonQuery));
+    }
+    return searchBatched(indexName, urlParams, jsonQuery);
+  }
+
+  private String searchBatched(String indexName, String urlParams, String jsonQuery) throws IOException {
+    if (batcher != null && urlParams == null) {
+      return batcher.search(indexName, jsonQuery);
+    }
+    return searchDirect(indexName, urlParams, jsonQuery);
+  }
+
+  /**
+   * Execute the search (without multi search batching) returning the response body.
+   */
+  String searchDirect(String indexName, String jsonQuery) throws IOException {
+    return searchDirect(indexName, null, jsonQuery);
+  }
+
+  /**
+   * Execute the search bypassing the query result cache, coalescing and multi search batching.
+   */
+  JsonParser findHitsDirect(String indexName, String urlParams, String jsonQuery) throws IOException {
+    return jsonFactory.createParser(searchDirect(indexName, urlParams, jsonQuery));
+  }
+
+  private String searchDirect(String indexName, String urlParams, String jsonQuery) throws IOException {
+
+    IndexMessageResponse response = messageSender.postQuery(false, indexName, urlParams, jsonQuery);
+    switch (response.getCode()) {
+      case 404:
+        throw new DocumentNotFoundException("404 for query?");
+      case 200:
+        return response.getBody();
+      default:
+        throw new IOException(unhandled(response));
+    }
+  }
+
+  /**
+   * Return the statistics of coalesced requests (null when coalescing is not used).
+   */
+  SingleFlight.Statistics coalesceStatistics() {
+    return singleFlight == null ? null : singleFlight.statistics();
+  }
+
+  /**
+   * Create a parser for the response body.
+   */
+  JsonParser createParser(String body) throws IOException {
+    return jsonFactory.createParser(body);
+  }
+
+  /**
+   * Execute the searches as a single _msearch returning the response of each search in order.
+   */
+  List<MultiResponse> findHitsMulti(List<String> indexNames, List<String> jsonQueries) throws IOException {
+
+    StringBuilder ndJson = new StringBuilder(200 * jsonQueries.size());
+    for (int i = 0; i < jsonQueries.size(); i++) {
+      ndJson.append("{\"index\":\"").append(indexNames.get(i)).append("\"}\n");
+      ndJson.append(jsonQueries.get(i)).append('\n');
+    }
+
+    IndexMessageResponse response = messageSender.postMultiSearch(ndJson.toString());
+    switch (response.getCode()) {
+      case 404:
+        throw new DocumentNotFoundException("404 for multi search?");
+      case 200:
+        return multiResponses(response.getBody(), jsonQueries.size());
+      default:
+        throw new IOException(unhandled(response));
+    }
+  }
+
+  /**
+   * Split the _msearch response into a parser per search response.
+   */
+  private List<MultiResponse> multiResponses(String body, int expected) throws IOException {
+
+    List<MultiResponse> responses = new ArrayList<>(expected);
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      parser.nextToken();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (!"responses".equals(field)) {
+          parser.skipChildren();
+        } else {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            int start = (int) parser.getTokenLocation().getCharOffset();
+            Exception error = readResponseError(parser);
+            if (error != null) {
+              responses.add(new MultiResponse(null, error));
+            } else {
+              int end = (int) parser.getTokenLocation().getCharOffset() + 1;
+              responses.add(new MultiResponse(body.substring(start, end), null));
+            }
+          }
+        }
+      }
+    }
+    if (responses.size() != expected) {
+      throw new IOException("Expected " + expected + " multi search responses but got " + responses.size());
+    }
+    return responses;
+  }
+
+  /**
+   * Read through the search response object returning the error if there is one.
+   */
+  private Exception readResponseError(JsonParser parser) throws IOException {
+    Object error = null;
+    int status = 200;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      if ("error".equals(field)) {
+        error = EJson.parse(parser);
+      } else if ("status".equals(field)) {
+        parser.nextToken();
+        status = parser.getIntValue();
+      } else {
+        parser.nextToken();
+        parser.skipChildren();
+      }
+    }
+    if (error == null) {
+      return null;
+    }
+    if (status == 404) {
+      return new DocumentNotFoundException("404 for query? error:" + error);
+    }
+    return new IOException("Unhandled response code " + status + " error:" + error);
+  }
+
+  /**
+   * The response of one search of a multi search.
+   */
+  static final class MultiResponse {
+
+    private final String body;
+
+    private final Exception error;
+
+    MultiResponse(String body, Exception error) {
+      this.body = body;
+      this.error = error;
+    }
+
+    /**
+     * Return the search response JSON throwing the error if the search failed.
+     */
+    String body() throws IOException {
+      if (error instanceof IOException) {
+        throw (IOException) error;
+      }
+      if (error != null) {
+        throw (RuntimeException) error;
+      }
+      return body;
+    }
   }
 
   /**
    * Execute as find scroll returning the resulting JSON response.
    */
   public JsonParser findScroll(String indexName, String jsonQuery) throws IOException {
-    return findInternal(true, indexName, jsonQuery);
+    return findScroll(indexName, null, jsonQuery);
   }
 
-  private JsonParser findInternal(boolean scroll, String indexName, String jsonQuery) throws IOException {
+  /**
+   * Execute as find scroll with additional URL parameters (such as routing).
+   */
+  public JsonParser findScroll(String indexName, String urlParams, String jsonQuery) throws IOException {
 
-    IndexMessageResponse response = messageSender.postQuery(scroll, indexName, jsonQuery);
+    IndexMessageResponse response = messageSender.postQuery(true, indexName, urlParams, jsonQuery);
     switch (response.getCode()) {
       case 404:
         throw new DocumentNotFoundException("404 for query?");
@@ -55,19 +279,167 @@ public class EQuerySend {
     }
   }
 
+  /**
+   * Open a point in time on the index returning the point in time id.
+   */
+  String openPointInTime(String indexName, String urlParams) throws IOException {
+
+    IndexMessageResponse response = messageSender.openPointInTime(indexName, urlParams);
+    switch (response.getCode()) {
+      case 404:
+        throw new DocumentNotFoundException("404 for point in time on index:" + indexName);
+      case 200:
+        Object pitId = EJson.parseObject(response.getBody()).get("id");
+        if (pitId == null) {
+          throw new IOException("No point in time id in response " + response.getBody());
+        }
+        return pitId.toString();
+      default:
+        throw new IOException(unhandled(response));
+    }
+  }
+
+  /**
+   * Execute the search of a point in time returning the JSON response.
+   * <p>
+   * The response is not cached or shared as the point in time is specific to the caller.
+   * </p>
+   */
+  JsonParser findPointInTime(String jsonQuery) throws IOException {
+
+    IndexMessageResponse response = messageSender.postQuery(false, null, null, jsonQuery);
+    switch (response.getCode()) {
+      case 404:
+        throw new DocumentNotFoundException("404 for point in time query (expired cursor?)");
+      case 200:
+        return jsonFactory.createParser(response.getBody());
+      default:
+        throw new IOException(unhandled(response));
+    }
+  }
+
+  /**
+   * Close the point in time.
+   */
+  void closePointInTime(String pitId) {
+    try {
+      messageSender.closePointInTime(pitId);
+    } catch (IOException e) {
+      logger.log(ERROR, "Error trying to close point in time: " + pitId, e);
+    }
+  }
+
+  /**
+   * Execute as count returning the count of matching documents.
+   */
+  long findCount(String indexName, String jsonQuery) throws IOException {
+    return findCount(indexName, null, jsonQuery);
+  }
+
+  /**
+   * Execute as count with additional URL parameters (such as routing).
+   */
+  long findCount(String indexName, String urlParams, String jsonQuery) throws IOException {
+
+    IndexMessageResponse response = messageSender.postCount(indexName, urlParams, jsonQuery);
+    switch (response.getCode()) {
+      case 404:
+        throw new DocumentNotFoundException("404 for count?");
+      case 200:
+        Map<String, Object> result = EJson.parseObject(response.getBody());
+        Object count = result.get("count");
+        return (count instanceof Number) ? ((Number) count).longValue() : 0;
+      default:
+        throw new IOException(unhandled(response));
+    }
+  }
+
   private String unhandled(IndexMessageResponse response) {
     return "Unhandled response code " + response.getCode() + " body:" + response.getBody();
   }
 
   /**
    * Execute Get by Id returning the JSON response.
+   * <p>
+   * The document source may come from the document (near) cache.
+   * </p>
    */
   JsonParser findById(String nameType, Object docId) throws IOException {
+    return findById(nameType, docId, null);
+  }
+
+  /**
+   * Execute Get by Id with additional URL parameters (such as routing).
+   * <p>
+   * Gets with URL parameters are not cached as the document cache is keyed by id only (and
+   * the same id with different routing can be different documents).
+   * </p>
+   */
+  JsonParser findById(String nameType, Object docId, String urlParams) throws IOException {
+
+    String id = docId.toString();
+    if (documentCache == null || urlParams != null || !documentCache.isCached(nameType)) {
+      return jsonFactory.createParser(getDocSource(nameType, id, urlParams));
+    }
+    byte[] cached = documentCache.get(nameType, id);
+    if (cached != null) {
+      return jsonFactory.createParser(cached);
+    }
+    long version = documentCache.version(nameType);
+    byte[] source = getDocSource(nameType, id, urlParams).getBytes(StandardCharsets.UTF_8);
+    documentCache.put(nameType, id, version, source);
+    return jsonFactory.createParser(source);
+  }
+
+  private String getDocSource(String nameType, String docId, String urlParams) throws IOException {
+    if (singleFlight != null) {
+      // identical concurrent requests (including routing) share the response, the "_id:" prefix distinguishes them from searches
+      return singleFlight.execute(nameType, "_id:" + requestKey(urlParams, docId), () -> getDocSourceDirect(nameType, docId, urlParams));
+    }
+    return getDocSourceDirect(nameType, docId, urlParams);
+  }
+
+  private String getDocSourceDirect(String nameType, String docId, String urlParams) throws IOException {
 
-    IndexMessageResponse response = messageSender.getDocSource(nameType, docId.toString());
+    IndexMessageResponse response = messageSender.getDocSource(nameType, docId, urlParams);
     switch (response.getCode()) {
       case 404:
         throw new DocumentNotFoundException("404 for docId:" + docId);
+      case 200:
+        return response.getBody();
+      default:
+        throw new IOException(unhandled(response));
+    }
+  }
+
+  /**
+   * Execute multi get (_mget) for the given ids returning the JSON response.
+   */
+  JsonParser findByIds(String indexName, String sourceIncludes, Collection<?> docIds) throws IOException {
+    return findByIds(indexName, sourceIncludes, null, docIds);
+  }
+
+  /**
+   * Execute multi get (_mget) with additional URL parameters (such as routing).
+   */
+  JsonParser findByIds(String indexName, String sourceIncludes, String urlParams, Collection<?> docIds) throws IOException {
+
+    StringBuilder jsonIds = new StringBuilder(20 + docIds.size() * 10);
+    jsonIds.append("{\"ids\":[");
+    boolean first = true;
+    for (Object docId : docIds) {
+      if (!first) {
+        jsonIds.append(',');
+      }
+      first = false;
+      jsonIds.append('"').append(docId.toString().replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+    }
+    jsonIds.append("]}");
+
+    IndexMessageResponse response = messageSender.postMultiGet(indexName, sourceIncludes, urlParams, jsonIds.toString());
+    switch (response.getCode()) {
+      case 404:
+        throw new DocumentNotFoundException("404 for multi get on index:" + indexName);
       case 200:
         return jsonFactory.createParser(response.getBody());
       default:
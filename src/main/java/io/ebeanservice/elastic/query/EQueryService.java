@@ -1,35 +1,71 @@
 package io.ebeanservice.elastic.query;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import io.avaje.applog.AppLog;
 import io.ebean.PagedList;
 import io.ebean.PersistenceIOException;
 import io.ebean.Query;
+import io.ebean.bean.PersistenceContext;
 import io.ebean.docstore.DocQueryContext;
 import io.ebean.docstore.RawDoc;
 import io.ebean.plugin.BeanDocType;
 import io.ebean.plugin.BeanType;
+import io.ebean.plugin.ExpressionPath;
 import io.ebean.plugin.Property;
 import io.ebean.plugin.SpiServer;
 import io.ebean.text.json.JsonBeanReader;
 import io.ebean.text.json.JsonContext;
 import io.ebean.text.json.JsonReadOptions;
+import io.ebeaninternal.api.SpiEbeanServer;
 import io.ebeaninternal.api.SpiQuery;
 import io.ebeaninternal.api.SpiTransaction;
+import io.ebeaninternal.server.core.SpiOrmQueryRequest;
+import io.ebeaninternal.server.deploy.BeanDescriptor;
+import io.ebeaninternal.server.querydefn.OrmQueryProperties;
+import io.ebeaninternal.server.transaction.DefaultPersistenceContext;
 import io.ebeanservice.docstore.api.DocQueryRequest;
 import io.ebeanservice.docstore.api.DocumentNotFoundException;
+import io.ebeanservice.elastic.DocRouting;
+import io.ebeanservice.elastic.aggregation.Aggregation;
+import io.ebeanservice.elastic.aggregation.AggregationQuery;
+import io.ebeanservice.elastic.aggregation.AggregationResult;
 import io.ebeanservice.elastic.bulk.BulkUpdate;
+import io.ebeanservice.elastic.querywriter.ChunkedQuery;
+import io.ebeanservice.elastic.querywriter.Collapse;
 import io.ebeanservice.elastic.querywriter.ElasticDocQueryContext;
 import io.ebeanservice.elastic.querywriter.ElasticJsonContext;
+import io.ebeanservice.elastic.querywriter.PagedQuery;
+import io.ebeanservice.elastic.search.CollapsedList;
+import io.ebeanservice.elastic.search.HitValuesReader;
 import io.ebeanservice.elastic.search.HitsPagedList;
+import io.ebeanservice.elastic.search.PageCursor;
 import io.ebeanservice.elastic.search.bean.BeanSearchParser;
+import io.ebeanservice.elastic.search.dto.DtoMapper;
+import io.ebeanservice.elastic.search.dto.DtoMappers;
+import io.ebeanservice.elastic.search.dto.DtoSearchParser;
+import io.ebeanservice.elastic.search.rawsource.ExportFormat;
 import io.ebeanservice.elastic.search.rawsource.RawSourceCopier;
 import io.ebeanservice.elastic.search.rawsource.RawSourceEach;
+import io.ebeanservice.elastic.search.rawsource.RawSourceExporter;
+import io.ebeanservice.elastic.support.ElasticConfig;
 import io.ebeanservice.elastic.support.IndexMessageSender;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -42,19 +78,36 @@ public class EQueryService {
 
   private static final System.Logger logger = AppLog.getLogger(EQueryService.class);
 
+  /**
+   * Number of hits or buckets fetched per request when reading all ids or attribute values.
+   */
+  private static final int VALUES_BATCH_SIZE = 1000;
+
   private final SpiServer server;
 
+  private final JsonFactory jsonFactory;
+
   private final EQuerySend send;
 
   private final JsonContext jsonContext;
 
   private final ElasticJsonContext elasticJsonContext;
 
-  public EQueryService(SpiServer server, JsonFactory jsonFactory, IndexMessageSender messageSender) {
+  private final ElasticConfig config;
+
+  /**
+   * Built on first use as jackson-databind is only required for DTO queries.
+   */
+  private DtoMappers dtoMappers;
+
+  public EQueryService(SpiServer server, JsonFactory jsonFactory, IndexMessageSender messageSender, ElasticConfig config,
+                       QueryResultCache queryCache, DocumentCache documentCache) {
     this.server = server;
+    this.config = config;
     this.jsonContext = server.json();
-    this.send = new EQuerySend(jsonFactory, messageSender);
-    this.elasticJsonContext = new ElasticJsonContext(jsonContext);
+    this.jsonFactory = jsonFactory;
+    this.send = new EQuerySend(jsonFactory, messageSender, config, queryCache, documentCache);
+    this.elasticJsonContext = new ElasticJsonContext(jsonContext, config.getDocValueProjectionMax());
   }
 
   private <T> DocQueryRequest<T> asRequest(DocQueryContext<T> req) {
@@ -68,28 +121,149 @@ public class EQueryService {
     DocQueryRequest<T> request = asRequest(req);
     SpiQuery<T> query = request.query();
     int firstRow = query.getFirstRow();
-    int maxRows = query.getMaxRows();
 
-    BeanSearchParser<T> parser = findHits(query, request.createJsonReadOptions());
+    PagedQuery pagedQuery = asPagedJson(query);
+    SearchHints hints = hints(query, null);
+    BeanSearchParser<T> parser = findHits(query, hints.searchParams(pagedQuery.routing()), pagedQuery.json(), request.createJsonReadOptions());
     try {
       List<T> list = parser.read();
       request.executeSecondaryQueries(false);
+      return pagedList(query, pagedQuery, hints, parser, firstRow, list);
 
-      return new HitsPagedList<>(firstRow, maxRows, list, parser.getTotal());
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Execute the query returning the page after the cursor using search_after.
+   * <p>
+   * The cost of each page is constant (unlike from/size where every shard collects and sorts
+   * firstRow + maxRows hits) and paging is not limited by the index max_result_window.
+   * </p>
+   * <p>
+   * The first page opens a point in time such that the pages are of a consistent view of the
+   * index. The point in time is carried in the next cursor and closed after the last page.
+   * </p>
+   *
+   * @param cursor The next cursor of the prior page (null for the first page)
+   */
+  public <T> HitsPagedList<T> findPagedList(SpiQuery<T> query, String cursor) {
+    int maxRows = query.getMaxRows();
+    if (maxRows < 1) {
+      throw new IllegalArgumentException("Cursor paging requires maxRows to be set on the query");
+    }
+    PageCursor after = PageCursor.decode(cursor);
+    List<Object> searchAfter = (after == null) ? null : after.searchAfter();
+    PagedQuery pagedQuery = ElasticDocQueryContext.asCursorJson(elasticJsonContext, query, config.getTrackTotalHits(), searchAfter);
+
+    JsonReadOptions options = readOptions(query);
+    SearchHints hints = hints(query, null);
+    try {
+      String pitId = (after != null) ? after.pitId() : send.openPointInTime(indexName(query), hints.countParams(pagedQuery.routing()));
+      BeanSearchParser<T> parser = createBeanParser(query, send.findPointInTime(pagedQuery.pitJson(pitId)), options);
+      List<T> list = parser.read();
+      HitsPagedList<T> pagedList = pagedList(query, pagedQuery, hints, parser, 0, list);
+      if (parser.getPitId() != null) {
+        // the point in time id can change between searches
+        pitId = parser.getPitId();
+      }
+      if (list.size() < maxRows) {
+        send.closePointInTime(pitId);
+      } else {
+        pagedList.setNextCursor(PageCursor.encode(pitId, parser.getLastSort()));
+      }
+      return pagedList;
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Execute the query with the hits collapsed on a property returning the top hit per value.
+   */
+  public <T> CollapsedList<T> findCollapsed(SpiQuery<T> query, Collapse collapse) {
+    String jsonQuery = ElasticDocQueryContext.asCollapseJson(elasticJsonContext, query, collapse);
+    BeanSearchParser<T> parser = findHits(query, hints(query, null).searchParams(null), jsonQuery, readOptions(query));
+    try {
+      List<T> list = parser.read();
+      return new CollapsedList<>(list, parser.getInnerHits());
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Execute the query reading the _source of the hits directly into DTOs (or records).
+   * <p>
+   * No entity beans are built and the persistence context is not used.
+   * </p>
+   */
+  public <T, D> List<D> findDto(SpiQuery<T> query, Class<D> dtoType) {
+    DtoMapper<D> mapper = dtoMappers().mapper(dtoType);
+    ChunkedQuery dtoQuery = ElasticDocQueryContext.asDtoJson(elasticJsonContext, query, mapper.properties());
+    try {
+      JsonParser json = send.findHits(indexName(query), hints(query, null).searchParams(dtoQuery.routing()), dtoQuery.json());
+      return new DtoSearchParser<>(json, mapper).read();
 
     } catch (IOException e) {
       throw new PersistenceIOException(e);
     }
   }
 
+  private synchronized DtoMappers dtoMappers() {
+    if (dtoMappers == null) {
+      dtoMappers = new DtoMappers(server.config().getObjectMapper());
+    }
+    return dtoMappers;
+  }
+
+  /**
+   * Return the default search hints of the index with the given query hints (can be null) overriding them.
+   */
+  private SearchHints hints(SpiQuery<?> query, SearchHints hints) {
+    SearchHints defaults = config.getSearchHints(indexName(query));
+    if (defaults == null) {
+      return (hints == null) ? SearchHints.none() : hints;
+    }
+    return (hints == null) ? defaults : defaults.with(hints);
+  }
+
+  /**
+   * Return read options using the persistence context of the query (or a new one).
+   */
+  private JsonReadOptions readOptions(SpiQuery<?> query) {
+    JsonReadOptions options = new JsonReadOptions();
+    PersistenceContext persistenceContext = query.getPersistenceContext();
+    options.setPersistenceContext(persistenceContext != null ? persistenceContext : new DefaultPersistenceContext());
+    return options;
+  }
+
+  private <T> HitsPagedList<T> pagedList(SpiQuery<T> query, PagedQuery pagedQuery, SearchHints hints, BeanSearchParser<T> parser, int firstRow, List<T> list) {
+    int maxRows = query.getMaxRows();
+    if (parser.isTotalAccurate()) {
+      return new HitsPagedList<>(firstRow, maxRows, list, parser.getTotal());
+    }
+    // total count above the track_total_hits threshold so use a separate _count request
+    String indexName = indexName(query);
+    String countJson = pagedQuery.countJson();
+    String urlParams = hints.countParams(pagedQuery.routing());
+    return new HitsPagedList<>(firstRow, maxRows, list, () -> server.backgroundExecutor().submit(() -> {
+      long count = send.findCount(indexName, urlParams, countJson);
+      return count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count;
+    }));
+  }
+
   /**
    * Execute the findList query request.
    */
   public <T> List<T> findList(DocQueryContext<T> req) {
     DocQueryRequest<T> request = asRequest(req);
-    BeanSearchParser<T> parser = findHits(request.query(), request.createJsonReadOptions());
+    SpiQuery<T> query = request.query();
     try {
-      List<T> list = parser.read();
+      List<T> list = findList(query, hints(query, null), request.createJsonReadOptions());
       request.executeSecondaryQueries(false);
       return list;
 
@@ -98,10 +272,133 @@ public class EQueryService {
     }
   }
 
-  private <T> BeanSearchParser<T> findHits(SpiQuery<T> query, JsonReadOptions readOptions) {
+  /**
+   * Execute the query with the given search hints returning the list of beans.
+   */
+  public <T> List<T> findList(SpiQuery<T> query, SearchHints hints) {
+    try {
+      return findList(query, hints(query, hints), readOptions(query));
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  private <T> List<T> findList(SpiQuery<T> query, SearchHints hints, JsonReadOptions readOptions) throws IOException {
+    ChunkedQuery chunked = asChunkedJson(query);
+    String urlParams = hints.searchParams(chunked.routing());
+    if (chunked.isChunked()) {
+      return findListChunked(query, chunked, urlParams, readOptions);
+    }
+    return findHits(query, urlParams, chunked.json(), readOptions).read();
+  }
+
+  /**
+   * Execute the chunks of a large IN list query concurrently merging the results.
+   */
+  private <T> List<T> findListChunked(SpiQuery<T> query, ChunkedQuery chunked, String urlParams, JsonReadOptions readOptions) throws IOException {
+    String indexName = indexName(query);
+    List<Future<JsonParser>> responses = new ArrayList<>(chunked.size());
+    for (int i = 0; i < chunked.size(); i++) {
+      String chunkJson = chunked.chunk(i);
+      responses.add(server.backgroundExecutor().submit(() -> send.findHits(indexName, urlParams, chunkJson)));
+    }
 
+    // read the responses in order on this thread (shared persistence context)
+    BeanType<T> desc = query.getBeanDescriptor();
+    Map<Object, T> merged = new LinkedHashMap<>();
+    for (Future<JsonParser> response : responses) {
+      for (T bean : createBeanParser(query, awaitChunk(response), readOptions).read()) {
+        merged.putIfAbsent(desc.id(bean), bean);
+      }
+    }
+    List<T> list = new ArrayList<>(merged.values());
+    int maxRows = query.getMaxRows();
+    if (maxRows > 0 && list.size() > maxRows) {
+      return new ArrayList<>(list.subList(0, maxRows));
+    }
+    return list;
+  }
+
+  /**
+   * Execute the queries as _msearch requests returning the list of beans for each query in order.
+   * <p>
+   * Each _msearch contains at most multiSearchMaxBatch of the queries.
+   * </p>
+   */
+  public List<List<?>> findListBatch(List<? extends Query<?>> queries) {
+    int maxBatch = Math.max(1, config.getMultiSearchMaxBatch());
+    List<List<?>> lists = new ArrayList<>(queries.size());
+    for (int from = 0; from < queries.size(); from += maxBatch) {
+      lists.addAll(findListMulti(queries.subList(from, Math.min(from + maxBatch, queries.size()))));
+    }
+    return lists;
+  }
+
+  /**
+   * Execute the queries as a single _msearch returning the list of beans for each query in order.
+   */
+  private List<List<?>> findListMulti(List<? extends Query<?>> queries) {
+    SpiEbeanServer ebeanServer = (SpiEbeanServer) server;
+    List<SpiOrmQueryRequest<?>> requests = new ArrayList<>(queries.size());
+    List<String> indexNames = new ArrayList<>(queries.size());
+    List<String> jsonQueries = new ArrayList<>(queries.size());
+    for (Query<?> query : queries) {
+      SpiOrmQueryRequest<?> request = ebeanServer.createQueryRequest(SpiQuery.Type.LIST, query, null);
+      requests.add(request);
+      indexNames.add(indexName(request.query()));
+      jsonQueries.add(asChunkedJson(request.query()).json());
+    }
     try {
-      JsonParser json = send.findHits(indexName(query), asJson(query));
+      List<EQuerySend.MultiResponse> responses = send.findHitsMulti(indexNames, jsonQueries);
+      List<List<?>> lists = new ArrayList<>(queries.size());
+      for (int i = 0; i < requests.size(); i++) {
+        lists.add(readList(requests.get(i), responses.get(i)));
+      }
+      return lists;
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Read the beans of the search response executing the secondary queries of the request.
+   */
+  private <T> List<T> readList(SpiOrmQueryRequest<T> request, EQuerySend.MultiResponse response) throws IOException {
+    request.initTransIfRequired();
+    try {
+      JsonParser json = send.createParser(response.body());
+      List<T> list = createBeanParser(request.query(), json, request.createJsonReadOptions()).read();
+      request.executeSecondaryQueries(false);
+      return list;
+
+    } finally {
+      request.endTransIfRequired();
+    }
+  }
+
+  private JsonParser awaitChunk(Future<JsonParser> response) throws IOException {
+    try {
+      return response.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PersistenceIOException("Interrupted waiting for chunked query", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  private <T> BeanSearchParser<T> findHits(SpiQuery<T> query, String urlParams, String jsonQuery, JsonReadOptions readOptions) {
+
+    try {
+      JsonParser json = send.findHits(indexName(query), urlParams, jsonQuery);
       return createBeanParser(query, json, readOptions);
 
     } catch (IOException e) {
@@ -112,15 +409,40 @@ public class EQueryService {
   /**
    * Execute the findEachWhile query request.
    */
-  public <T> void findEachWhile(DocQueryContext<T> request, Predicate<T> consumer) {
-    processEachWhile(consumer, createQueryEach(request));
+  public <T> void findEachWhile(DocQueryContext<T> req, Predicate<T> consumer) {
+    DocQueryRequest<T> request = asRequest(req);
+    ChunkedQuery chunked = asIterateJson(request.query());
+    if (!chunked.isChunked()) {
+      processEachWhile(consumer, createQueryEach(request, chunked, chunked.json()));
+    } else {
+      DistinctWhile<T> distinct = new DistinctWhile<>(request.query().getBeanDescriptor(), consumer);
+      for (int i = 0; i < chunked.size() && !distinct.stopped; i++) {
+        processEachWhile(distinct, createQueryEach(request, chunked, chunked.chunk(i)));
+      }
+    }
   }
 
   /**
    * Execute the findEach query request.
    */
-  public <T> void findEach(DocQueryContext<T> request, Consumer<T> consumer) {
-    EQueryEach<T> each = createQueryEach(request);
+  public <T> void findEach(DocQueryContext<T> req, Consumer<T> consumer) {
+    DocQueryRequest<T> request = asRequest(req);
+    ChunkedQuery chunked = asIterateJson(request.query());
+    if (!chunked.isChunked()) {
+      findEach(request, chunked, chunked.json(), consumer);
+    } else {
+      DistinctWhile<T> distinct = new DistinctWhile<>(request.query().getBeanDescriptor(), bean -> {
+        consumer.accept(bean);
+        return true;
+      });
+      for (int i = 0; i < chunked.size(); i++) {
+        findEach(request, chunked, chunked.chunk(i), distinct::test);
+      }
+    }
+  }
+
+  private <T> void findEach(DocQueryRequest<T> request, ChunkedQuery chunked, String jsonQuery, Consumer<T> consumer) {
+    EQueryEach<T> each = createQueryEach(request, chunked, jsonQuery);
     try {
       if (each.consumeInitial(consumer)) {
         while (true) {
@@ -137,12 +459,10 @@ public class EQueryService {
     }
   }
 
-  private <T> EQueryEach<T> createQueryEach(DocQueryContext<T> req) {
-    DocQueryRequest<T> request = asRequest(req);
-    SpiQuery<T> query = request.query();
-    String indexName = indexName(query);
-    String jsonQuery = asJson(query);
-    return new EQueryEach<>(request, send, jsonContext, indexName, jsonQuery);
+  private <T> EQueryEach<T> createQueryEach(DocQueryRequest<T> request, ChunkedQuery chunked, String jsonQuery) {
+    String indexName = indexName(request.query());
+    String urlParams = hints(request.query(), null).scrollParams(chunked.routing());
+    return new EQueryEach<>(request, send, jsonContext, indexName, urlParams, jsonQuery);
   }
 
   /**
@@ -158,19 +478,123 @@ public class EQueryService {
       // set tenantId
     }
 
-    T bean = findById(query.getBeanDescriptor(), query.getId(), request.createJsonReadOptions());
+    T bean;
+    if (routed(query.getBeanDescriptor())) {
+      bean = findByIdRouted(query, request.createJsonReadOptions());
+    } else {
+      bean = findById(query.getBeanDescriptor(), query.getId(), null, request.createJsonReadOptions());
+    }
     request.executeSecondaryQueries(false);
     return bean;
   }
 
+  /**
+   * Execute multi get (_mget) for the given ids returning the beans found (in the order of the ids).
+   * <p>
+   * The _source is filtered by the select and fetch properties of the query and the beans are
+   * registered with the persistence context of the query (or a new one) as per findById.
+   * </p>
+   */
+  public <T> List<T> findByIds(SpiQuery<T> query, Collection<?> ids) {
+    if (ids.isEmpty()) {
+      return new ArrayList<>();
+    }
+    BeanType<T> desc = query.getBeanDescriptor();
+    Set<String> includes = ElasticDocQueryContext.sourceIncludes(query.getDetail());
+    String sourceIncludes = includes.isEmpty() ? null : String.join(",", includes);
+
+    JsonReadOptions options = readOptions(query);
+    if (routed(desc)) {
+      return findByIdsRouted(query, sourceIncludes, ids, options);
+    }
+    try {
+      JsonParser parser = send.findByIds(desc.docStore().indexName(), sourceIncludes, ids);
+      return new EQuery<>(desc, jsonContext, options).createMultiGetParser(parser).read();
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Return true if the documents of the bean type are indexed with a routing value.
+   */
+  private boolean routed(BeanType<?> desc) {
+    return desc.root().type().isAnnotationPresent(DocRouting.class);
+  }
+
+  /**
+   * Return the routing when the query pins a single routing value (null otherwise).
+   */
+  private String singleRouting(ChunkedQuery chunked) {
+    String routing = chunked.routing();
+    return (routing == null || routing.indexOf(',') > -1) ? null : routing;
+  }
+
+  /**
+   * Find by id of a routed type using get with the routing pinned by the query and otherwise an ids query.
+   */
+  private <T> T findByIdRouted(SpiQuery<T> query, JsonReadOptions options) {
+    ChunkedQuery chunked = asChunkedJson(query);
+    String routing = singleRouting(chunked);
+    if (routing != null) {
+      return findById(query.getBeanDescriptor(), query.getId(), hints(query, null).countParams(routing), options);
+    }
+    try {
+      JsonParser json = send.findHitsDirect(indexName(query), hints(query, null).searchParams(null), chunked.json());
+      List<T> list = createBeanParser(query, json, options).read();
+      return list.isEmpty() ? null : list.get(0);
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Find by ids of a routed type using multi get with the routing pinned by the query and otherwise an ids query.
+   */
+  private <T> List<T> findByIdsRouted(SpiQuery<T> query, String sourceIncludes, Collection<?> ids, JsonReadOptions options) {
+    SpiQuery<T> idsQuery = query.copy();
+    idsQuery.where().idIn(ids);
+    idsQuery.setMaxRows(ids.size());
+    ChunkedQuery chunked = asChunkedJson(idsQuery);
+    String routing = singleRouting(chunked);
+    try {
+      BeanType<T> desc = query.getBeanDescriptor();
+      if (routing != null) {
+        JsonParser parser = send.findByIds(indexName(query), sourceIncludes, hints(query, null).countParams(routing), ids);
+        return new EQuery<>(desc, jsonContext, options).createMultiGetParser(parser).read();
+      }
+      Map<String, T> found = new HashMap<>();
+      JsonParser json = send.findHitsDirect(indexName(query), hints(query, null).searchParams(null), chunked.json());
+      for (T bean : createBeanParser(idsQuery, json, options).read()) {
+        found.put(desc.id(bean).toString(), bean);
+      }
+      // return in the order of the ids as per multi get
+      List<T> list = new ArrayList<>(found.size());
+      for (Object id : ids) {
+        T bean = found.get(id.toString());
+        if (bean != null) {
+          list.add(bean);
+        }
+      }
+      return list;
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
   /**
    * Execute find by id.
+   *
+   * @param urlParams Additional URL parameters such as routing (null for none)
    */
-  private <T> T findById(BeanType<T> desc, Object id, JsonReadOptions options) {
+  private <T> T findById(BeanType<T> desc, Object id, String urlParams, JsonReadOptions options) {
 
     BeanDocType<T> beanDocType = desc.docStore();
     try {
-      JsonParser parser = send.findById(beanDocType.indexName(), id);
+      JsonParser parser = send.findById(beanDocType.indexName(), id, urlParams);
 
       JsonBeanReader<T> reader = new EQuery<>(desc, jsonContext, options).createReader(parser);
       T bean = reader.read();
@@ -188,6 +612,200 @@ public class EQueryService {
     }
   }
 
+  /**
+   * Execute the query returning the count of matching documents (via _count API).
+   */
+  public <T> int findCount(SpiQuery<T> query) {
+    return findCount(query, null);
+  }
+
+  /**
+   * Execute the query with the given search hints returning the count of matching documents.
+   */
+  public <T> int findCount(SpiQuery<T> query, SearchHints hints) {
+    try {
+      PagedQuery countQuery = ElasticDocQueryContext.asPagedJson(elasticJsonContext, query, ElasticDocQueryContext.TRACK_TOTAL_HITS_NONE);
+      String urlParams = hints(query, hints).countParams(countQuery.routing());
+      long count = send.findCount(indexName(query), urlParams, countQuery.countJson());
+      return count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count;
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Execute the query returning the ids of the matching documents (fetching no _source).
+   */
+  @SuppressWarnings("unchecked")
+  public <A, T> List<A> findIds(SpiQuery<T> query) {
+    BeanDescriptor<T> desc = query.getBeanDescriptor();
+    boolean scroll = query.getMaxRows() <= 0;
+    String jsonQuery = ElasticDocQueryContext.asIdsJson(elasticJsonContext, query, scroll ? VALUES_BATCH_SIZE : 0);
+
+    List<Object> docIds = findHitValues(query, jsonQuery, null, scroll);
+    List<A> ids = new ArrayList<>(docIds.size());
+    for (Object docId : docIds) {
+      ids.add((A) desc.convertId(docId));
+    }
+    return ids;
+  }
+
+  /**
+   * Execute the query returning the values of the single selected property.
+   * <p>
+   * The values are read from doc values or for distinct queries from a composite aggregation.
+   * </p>
+   */
+  @SuppressWarnings("unchecked")
+  public <A, T> List<A> findSingleAttributeList(SpiQuery<T> query) {
+    BeanType<T> desc = query.getBeanDescriptor();
+    String property = singleProperty(query);
+    String field = desc.root().docStore().rawProperty(property);
+
+    List<Object> values;
+    if (query.isDistinct()) {
+      values = findDistinctValues(query, property);
+    } else {
+      boolean scroll = query.getMaxRows() <= 0;
+      String jsonQuery = ElasticDocQueryContext.asDocValueJson(elasticJsonContext, query, Collections.singletonList(field), scroll ? VALUES_BATCH_SIZE : 0);
+      values = findHitValues(query, jsonQuery, field, scroll);
+    }
+
+    ExpressionPath path = desc.expressionPath(property);
+    List<A> result = new ArrayList<>(values.size());
+    for (Object value : values) {
+      result.add(value == null ? null : (A) path.convert(value));
+    }
+    return result;
+  }
+
+  /**
+   * Return the single property selected by the query.
+   */
+  private String singleProperty(SpiQuery<?> query) {
+    OrmQueryProperties rootProps = query.getDetail().getChunk(null, false);
+    Set<String> included = rootProps.getIncluded();
+    if (included == null || included.size() != 1) {
+      throw new IllegalStateException("Expected a single property to be selected but got " + included);
+    }
+    return included.iterator().next();
+  }
+
+  /**
+   * Read a single value per hit (id or doc value) scrolling all the hits if required.
+   */
+  private List<Object> findHitValues(SpiQuery<?> query, String jsonQuery, String field, boolean scroll) {
+    String indexName = indexName(query);
+    SearchHints hints = hints(query, null);
+    Set<String> scrollIds = new LinkedHashSet<>();
+    try {
+      if (!scroll) {
+        return new HitValuesReader(send.findHits(indexName, hints.searchParams(null), jsonQuery), field).read();
+      }
+      List<Object> values = new ArrayList<>();
+      HitValuesReader reader = new HitValuesReader(send.findScroll(indexName, hints.scrollParams(null), jsonQuery), field);
+      while (true) {
+        values.addAll(reader.read());
+        scrollIds.add(reader.getScrollId());
+        if (reader.zeroHits()) {
+          return values;
+        }
+        reader = reader.moreJson(send.findNextScroll(reader.getScrollId()));
+      }
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+
+    } finally {
+      if (!scrollIds.isEmpty()) {
+        send.clearScrollIds(scrollIds);
+      }
+    }
+  }
+
+  /**
+   * Read the distinct values of the property via a composite aggregation.
+   */
+  @SuppressWarnings("unchecked")
+  private List<Object> findDistinctValues(SpiQuery<?> query, String property) {
+    int maxRows = query.getMaxRows();
+    Aggregation composite = Aggregation.composite("values", Aggregation.terms("value", property)).size(VALUES_BATCH_SIZE);
+    List<Object> values = new ArrayList<>();
+    compositeEach(query, composite, bucket -> {
+      values.add(((Map<String, Object>) bucket.getKey()).get("value"));
+      return maxRows == 0 || values.size() < maxRows;
+    });
+    return values;
+  }
+
+  /**
+   * Execute the aggregations (with size 0) for the query returning the results by aggregation name.
+   */
+  public <T> Map<String, AggregationResult> aggregate(SpiQuery<T> query, SearchHints hints, List<Aggregation> aggregations) {
+    try {
+      AggregationQuery request = aggregationQuery(query, aggregations);
+      return findAggregations(indexName(query), hints(query, hints).searchParams(null), request.json(null));
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Execute the composite aggregation for the query processing all the buckets paging via the after key.
+   */
+  public <T> void aggregateEach(SpiQuery<T> query, Aggregation composite, Consumer<AggregationResult.Bucket> consumer) {
+    compositeEach(query, composite, bucket -> {
+      consumer.accept(bucket);
+      return true;
+    });
+  }
+
+  /**
+   * Process the buckets of the composite aggregation while the predicate returns true.
+   */
+  private void compositeEach(SpiQuery<?> query, Aggregation composite, Predicate<AggregationResult.Bucket> consumer) {
+    if (!composite.isComposite()) {
+      throw new IllegalArgumentException("Expected a composite aggregation but got " + composite.getName());
+    }
+    String indexName = indexName(query);
+    String urlParams = hints(query, null).searchParams(null);
+    try {
+      AggregationQuery request = aggregationQuery(query, Collections.singletonList(composite));
+      Map<String, Map<String, Object>> afterKeys = null;
+      while (true) {
+        AggregationResult result = findAggregations(indexName, urlParams, request.json(afterKeys)).get(composite.getName());
+        if (result == null) {
+          return;
+        }
+        for (AggregationResult.Bucket bucket : result.getBuckets()) {
+          if (!consumer.test(bucket)) {
+            return;
+          }
+        }
+        Map<String, Object> afterKey = result.getAfterKey();
+        if (afterKey == null) {
+          return;
+        }
+        afterKeys = Collections.singletonMap(composite.getName(), afterKey);
+      }
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  private AggregationQuery aggregationQuery(SpiQuery<?> query, List<Aggregation> aggregations) {
+    BeanDocType<?> docType = query.getBeanDescriptor().root().docStore();
+    String queryJson = ElasticDocQueryContext.asQueryJson(elasticJsonContext, query);
+    return new AggregationQuery(elasticJsonContext, docType, queryJson, aggregations);
+  }
+
+  private Map<String, AggregationResult> findAggregations(String indexName, String urlParams, String jsonQuery) throws IOException {
+    HitValuesReader reader = new HitValuesReader(send.findHits(indexName, urlParams, jsonQuery), null);
+    reader.read();
+    return AggregationResult.of(reader.getAggregations());
+  }
+
   /**
    * Execute copyIndexSince which does a raw index to index copy.
    */
@@ -235,9 +853,57 @@ public class EQueryService {
     processEachWhile(consumer, new RawSourceEach(send, nameType, jsonQuery));
   }
 
+  /**
+   * Export the _source of all the hits of the raw query to the output stream returning the number exported.
+   */
+  public long export(String indexName, String rawQuery, OutputStream out, ExportFormat format) {
+    return exportEach(indexName, rawQuery, out, format);
+  }
+
+  /**
+   * Export the _source of all the hits of the query to the output stream returning the number exported.
+   */
+  public <T> long export(SpiQuery<T> query, OutputStream out, ExportFormat format) {
+    return exportEach(indexName(query), ElasticDocQueryContext.asIterateRawJson(elasticJsonContext, query), out, format);
+  }
+
+  private long exportEach(String indexName, String jsonQuery, OutputStream out, ExportFormat format) {
+    Set<String> scrollIds = new LinkedHashSet<>();
+    try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+      // the output stream is owned by the caller
+      gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      gen.setRootValueSeparator(null);
+      if (format == ExportFormat.JSON_ARRAY) {
+        gen.writeStartArray();
+      }
+      long count = 0;
+      RawSourceExporter exporter = new RawSourceExporter(send.findScroll(indexName, jsonQuery), gen, format);
+      count += exporter.export();
+      scrollIds.add(exporter.getScrollId());
+      boolean more = !exporter.allHitsRead();
+      while (more) {
+        exporter = new RawSourceExporter(send.findNextScroll(exporter.getScrollId()), gen, format);
+        count += exporter.export();
+        scrollIds.add(exporter.getScrollId());
+        more = !exporter.zeroHits();
+      }
+      if (format == ExportFormat.JSON_ARRAY) {
+        gen.writeEndArray();
+      }
+      gen.flush();
+      return count;
+
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+
+    } finally {
+      send.clearScrollIds(scrollIds);
+    }
+  }
+
   private <T> long findEachRawSource(Query<T> query, Consumer<RawDoc> consumer) {
     SpiQuery<T> spiQuery = (SpiQuery<T>) query;
-    return processEach(consumer, indexName(spiQuery), asJson(spiQuery));
+    return processEach(consumer, indexName(spiQuery), ElasticDocQueryContext.asIterateRawJson(elasticJsonContext, spiQuery));
   }
 
   private long processEach(Consumer<RawDoc> consumer, String indexName, String jsonQuery) {
@@ -282,11 +948,26 @@ public class EQueryService {
     return new EQuery<>(query, jsonContext, options).createParser(json);
   }
 
+
+  /**
+   * Return the paged query as ElasticSearch JSON format with total hits tracking.
+   */
+  private PagedQuery asPagedJson(SpiQuery<?> query) {
+    return ElasticDocQueryContext.asPagedJson(elasticJsonContext, query, config.getTrackTotalHits());
+  }
+
+  /**
+   * Return the query as ElasticSearch JSON format with large IN lists chunked.
+   */
+  private ChunkedQuery asChunkedJson(SpiQuery<?> query) {
+    return ElasticDocQueryContext.asChunkedJson(elasticJsonContext, query, config.getInListChunkSize());
+  }
+
   /**
-   * Return the query as ElasticSearch JSON format.
+   * Return the iteration (findEach) query as ElasticSearch JSON format with large IN lists chunked.
    */
-  private String asJson(SpiQuery<?> query) {
-    return ElasticDocQueryContext.asJson(elasticJsonContext, query);
+  private ChunkedQuery asIterateJson(SpiQuery<?> query) {
+    return ElasticDocQueryContext.asIterateJson(elasticJsonContext, query, config.getInListChunkSize());
   }
 
   private String indexName(SpiQuery<?> query) {
@@ -297,4 +978,43 @@ public class EQueryService {
       return query.getBeanDescriptor().docStore().indexName();
     }
   }
+
+  /**
+   * Return the statistics of coalesced requests (null when coalescing is not used).
+   */
+  public SingleFlight.Statistics coalesceStatistics() {
+    return send.coalesceStatistics();
+  }
+
+  /**
+   * Consumer for chunked queries that skips beans already consumed by a prior chunk.
+   */
+  private static class DistinctWhile<T> implements Predicate<T> {
+
+    private final BeanType<T> desc;
+
+    private final Predicate<T> consumer;
+
+    private final Set<Object> ids = new HashSet<>();
+
+    private boolean stopped;
+
+    DistinctWhile(BeanType<T> desc, Predicate<T> consumer) {
+      this.desc = desc;
+      this.consumer = consumer;
+    }
+
+    @Override
+    public boolean test(T bean) {
+      if (!ids.add(desc.id(bean))) {
+        // already consumed by a prior chunk
+        return true;
+      }
+      if (!consumer.test(bean)) {
+        stopped = true;
+        return false;
+      }
+      return true;
+    }
+  }
 }
@@ -0,0 +1,152 @@
+package io.ebeanservice.elastic.query;
+
+import io.ebean.PersistenceIOException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batches searches issued concurrently into a single _msearch request.
+ * <p>
+ * The first search of a batch waits up to the window for other searches to join and then
+ * sends the batch on behalf of all of them. There are no additional threads involved.
+ * </p>
+ */
+class MultiSearchBatcher {
+
+  private final EQuerySend send;
+
+  private final long windowNanos;
+
+  private final int maxBatch;
+
+  private final Object lock = new Object();
+
+  private List<Pending> pending = new ArrayList<>();
+
+  private boolean collecting;
+
+  MultiSearchBatcher(EQuerySend send, int windowMillis, int maxBatch) {
+    this.send = send;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.maxBatch = Math.max(1, maxBatch);
+  }
+
+  /**
+   * Execute the search potentially batched with other concurrent searches returning the response body.
+   */
+  String search(String indexName, String jsonQuery) throws IOException {
+    Pending search = new Pending(indexName, jsonQuery);
+    boolean leader;
+    synchronized (lock) {
+      pending.add(search);
+      leader = !collecting;
+      if (leader) {
+        collecting = true;
+      } else if (pending.size() >= maxBatch) {
+        lock.notifyAll();
+      }
+    }
+    if (leader) {
+      send(collect());
+    }
+    return search.await();
+  }
+
+  /**
+   * Wait for the window (or a full batch) returning the searches to send.
+   */
+  private List<Pending> collect() {
+    synchronized (lock) {
+      long deadline = System.nanoTime() + windowNanos;
+      try {
+        long remaining;
+        while (pending.size() < maxBatch && (remaining = deadline - System.nanoTime()) > 0) {
+          TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+        }
+      } catch (InterruptedException e) {
+        // send what we have
+        Thread.currentThread().interrupt();
+      }
+      List<Pending> batch = pending;
+      pending = new ArrayList<>();
+      collecting = false;
+      return batch;
+    }
+  }
+
+  private void send(List<Pending> batch) {
+    if (batch.size() == 1) {
+      Pending single = batch.get(0);
+      try {
+        single.result.complete(send.searchDirect(single.indexName, single.jsonQuery));
+      } catch (Throwable e) {
+        single.result.completeExceptionally(e);
+      }
+      return;
+    }
+    List<String> indexNames = new ArrayList<>(batch.size());
+    List<String> jsonQueries = new ArrayList<>(batch.size());
+    for (Pending search : batch) {
+      indexNames.add(search.indexName);
+      jsonQueries.add(search.jsonQuery);
+    }
+    try {
+      List<EQuerySend.MultiResponse> responses = send.findHitsMulti(indexNames, jsonQueries);
+      for (int i = 0; i < batch.size(); i++) {
+        batch.get(i).complete(responses.get(i));
+      }
+    } catch (Throwable e) {
+      for (Pending search : batch) {
+        search.result.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * A search waiting to be sent.
+   */
+  private static class Pending {
+
+    private final String indexName;
+
+    private final String jsonQuery;
+
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+
+    Pending(String indexName, String jsonQuery) {
+      this.indexName = indexName;
+      this.jsonQuery = jsonQuery;
+    }
+
+    void complete(EQuerySend.MultiResponse response) {
+      try {
+        result.complete(response.body());
+      } catch (IOException | RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    }
+
+    String await() throws IOException {
+      try {
+        return result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PersistenceIOException("Interrupted waiting for multi search", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new PersistenceIOException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package io.ebeanservice.elastic.query;
+
+import io.ebeanservice.elastic.bulk.BulkListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, TTL based cache of search responses keyed by index name and query JSON.
+ * <p>
+ * The raw response JSON is cached (not beans) such that each query hydrates its own beans.
+ * Entries for an index are invalidated when Bulk API or update by query requests for that
+ * index are sent. Each index has a version and entries loaded with an older version are
+ * treated as misses such that a search that started before a write is not cached after it.
+ * </p>
+ * <p>
+ * Writes are not refreshed (as that adds latency and segment churn to every write) so for a
+ * grace period after a write (at least the index refresh interval) search responses for the
+ * index are not cached, as they may not yet include the write.
+ * </p>
+ */
+public class QueryResultCache implements BulkListener {
+
+  /**
+   * The version returned during the grace period after a write meaning the response is not cached.
+   */
+  static final long NOT_CACHEABLE = -1;
+
+  private final int maxEntries;
+
+  private final long ttlNanos;
+
+  private final long graceNanos;
+
+  private final Map<Key, Entry> entries;
+
+  private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  private final Map<String, Long> flushedNanos = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  private final LongAdder invalidations = new LongAdder();
+
+  public QueryResultCache(int maxEntries, int ttlMillis) {
+    this(maxEntries, ttlMillis, 1000);
+  }
+
+  /**
+   * Construct with the grace period after a write during which responses are not cached.
+   *
+   * @param graceMillis The time after a write for it to be refreshed (at least the index refresh interval)
+   */
+  public QueryResultCache(int maxEntries, int ttlMillis, int graceMillis) {
+    this.maxEntries = maxEntries;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.graceNanos = TimeUnit.MILLISECONDS.toNanos(graceMillis);
+    this.entries = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true);
+  }
+
+  /**
+   * Return the current version of the index (obtain before executing the search).
+   * <p>
+   * Returns NOT_CACHEABLE during the grace period after a write to the index.
+   * </p>
+   */
+  long version(String indexName) {
+    Long flushed = flushedNanos.get(indexName);
+    if (flushed != null && System.nanoTime() - flushed < graceNanos) {
+      return NOT_CACHEABLE;
+    }
+    return currentVersion(indexName);
+  }
+
+  private long currentVersion(String indexName) {
+    return versions.computeIfAbsent(indexName, name -> new AtomicLong()).get();
+  }
+
+  /**
+   * Return the cached response or null if not in the cache.
+   */
+  String get(String indexName, String jsonQuery) {
+    long version = currentVersion(indexName);
+    Key key = new Key(indexName, jsonQuery);
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        if (entry.version == version && System.nanoTime() - entry.loadedNanos < ttlNanos) {
+          hits.increment();
+          return entry.response;
+        }
+        entries.remove(key);
+        evictions.increment();
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Put the response into the cache if the index has not been written to since the given version.
+   */
+  void put(String indexName, String jsonQuery, long version, String response) {
+    if (version == NOT_CACHEABLE || currentVersion(indexName) != version) {
+      return;
+    }
+    Entry entry = new Entry(version, System.nanoTime(), response);
+    synchronized (entries) {
+      entries.put(new Key(indexName, jsonQuery), entry);
+      if (entries.size() > maxEntries) {
+        Iterator<Entry> it = entries.values().iterator();
+        it.next();
+        it.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Invalidate the entries for the indexes that have been written to starting the grace period.
+   */
+  @Override
+  public void flushed(Map<String, Set<String>> writtenIds) {
+    long now = System.nanoTime();
+    for (String indexName : writtenIds.keySet()) {
+      flushedNanos.put(indexName, now);
+      versions.computeIfAbsent(indexName, name -> new AtomicLong()).incrementAndGet();
+      invalidations.increment();
+    }
+  }
+
+  /**
+   * Return the hit, miss, eviction and invalidation statistics.
+   */
+  public Statistics statistics() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return new Statistics(size, hits.sum(), misses.sum(), evictions.sum(), invalidations.sum());
+  }
+
+  private static final class Key {
+
+    private final String indexName;
+
+    private final String jsonQuery;
+
+    Key(String indexName, String jsonQuery) {
+      this.indexName = indexName;
+      this.jsonQuery = jsonQuery;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return indexName.equals(key.indexName) && jsonQuery.equals(key.jsonQuery);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(indexName, jsonQuery);
+    }
+  }
+
+  private static final class Entry {
+
+    private final long version;
+
+    private final long loadedNanos;
+
+    private final String response;
+
+    Entry(long version, long loadedNanos, String response) {
+      this.version = version;
+      this.loadedNanos = loadedNanos;
+      this.response = response;
+    }
+  }
+
+  /**
+   * Statistics of the query result cache.
+   */
+  public static class Statistics {
+
+    private final int size;
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long evictionCount;
+
+    private final long invalidationCount;
+
+    Statistics(int size, long hitCount, long missCount, long evictionCount, long invalidationCount) {
+      this.size = size;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.invalidationCount = invalidationCount;
+    }
+
+    /**
+     * Return the number of entries in the cache.
+     */
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * Return the number of cache hits.
+     */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /**
+     * Return the number of cache misses.
+     */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /**
+     * Return the number of entries evicted (size bound, expired or stale).
+     */
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    /**
+     * Return the number of index invalidations.
+     */
+    public long getInvalidationCount() {
+      return invalidationCount;
+    }
+
+    /**
+     * Return the hit ratio (0 to 1).
+     */
+    public double getHitRatio() {
+      long total = hitCount + missCount;
+      return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+      return "size:" + size + " hits:" + hitCount + " misses:" + missCount + " evictions:" + evictionCount + " invalidations:" + invalidationCount;
+    }
+  }
+}
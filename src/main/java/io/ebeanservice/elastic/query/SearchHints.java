@@ -0,0 +1,217 @@
+package io.ebeanservice.elastic.query;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Search request hints sent as URL parameters of the search (request_cache, preference etc).
+ * <pre>{@code
+ *
+ *   // cache the (size 0) aggregation results on the shards and keep using the same shard copies
+ *   SearchHints hints = SearchHints.create().requestCache(true).preference(sessionId);
+ *
+ * }</pre>
+ * <p>
+ * Default hints per index are set via ElasticConfig and hints given for a query override them.
+ * </p>
+ */
+public class SearchHints {
+
+  private static final SearchHints NONE = new SearchHints();
+
+  private Boolean requestCache;
+
+  private String preference;
+
+  private String timeout;
+
+  private Integer batchedReduceSize;
+
+  private Integer maxConcurrentShardRequests;
+
+  /**
+   * Create hints with no values set.
+   */
+  public static SearchHints create() {
+    return new SearchHints();
+  }
+
+  /**
+   * Return hints with no values set (do not modify).
+   */
+  static SearchHints none() {
+    return NONE;
+  }
+
+  /**
+   * Set to true to use the shard request cache (or false to not use it even if enabled on the index).
+   */
+  public SearchHints requestCache(boolean requestCache) {
+    this.requestCache = requestCache;
+    return this;
+  }
+
+  /**
+   * Set the preference of which shard copies to search (e.g. a session id or "_local").
+   */
+  public SearchHints preference(String preference) {
+    this.preference = preference;
+    return this;
+  }
+
+  /**
+   * Set the search timeout (e.g. "2s") after which partial results are returned.
+   */
+  public SearchHints timeout(String timeout) {
+    this.timeout = timeout;
+    return this;
+  }
+
+  /**
+   * Set the number of shard results reduced at once on the coordinating node.
+   */
+  public SearchHints batchedReduceSize(int batchedReduceSize) {
+    this.batchedReduceSize = batchedReduceSize;
+    return this;
+  }
+
+  /**
+   * Set the max number of concurrent shard requests per node for the search.
+   */
+  public SearchHints maxConcurrentShardRequests(int maxConcurrentShardRequests) {
+    this.maxConcurrentShardRequests = maxConcurrentShardRequests;
+    return this;
+  }
+
+  /**
+   * Set a hint by its URL parameter name (as used in properties).
+   */
+  public SearchHints set(String name, String value) {
+    switch (name) {
+      case "request_cache":
+        return requestCache(Boolean.parseBoolean(value));
+      case "preference":
+        return preference(value);
+      case "timeout":
+        return timeout(value);
+      case "batched_reduce_size":
+        return batchedReduceSize(Integer.parseInt(value));
+      case "max_concurrent_shard_requests":
+        return maxConcurrentShardRequests(Integer.parseInt(value));
+      default:
+        throw new IllegalArgumentException("Unknown search hint " + name);
+    }
+  }
+
+  /**
+   * Return the request_cache hint (null when not set).
+   */
+  public Boolean getRequestCache() {
+    return requestCache;
+  }
+
+  /**
+   * Return the preference hint (null when not set).
+   */
+  public String getPreference() {
+    return preference;
+  }
+
+  /**
+   * Return the timeout hint (null when not set).
+   */
+  public String getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Return the batched_reduce_size hint (null when not set).
+   */
+  public Integer getBatchedReduceSize() {
+    return batchedReduceSize;
+  }
+
+  /**
+   * Return the max_concurrent_shard_requests hint (null when not set).
+   */
+  public Integer getMaxConcurrentShardRequests() {
+    return maxConcurrentShardRequests;
+  }
+
+  /**
+   * Return new hints with the values of the given hints overriding these hints.
+   */
+  public SearchHints with(SearchHints overrides) {
+    SearchHints merged = new SearchHints();
+    merged.requestCache = (overrides.requestCache != null) ? overrides.requestCache : requestCache;
+    merged.preference = (overrides.preference != null) ? overrides.preference : preference;
+    merged.timeout = (overrides.timeout != null) ? overrides.timeout : timeout;
+    merged.batchedReduceSize = (overrides.batchedReduceSize != null) ? overrides.batchedReduceSize : batchedReduceSize;
+    merged.maxConcurrentShardRequests = (overrides.maxConcurrentShardRequests != null) ? overrides.maxConcurrentShardRequests : maxConcurrentShardRequests;
+    return merged;
+  }
+
+  /**
+   * Return the URL parameters of a search with the given routing (null for none).
+   */
+  String searchParams(String routing) {
+    return urlParams(routing, true, true);
+  }
+
+  /**
+   * Return the URL parameters of a scroll search (null for none).
+   * <p>
+   * The request cache can not be used with scroll so request_cache is not included.
+   * </p>
+   */
+  String scrollParams(String routing) {
+    return urlParams(routing, false, true);
+  }
+
+  /**
+   * Return the URL parameters of a _count request (null for none).
+   * <p>
+   * The _count API only supports the routing and preference of these parameters.
+   * </p>
+   */
+  String countParams(String routing) {
+    return urlParams(routing, false, false);
+  }
+
+  private String urlParams(String routing, boolean cache, boolean search) {
+    StringBuilder params = new StringBuilder();
+    append(params, "routing", routing);
+    append(params, "preference", preference);
+    if (cache && requestCache != null) {
+      append(params, "request_cache", requestCache.toString());
+    }
+    if (search) {
+      append(params, "timeout", timeout);
+      if (batchedReduceSize != null) {
+        append(params, "batched_reduce_size", batchedReduceSize.toString());
+      }
+      if (maxConcurrentShardRequests != null) {
+        append(params, "max_concurrent_shard_requests", maxConcurrentShardRequests.toString());
+      }
+    }
+    return params.length() == 0 ? null : params.toString();
+  }
+
+  private void append(StringBuilder params, String name, String value) {
+    if (value != null) {
+      if (params.length() > 0) {
+        params.append('&');
+      }
+      params.append(name).append('=').append(encode(value));
+    }
+  }
+
+  private String encode(String value) {
+    try {
+      return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package io.ebeanservice.elastic.query;
+
+import io.ebean.PersistenceIOException;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical concurrent requests such that they share one in-flight request and response body.
+ */
+public class SingleFlight {
+
+  /**
+   * A request that returns the response body.
+   */
+  interface Request {
+    String execute() throws IOException;
+  }
+
+  private final ConcurrentHashMap<Key, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder executed = new LongAdder();
+
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Execute the request or wait for the identical in-flight request returning the response body.
+   */
+  String execute(String indexName, String body, Request request) throws IOException {
+    Key key = new Key(indexName, body);
+    CompletableFuture<String> future = new CompletableFuture<>();
+    CompletableFuture<String> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalesced.increment();
+      return await(existing);
+    }
+    executed.increment();
+    try {
+      String response = request.execute();
+      future.complete(response);
+      return response;
+    } catch (Throwable e) {
+      // complete on any failure (including Errors) such that waiting requests never hang
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  private String await(CompletableFuture<String> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PersistenceIOException("Interrupted waiting for coalesced request", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Return the statistics of executed and coalesced requests.
+   */
+  Statistics statistics() {
+    return new Statistics(executed.sum(), coalesced.sum());
+  }
+
+  /**
+   * Statistics of executed and coalesced requests.
+   */
+  public static class Statistics {
+
+    private final long executedCount;
+
+    private final long coalescedCount;
+
+    Statistics(long executedCount, long coalescedCount) {
+      this.executedCount = executedCount;
+      this.coalescedCount = coalescedCount;
+    }
+
+    /**
+     * Return the number of requests executed.
+     */
+    public long getExecutedCount() {
+      return executedCount;
+    }
+
+    /**
+     * Return the number of requests that shared the response of an identical in-flight request.
+     */
+    public long getCoalescedCount() {
+      return coalescedCount;
+    }
+
+    @Override
+    public String toString() {
+      return "executed:" + executedCount + " coalesced:" + coalescedCount;
+    }
+  }
+
+  private static final class Key {
+
+    private final String indexName;
+
+    private final String body;
+
+    Key(String indexName, String body) {
+      this.indexName = indexName;
+      this.body = body;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return indexName.equals(key.indexName) && body.equals(key.body);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(indexName, body);
+    }
+  }
+}
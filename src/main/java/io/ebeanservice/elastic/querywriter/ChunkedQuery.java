@@ -0,0 +1,134 @@
+package io.ebeanservice.elastic.querywriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A query in ElasticSearch JSON form where a large IN list can be split into chunks.
+ * <p>
+ * Each chunk is the full query with only a slice of the values for the large IN list.
+ * When the query has no size and the IN list is of ids then each chunk has the number
+ * of its values as the size. Other IN lists are only chunked when the query has a size
+ * (or is scrolled) such that no chunk is limited to the default of 10 hits.
+ * </p>
+ */
+public class ChunkedQuery {
+
+  private final String json;
+
+  private final int valuesStart;
+
+  private final List<Integer> boundaries;
+
+  private final int sizePosition;
+
+  private final List<Integer> counts;
+
+  private final String routing;
+
+  /**
+   * Create for a query that has no chunked IN list.
+   */
+  static ChunkedQuery of(String json, String routing) {
+    return new ChunkedQuery(json, routing, -1, null, -1, null);
+  }
+
+  /**
+   * Create for a query with a chunked IN list.
+   */
+  static ChunkedQuery of(String json, String routing, ChunkedValues values) {
+    return new ChunkedQuery(json, routing, values.start, values.boundaries, values.sizePosition, values.counts);
+  }
+
+  private ChunkedQuery(String json, String routing, int valuesStart, List<Integer> boundaries, int sizePosition, List<Integer> counts) {
+    this.json = json;
+    this.routing = routing;
+    this.valuesStart = valuesStart;
+    this.boundaries = boundaries;
+    this.sizePosition = sizePosition;
+    this.counts = counts;
+  }
+
+  /**
+   * Return the full query JSON (with all the IN values).
+   */
+  public String json() {
+    return json;
+  }
+
+  /**
+   * Return the routing values of the query (null to search all shards).
+   */
+  public String routing() {
+    return routing;
+  }
+
+  /**
+   * Return true if the query contains a chunked IN list.
+   */
+  public boolean isChunked() {
+    return boundaries != null && boundaries.size() > 1;
+  }
+
+  /**
+   * Return the number of chunks.
+   */
+  public int size() {
+    return boundaries == null ? 1 : boundaries.size();
+  }
+
+  /**
+   * Return the query JSON for the given chunk.
+   */
+  public String chunk(int index) {
+    if (boundaries == null) {
+      return json;
+    }
+    int from = (index == 0) ? valuesStart : boundaries.get(index - 1);
+    int to = boundaries.get(index);
+    String values = json.substring(from, to);
+    if (values.charAt(0) == ',') {
+      // remove separator of the prior value
+      values = values.substring(1);
+    }
+    int end = boundaries.get(boundaries.size() - 1);
+    return prefix(index) + values + json.substring(end);
+  }
+
+  /**
+   * Return the query JSON before the IN values with the size of the chunk when required.
+   */
+  private String prefix(int index) {
+    if (sizePosition < 0) {
+      return json.substring(0, valuesStart);
+    }
+    return json.substring(0, sizePosition) + ",\"size\":" + counts.get(index) + json.substring(sizePosition, valuesStart);
+  }
+
+  /**
+   * Positions of the chunk boundaries for the values of a large IN list.
+   */
+  static class ChunkedValues {
+
+    private final int start;
+
+    private final List<Integer> boundaries = new ArrayList<>();
+
+    private final int sizePosition;
+
+    private final List<Integer> counts = new ArrayList<>();
+
+    ChunkedValues(int start, int sizePosition) {
+      this.start = start;
+      this.sizePosition = sizePosition;
+    }
+
+    /**
+     * Add the end position and number of values of a chunk of values.
+     */
+    void add(int position, int count) {
+      boundaries.add(position);
+      counts.add(count);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package io.ebeanservice.elastic.querywriter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Field collapsing returning only the top hit per value of a keyword or numeric property.
+ * <pre>{@code
+ *
+ *   // the best matching order per customer with up to 3 other orders of the customer
+ *   Collapse byCustomer = Collapse.on("customer.id").innerHits(3);
+ *
+ * }</pre>
+ * <p>
+ * The property is translated to the raw (un-analysed) field of the document as per query expressions.
+ * </p>
+ */
+public class Collapse {
+
+  /**
+   * The name of the inner hits in the response.
+   */
+  public static final String INNER_HITS = "collapsed";
+
+  private final String property;
+
+  private int innerHitsSize;
+
+  private Collapse(String property) {
+    this.property = property;
+  }
+
+  /**
+   * Collapse the hits on the given property.
+   */
+  public static Collapse on(String property) {
+    return new Collapse(property);
+  }
+
+  /**
+   * Also return up to the given number of hits per collapsed value as inner hits.
+   */
+  public Collapse innerHits(int size) {
+    this.innerHitsSize = size;
+    return this;
+  }
+
+  /**
+   * Return the property the hits are collapsed on.
+   */
+  public String getProperty() {
+    return property;
+  }
+
+  /**
+   * Return the number of inner hits per collapsed value (0 for no inner hits).
+   */
+  public int getInnerHitsSize() {
+    return innerHitsSize;
+  }
+
+  /**
+   * Write the collapse given the raw field of the property.
+   */
+  void write(JsonGenerator json, String field) throws IOException {
+    json.writeObjectFieldStart("collapse");
+    json.writeStringField("field", field);
+    if (innerHitsSize > 0) {
+      json.writeObjectFieldStart("inner_hits");
+      json.writeStringField("name", INNER_HITS);
+      json.writeNumberField("size", innerHitsSize);
+      json.writeEndObject();
+    }
+    json.writeEndObject();
+  }
+}
@@ -0,0 +1,125 @@
+package io.ebeanservice.elastic.querywriter;
+
+import io.ebean.core.type.DocPropertyType;
+import io.ebean.plugin.BeanType;
+import io.ebean.plugin.Property;
+import io.ebeanservice.docstore.api.mapping.DocPropertyAdapter;
+import io.ebeanservice.docstore.api.mapping.DocPropertyMapping;
+import io.ebeanservice.docstore.api.mapping.DocPropertyOptions;
+import io.ebeanservice.docstore.api.mapping.DocumentMapping;
+import io.ebeanservice.elastic.index.EIndexTypeMapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The top level properties of a document that can be fetched using docvalue_fields.
+ * <p>
+ * Keyword, numeric, boolean and date properties (as mapped by EIndexMappingsBuilder) have doc
+ * values along with text properties that are sortable (via their raw keyword field).
+ * </p>
+ */
+class DocValueProjection {
+
+  private static final Set<String> DOC_VALUE_TYPES = new HashSet<>(Arrays.asList(
+    "keyword", "boolean", "short", "integer", "long", "double", "float", "date"));
+
+  /**
+   * Map of property name to the doc value field.
+   */
+  private final Map<String, String> fields = new HashMap<>();
+
+  private final String idProperty;
+
+  DocValueProjection(BeanType<?> desc, EIndexTypeMapping typeMapping) {
+    Property id = desc.idProperty();
+    this.idProperty = (id == null) ? null : id.name();
+    if (!desc.hasInheritance()) {
+      ((DocumentMapping) desc.docMapping()).visit(new Visitor(desc, typeMapping));
+    }
+  }
+
+  /**
+   * Return the doc value fields for the selected properties or null if they can't all use doc values.
+   */
+  List<String> fields(Set<String> properties, int maxFields) {
+    if (properties == null || properties.isEmpty() || properties.size() > maxFields + 1) {
+      return null;
+    }
+    List<String> docValueFields = new ArrayList<>(properties.size());
+    for (String property : properties) {
+      if (!property.equals(idProperty)) {
+        String field = fields.get(property);
+        if (field == null) {
+          return null;
+        }
+        docValueFields.add(field);
+      }
+    }
+    if (docValueFields.isEmpty() || docValueFields.size() > maxFields) {
+      return null;
+    }
+    return docValueFields;
+  }
+
+  private class Visitor extends DocPropertyAdapter {
+
+    private final BeanType<?> desc;
+
+    private final EIndexTypeMapping typeMapping;
+
+    private int depth;
+
+    Visitor(BeanType<?> desc, EIndexTypeMapping typeMapping) {
+      this.desc = desc;
+      this.typeMapping = typeMapping;
+    }
+
+    @Override
+    public void visitProperty(DocPropertyMapping property) {
+      if (depth > 0) {
+        return;
+      }
+      DocPropertyOptions options = property.options();
+      if (options != null && (Boolean.FALSE.equals(options.enabled()) || Boolean.FALSE.equals(options.docValues()))) {
+        return;
+      }
+      String name = property.name();
+      String type = typeMapping.get(property.type());
+      if (DOC_VALUE_TYPES.contains(type)) {
+        fields.put(name, name);
+      } else if (property.type() == DocPropertyType.TEXT) {
+        String rawField = desc.docStore().rawProperty(name);
+        if (!name.equals(rawField)) {
+          // sortable text with a raw keyword field
+          fields.put(name, rawField);
+        }
+      }
+    }
+
+    @Override
+    public void visitBeginObject(DocPropertyMapping property) {
+      depth++;
+    }
+
+    @Override
+    public void visitEndObject(DocPropertyMapping property) {
+      depth--;
+    }
+
+    @Override
+    public void visitBeginList(DocPropertyMapping property) {
+      depth++;
+    }
+
+    @Override
+    public void visitEndList(DocPropertyMapping property) {
+      depth--;
+    }
+  }
+}
@@ -12,6 +12,8 @@ import io.ebean.search.MultiMatch;
 import io.ebean.search.TextCommonTerms;
 import io.ebean.search.TextQueryString;
 import io.ebean.search.TextSimple;
+import io.ebeanservice.elastic.DocRouting;
+import io.ebean.text.json.EJson;
 import io.ebeaninternal.api.SpiExpression;
 import io.ebeaninternal.api.SpiExpressionList;
 import io.ebeaninternal.api.SpiQuery;
@@ -23,8 +25,11 @@ import com.fasterxml.jackson.core.JsonGenerator;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -50,6 +55,24 @@ public class ElasticDocQueryContext implements DocQueryContext {
   private static final String EXISTS = "exists";
   private static final String FIELD = "field";
 
+  /**
+   * The tiebreaker sort field that makes the sort order unique for search_after.
+   * <p>
+   * The shard and Lucene doc id of a point in time search which (unlike _id) needs no fielddata.
+   * </p>
+   */
+  private static final String TIEBREAKER = "_shard_doc";
+
+  /**
+   * Track total hits value for an accurate total hits count.
+   */
+  public static final int TRACK_TOTAL_HITS_ALL = Integer.MAX_VALUE;
+
+  /**
+   * Track total hits value for not counting the total hits.
+   */
+  public static final int TRACK_TOTAL_HITS_NONE = 0;
+
   private final ElasticJsonContext context;
 
   private final SpiQuery<?> query;
@@ -60,28 +83,258 @@ public class ElasticDocQueryContext implements DocQueryContext {
 
   private final BeanType<?> desc;
 
+  /**
+   * Number of values after which an IN list is chunked (0 for no chunking).
+   */
+  private final int inListChunkSize;
+
+  /**
+   * The track total hits threshold (0 for none, Integer.MAX_VALUE for all).
+   */
+  private final int trackTotalHits;
+
+  /**
+   * When not null the hits are fetched as doc values (with no _source).
+   */
+  private final List<String> docValueFields;
+
+  /**
+   * Tracks if the current bool group list is negated (must_not / not).
+   */
+  private final Deque<Boolean> negation = new ArrayDeque<>();
+
+  /**
+   * Tracks if the current bool group list is a conjunction (must / filter).
+   */
+  private final Deque<Boolean> conjunction = new ArrayDeque<>();
+
+  /**
+   * The property holding the routing value (null when routing is not used).
+   */
+  private final String routingProperty;
+
+  /**
+   * The routing values of eq / in expressions on the routing property that all hits must match.
+   */
+  private Set<String> routingValues;
+
+  private ChunkedQuery.ChunkedValues chunkedValues;
+
+  /**
+   * True for iteration (scroll) queries that use the _doc sort when there is no orderBy.
+   */
+  private boolean iterate;
+
+  /**
+   * When not null the hits are collapsed returning the top hit per value.
+   */
+  private Collapse collapse;
+
+  /**
+   * True for cursor paging (search_after rather than from).
+   */
+  private boolean cursorPaging;
+
+  /**
+   * The sort values of the last hit of the prior page (null for the first page).
+   */
+  private List<Object> searchAfter;
+
+  /**
+   * The _source includes used when the query has no select clause (DTO projection).
+   */
+  private Set<String> defaultIncludes;
+
+  /**
+   * The size used when the query has no maxRows and the hits are scrolled (0 for none).
+   */
+  private int scrollBatchSize;
+
+  /**
+   * The position where the size of each chunk is written when the query has no size (-1 for none).
+   */
+  private int chunkSizePosition = -1;
+
+  private int queryStart;
+
+  private int queryEnd;
+
   /**
    * Return the query in ElasticSearch JSON form.
    */
   public static String asJson(ElasticJsonContext context, SpiQuery<?> query) {
-    return new ElasticDocQueryContext(context, query).asElasticQuery();
+    return new ElasticDocQueryContext(context, query, 0, TRACK_TOTAL_HITS_ALL, null).asElasticQuery();
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form for a paged query along with the matching count query.
+   *
+   * @param trackTotalHits The accuracy threshold for total hits (0 for none, Integer.MAX_VALUE for all)
+   */
+  public static PagedQuery asPagedJson(ElasticJsonContext context, SpiQuery<?> query, int trackTotalHits) {
+    ElasticDocQueryContext docContext = new ElasticDocQueryContext(context, query, 0, trackTotalHits, context.docValueProjection(query));
+    String json = docContext.asElasticQuery();
+    return new PagedQuery(json, docContext.queryJson(json), docContext.routing());
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form for a cursor paged query along with the matching count query.
+   * <p>
+   * The firstRow of the query is ignored with the page after the given sort values read using
+   * search_after. A tiebreaker sort on _shard_doc is added such that the sort order is unique
+   * which means the search must be of a point in time (see {@link PagedQuery#pitJson(String)}).
+   * </p>
+   *
+   * @param searchAfter The sort values of the last hit of the prior page (null for the first page)
+   */
+  public static PagedQuery asCursorJson(ElasticJsonContext context, SpiQuery<?> query, int trackTotalHits, List<Object> searchAfter) {
+    ElasticDocQueryContext docContext = new ElasticDocQueryContext(context, query, 0, trackTotalHits, context.docValueProjection(query));
+    docContext.cursorPaging = true;
+    docContext.searchAfter = searchAfter;
+    String json = docContext.asElasticQuery();
+    return new PagedQuery(json, docContext.queryJson(json), docContext.routing());
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form with the hits collapsed on a property.
+   */
+  public static String asCollapseJson(ElasticJsonContext context, SpiQuery<?> query, Collapse collapse) {
+    ElasticDocQueryContext docContext = new ElasticDocQueryContext(context, query, 0, TRACK_TOTAL_HITS_NONE, null);
+    docContext.collapse = collapse;
+    return docContext.asElasticQuery();
+  }
+
+  /**
+   * Return the JSON for the _count API.
+   */
+  public static String asCountJson(ElasticJsonContext context, SpiQuery<?> query) {
+    return asPagedJson(context, query, TRACK_TOTAL_HITS_NONE).countJson();
+  }
+
+  /**
+   * Return the query clause only (without paging, sorting or fetch).
+   */
+  public static String asQueryJson(ElasticJsonContext context, SpiQuery<?> query) {
+    return asPagedJson(context, query, TRACK_TOTAL_HITS_NONE).queryJson();
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form fetching only the document ids.
+   *
+   * @param scrollBatchSize The size of each scroll batch (0 when the hits are not scrolled)
+   */
+  public static String asIdsJson(ElasticJsonContext context, SpiQuery<?> query, int scrollBatchSize) {
+    return asDocValueJson(context, query, Collections.emptyList(), scrollBatchSize);
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form fetching the given fields as doc values.
+   * <p>
+   * When scrolled the total hits are tracked (as required for a scroll) and the scroll batch
+   * size is used as the size.
+   * </p>
+   *
+   * @param scrollBatchSize The size of each scroll batch (0 when the hits are not scrolled)
+   */
+  public static String asDocValueJson(ElasticJsonContext context, SpiQuery<?> query, List<String> docValueFields, int scrollBatchSize) {
+    int trackTotalHits = (scrollBatchSize > 0) ? TRACK_TOTAL_HITS_ALL : TRACK_TOTAL_HITS_NONE;
+    ElasticDocQueryContext docContext = new ElasticDocQueryContext(context, query, 0, trackTotalHits, docValueFields);
+    docContext.scrollBatchSize = scrollBatchSize;
+    return docContext.asElasticQuery();
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form with a large IN list split into chunks.
+   * <p>
+   * Only an IN list that is not negated is chunked and only when the query has no
+   * firstRow or orderBy (such that the results of the chunks can be merged).
+   * </p>
+   * <p>
+   * The total hits are not tracked as findList and findEach do not use them.
+   * </p>
+   */
+  public static ChunkedQuery asChunkedJson(ElasticJsonContext context, SpiQuery<?> query, int inListChunkSize) {
+    ElasticDocQueryContext docContext = new ElasticDocQueryContext(context, query, inListChunkSize, TRACK_TOTAL_HITS_NONE, context.docValueProjection(query));
+    String json = docContext.asElasticQuery();
+    if (docContext.chunkedValues == null) {
+      return ChunkedQuery.of(json, docContext.routing());
+    }
+    return ChunkedQuery.of(json, docContext.routing(), docContext.chunkedValues);
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form for iterating the hits (findEach) with large IN lists chunked.
+   * <p>
+   * When the query has no orderBy the hits are sorted by _doc which is the cheapest order
+   * for scrolling as no scores are computed or sorted.
+   * </p>
+   * <p>
+   * The total hits are tracked as Elasticsearch rejects track_total_hits false on a scroll.
+   * </p>
+   */
+  public static ChunkedQuery asIterateJson(ElasticJsonContext context, SpiQuery<?> query, int inListChunkSize) {
+    ElasticDocQueryContext docContext = new ElasticDocQueryContext(context, query, inListChunkSize, TRACK_TOTAL_HITS_ALL, context.docValueProjection(query));
+    docContext.iterate = true;
+    String json = docContext.asElasticQuery();
+    if (docContext.chunkedValues == null) {
+      return ChunkedQuery.of(json, docContext.routing());
+    }
+    return ChunkedQuery.of(json, docContext.routing(), docContext.chunkedValues);
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form for reading the _source into DTOs.
+   * <p>
+   * When the query has no select clause the _source is filtered to the given DTO properties.
+   * </p>
+   */
+  public static ChunkedQuery asDtoJson(ElasticJsonContext context, SpiQuery<?> query, Set<String> dtoProperties) {
+    ElasticDocQueryContext docContext = new ElasticDocQueryContext(context, query, 0, TRACK_TOTAL_HITS_NONE, null);
+    docContext.defaultIncludes = dtoProperties;
+    String json = docContext.asElasticQuery();
+    return ChunkedQuery.of(json, docContext.routing());
+  }
+
+  /**
+   * Return the query in ElasticSearch JSON form for iterating the raw documents (findEach raw and copyIndex).
+   * <p>
+   * When the query has no orderBy the hits are sorted by _doc.
+   * </p>
+   */
+  public static String asIterateRawJson(ElasticJsonContext context, SpiQuery<?> query) {
+    ElasticDocQueryContext docContext = new ElasticDocQueryContext(context, query, 0, TRACK_TOTAL_HITS_ALL, null);
+    docContext.iterate = true;
+    return docContext.asElasticQuery();
   }
 
   /**
    * Construct given the JSON generator and root bean type.
    */
-  private ElasticDocQueryContext(ElasticJsonContext context, SpiQuery<?> query) {
+  private ElasticDocQueryContext(ElasticJsonContext context, SpiQuery<?> query, int inListChunkSize, int trackTotalHits, List<String> docValueFields) {
     this.context = context;
     this.query = query;
     this.desc = query.getBeanDescriptor();
+    this.inListChunkSize = mergeable(query) ? inListChunkSize : 0;
+    this.trackTotalHits = trackTotalHits;
+    this.docValueFields = docValueFields;
     this.writer = new StringWriter(200);
     this.json = context.createGenerator(writer);
+    DocRouting routing = desc.root().type().getAnnotation(DocRouting.class);
+    this.routingProperty = (routing == null) ? null : routing.value();
 
     desc.addInheritanceWhere(query);
 
     query.prepareDocNested();
   }
 
+  /**
+   * Return true if the results of chunked queries can be merged.
+   */
+  private static boolean mergeable(SpiQuery<?> query) {
+    OrderBy<?> orderBy = query.getOrderBy();
+    return query.getFirstRow() == 0 && (orderBy == null || orderBy.isEmpty());
+  }
+
   @Override
   public ExpressionPath getExpressionPath(String propName) {
     return desc.expressionPath(propName);
@@ -104,18 +357,38 @@ public class ElasticDocQueryContext implements DocQueryContext {
 
     json.writeStartObject();
     writePaging(query);
-    writeFetchPartial(query.getDetail());
+    if (docValueFields != null) {
+      writeDocValueFields();
+    } else {
+      writeFetchPartial(query.getDetail());
+    }
     writeOrderBy(query.getOrderBy());
+    if (collapse != null) {
+      collapse.write(json, rawProperty(collapse.getProperty()));
+    }
 
     json.writeFieldName("query");
+    json.flush();
+    queryStart = writer.getBuffer().length();
 
     boolean hasFullText = writeFullText(query);
     if (!hasFullText) {
       writeFilter(query, hasFullText);
     }
+    json.flush();
+    queryEnd = writer.getBuffer().length();
     json.writeEndObject();
   }
 
+  /**
+   * Return the query clause part of the JSON.
+   */
+  private String queryJson(String json) {
+    // the field name separator is written with the value
+    int start = (json.charAt(queryStart) == ':') ? queryStart + 1 : queryStart;
+    return json.substring(start, queryEnd);
+  }
+
   private void writeFilter(SpiQuery<?> query, boolean hasFullText) throws IOException {
 
     SpiExpression idEquals = null;
@@ -171,12 +444,43 @@ public class ElasticDocQueryContext implements DocQueryContext {
   private void writePaging(SpiQuery<?> query) throws IOException {
     // Elasticsearch7.x the hits default is set to 10,000.
     // When set 'track_total_hits' to 'true' the search response will always track the number of hits that match the query accurately.
-    json.writeBooleanField("track_total_hits", true);
-    if (query.getFirstRow() > 0) {
+    // When the total is not used we set it to 'false' such that the search can terminate early.
+    if (trackTotalHits == TRACK_TOTAL_HITS_ALL) {
+      json.writeBooleanField("track_total_hits", true);
+    } else if (trackTotalHits > 0) {
+      json.writeNumberField("track_total_hits", trackTotalHits);
+    } else {
+      json.writeBooleanField("track_total_hits", false);
+    }
+    if (cursorPaging) {
+      if (searchAfter != null) {
+        json.writeFieldName("search_after");
+        EJson.write(searchAfter, json);
+      }
+    } else if (query.getFirstRow() > 0) {
       json.writeNumberField("from", query.getFirstRow());
     }
     if (query.getMaxRows() > 0) {
       json.writeNumberField("size", query.getMaxRows());
+    } else if (scrollBatchSize > 0) {
+      json.writeNumberField("size", scrollBatchSize);
+    } else if (!iterate) {
+      json.flush();
+      chunkSizePosition = writer.getBuffer().length();
+    }
+  }
+
+  /**
+   * Write _source false with the doc value fields (if any).
+   */
+  private void writeDocValueFields() throws IOException {
+    json.writeBooleanField("_source", false);
+    if (!docValueFields.isEmpty()) {
+      json.writeArrayFieldStart("docvalue_fields");
+      for (String field : docValueFields) {
+        json.writeString(field);
+      }
+      json.writeEndArray();
     }
   }
 
@@ -190,6 +494,28 @@ public class ElasticDocQueryContext implements DocQueryContext {
    */
   private void writeFetchPartial(OrmQueryDetail detail) throws IOException {
 
+    Set<String> includes = sourceIncludes(detail);
+    if (includes.isEmpty() && defaultIncludes != null) {
+      includes = defaultIncludes;
+    }
+    if (!includes.isEmpty()) {
+      json.writeFieldName("_source");
+      json.writeStartObject();
+      json.writeFieldName("includes");
+      json.writeStartArray();
+      for (String propName : includes) {
+        json.writeString(propName);
+      }
+      json.writeEndArray();
+      json.writeEndObject();
+    }
+  }
+
+  /**
+   * Return the _source includes for partial fetching (empty to fetch all the source).
+   */
+  public static Set<String> sourceIncludes(OrmQueryDetail detail) {
+
     Set<String> includes = new LinkedHashSet<String>();
 
     OrmQueryProperties rootProps = detail.getChunk(null, false);
@@ -213,18 +539,7 @@ public class ElasticDocQueryContext implements DocQueryContext {
         }
       }
     }
-
-    if (!includes.isEmpty()) {
-      json.writeFieldName("_source");
-      json.writeStartObject();
-      json.writeFieldName("includes");
-      json.writeStartArray();
-      for (String propName : includes) {
-        json.writeString(propName);
-      }
-      json.writeEndArray();
-      json.writeEndObject();
-    }
+    return includes;
   }
 
   /**
@@ -302,6 +617,8 @@ public class ElasticDocQueryContext implements DocQueryContext {
   }
 
   private void writeBoolArray(Junction.Type type) throws IOException {
+    negation.push(type == MUST_NOT);
+    conjunction.push(type == MUST || "filter".equals(type.literal()));
     json.writeArrayFieldStart(type.literal());
   }
 
@@ -315,6 +632,8 @@ public class ElasticDocQueryContext implements DocQueryContext {
 
   @Override
   public void endBoolGroupList() throws IOException {
+    negation.pop();
+    conjunction.pop();
     json.writeEndArray();
   }
 
@@ -388,9 +707,36 @@ public class ElasticDocQueryContext implements DocQueryContext {
    */
   @Override
   public void writeEqualTo(String propertyName, Object value) throws IOException {
+    pinRouting(propertyName, value);
     writeRawExpression(TERM, rawProperty(propertyName), value);
   }
 
+  /**
+   * Register the routing values when the expression is on the routing property and all hits must match it.
+   * <p>
+   * Expressions under a disjunction or a negation do not pin the routing (as hits can be on other shards).
+   * </p>
+   */
+  private void pinRouting(String propertyName, Object... values) {
+    if (propertyName.equals(routingProperty) && !conjunction.contains(Boolean.FALSE) && !negation.contains(Boolean.TRUE)) {
+      if (routingValues == null) {
+        routingValues = new LinkedHashSet<>();
+      }
+      for (Object value : values) {
+        if (value != null) {
+          routingValues.add(value.toString());
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the routing for the query (null when the query does not pin the routing property).
+   */
+  private String routing() {
+    return (routingValues == null || routingValues.isEmpty()) ? null : String.join(",", routingValues);
+  }
+
   /**
    * Write a range expression with a single value.
    */
@@ -425,17 +771,28 @@ public class ElasticDocQueryContext implements DocQueryContext {
 
   /**
    * Write a terms expression.
+   * <p>
+   * The values are only chunked when the query has a size (maxRows) or is scrolled as without
+   * a size each chunk would return up to the Elasticsearch default of 10 hits.
+   * </p>
    */
   @Override
   public void writeIn(String propertyName, Object[] values, boolean not) throws IOException {
     if (not) {
       startBoolMustNot();
     }
+    if (!not) {
+      pinRouting(propertyName, values);
+    }
     json.writeStartObject();
     json.writeObjectFieldStart(TERMS);
     json.writeArrayFieldStart(rawProperty(propertyName));
-    for (Object value : values) {
-      context.writeScalar(json, value);
+    if (!not && chunkSizePosition < 0 && chunkValues(values.length)) {
+      writeChunked(values, -1);
+    } else {
+      for (Object value : values) {
+        context.writeScalar(json, value);
+      }
     }
     json.writeEndArray();
     json.writeEndObject();
@@ -454,14 +811,48 @@ public class ElasticDocQueryContext implements DocQueryContext {
     json.writeStartObject();
     json.writeObjectFieldStart(IDS);
     json.writeArrayFieldStart(VALUES);
-    for (Object id : idList) {
-      context.writeScalar(json, id);
+    if (chunkValues(idList.size())) {
+      // each id matches at most one document so the chunk value count is the size
+      writeChunked(idList.toArray(), chunkSizePosition);
+    } else {
+      for (Object id : idList) {
+        context.writeScalar(json, id);
+      }
     }
     json.writeEndArray();
     json.writeEndObject();
     json.writeEndObject();
   }
 
+  /**
+   * Return true if the values of this IN list should be chunked.
+   */
+  private boolean chunkValues(int count) {
+    return inListChunkSize > 0 && count > inListChunkSize && chunkedValues == null && !negation.contains(Boolean.TRUE);
+  }
+
+  /**
+   * Write the IN values recording the position of each chunk.
+   *
+   * @param sizePosition The position to write the value count of each chunk as the size (-1 for none)
+   */
+  private void writeChunked(Object[] values, int sizePosition) throws IOException {
+    json.flush();
+    chunkedValues = new ChunkedQuery.ChunkedValues(writer.getBuffer().length(), sizePosition);
+    int count = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0 && i % inListChunkSize == 0) {
+        json.flush();
+        chunkedValues.add(writer.getBuffer().length(), count);
+        count = 0;
+      }
+      context.writeScalar(json, values[i]);
+      count++;
+    }
+    json.flush();
+    chunkedValues.add(writer.getBuffer().length(), count);
+  }
+
   /**
    * Write an Id expression.
    */
@@ -645,19 +1036,34 @@ public class ElasticDocQueryContext implements DocQueryContext {
    */
   public <T> void writeOrderBy(OrderBy<T> orderBy) throws IOException {
 
-    if (orderBy != null && !orderBy.isEmpty()) {
+    boolean hasOrderBy = orderBy != null && !orderBy.isEmpty();
+    if (hasOrderBy || cursorPaging) {
       json.writeArrayFieldStart("sort");
-      for (OrderBy.Property property : orderBy.getProperties()) {
-        json.writeStartObject();
-        json.writeObjectFieldStart(rawProperty(property.getProperty()));
-        json.writeStringField("order", property.isAscending() ? "asc" : "desc");
-        json.writeEndObject();
-        json.writeEndObject();
+      if (hasOrderBy) {
+        for (OrderBy.Property property : orderBy.getProperties()) {
+          writeSort(rawProperty(property.getProperty()), property.isAscending());
+        }
+      }
+      if (cursorPaging) {
+        writeSort(TIEBREAKER, true);
       }
       json.writeEndArray();
+    } else if (iterate) {
+      // index order, no scores are computed or sorted
+      json.writeArrayFieldStart("sort");
+      json.writeString("_doc");
+      json.writeEndArray();
     }
   }
 
+  private void writeSort(String field, boolean ascending) throws IOException {
+    json.writeStartObject();
+    json.writeObjectFieldStart(field);
+    json.writeStringField("order", ascending ? "asc" : "desc");
+    json.writeEndObject();
+    json.writeEndObject();
+  }
+
   /**
    * Start a nested path filter.
    */
@@ -677,12 +1083,14 @@ public class ElasticDocQueryContext implements DocQueryContext {
 
   @Override
   public void startNot() throws IOException {
+    negation.push(Boolean.TRUE);
     json.writeStartObject();
     json.writeFieldName("not");
   }
 
   @Override
   public void endNot() throws IOException {
+    negation.pop();
     json.writeEndObject();
   }
 }
@@ -1,5 +1,6 @@
 package io.ebeanservice.elastic.querywriter;
 
+import io.ebean.plugin.BeanType;
 import io.ebean.search.Match;
 import io.ebean.search.MultiMatch;
 import io.ebean.search.TextCommonTerms;
@@ -7,9 +8,16 @@ import io.ebean.search.TextQueryString;
 import io.ebean.search.TextSimple;
 import io.ebean.text.json.JsonContext;
 import com.fasterxml.jackson.core.JsonGenerator;
+import io.ebeaninternal.api.SpiQuery;
+import io.ebeaninternal.server.querydefn.OrmQueryDetail;
+import io.ebeaninternal.server.querydefn.OrmQueryProperties;
+import io.ebeanservice.elastic.index.EIndexTypeMapping;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Context for helping write JSON expressions.
@@ -26,11 +34,25 @@ public class ElasticJsonContext {
 
   private final WriteQueryStringExpression queryStringWriter;
 
+  private final EIndexTypeMapping typeMapping = new EIndexTypeMapping();
+
+  private final Map<String, DocValueProjection> docValueProjections = new ConcurrentHashMap<>();
+
+  private final int docValueProjectionMax;
+
   /**
    * Construct with the Ebean JsonContext (which handles all scalar types know to Ebean).
    */
   public ElasticJsonContext(JsonContext jsonContext) {
+    this(jsonContext, 0);
+  }
+
+  /**
+   * Construct with the maximum number of selected properties fetched using docvalue_fields (0 to disable).
+   */
+  public ElasticJsonContext(JsonContext jsonContext, int docValueProjectionMax) {
     this.jsonContext = jsonContext;
+    this.docValueProjectionMax = docValueProjectionMax;
     this.matchWriter = new WriteMatchExpression(jsonContext);
     this.commonTermsWriter = new WriteCommonTermsExpression();
     this.simpleWriter = new WriteTextSimpleExpression();
@@ -44,6 +66,26 @@ public class ElasticJsonContext {
     return jsonContext.createGenerator(writer);
   }
 
+  /**
+   * Return the doc value fields to fetch for the query or null to fetch the _source.
+   * <p>
+   * This is used when the query only selects a few top level properties that all have doc values.
+   * </p>
+   */
+  List<String> docValueProjection(SpiQuery<?> query) {
+    if (docValueProjectionMax <= 0) {
+      return null;
+    }
+    OrmQueryDetail detail = query.getDetail();
+    OrmQueryProperties rootProps = detail.getChunk(null, false);
+    if (!rootProps.hasSelectClause() || !detail.entries().isEmpty()) {
+      return null;
+    }
+    BeanType<?> desc = query.getBeanDescriptor();
+    DocValueProjection projection = docValueProjections.computeIfAbsent(desc.fullName(), name -> new DocValueProjection(desc, typeMapping));
+    return projection.fields(rootProps.getIncluded(), docValueProjectionMax);
+  }
+
   /**
    * Write a scalar value (handles any type known to Ebean - Enums, Java8, Joda etc).
    */
@@ -0,0 +1,57 @@
+package io.ebeanservice.elastic.querywriter;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * A paged query in ElasticSearch JSON form along with the matching count query.
+ */
+public class PagedQuery {
+
+  private final String json;
+
+  private final String queryJson;
+
+  private final String routing;
+
+  PagedQuery(String json, String queryJson, String routing) {
+    this.json = json;
+    this.queryJson = queryJson;
+    this.routing = routing;
+  }
+
+  /**
+   * Return the search query JSON.
+   */
+  public String json() {
+    return json;
+  }
+
+  /**
+   * Return the search query JSON searching the given point in time (kept alive for another minute).
+   */
+  public String pitJson(String pitId) {
+    String id = new String(JsonStringEncoder.getInstance().quoteAsString(pitId));
+    return "{\"pit\":{\"id\":\"" + id + "\",\"keep_alive\":\"1m\"}," + json.substring(1);
+  }
+
+  /**
+   * Return the query JSON for the _count API.
+   */
+  public String countJson() {
+    return "{\"query\":" + queryJson + "}";
+  }
+
+  /**
+   * Return the routing values of the query (null to search all shards).
+   */
+  public String routing() {
+    return routing;
+  }
+
+  /**
+   * Return the query clause only.
+   */
+  public String queryJson() {
+    return queryJson;
+  }
+}
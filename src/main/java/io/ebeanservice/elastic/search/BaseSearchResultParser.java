@@ -20,15 +20,21 @@ public abstract class BaseSearchResultParser {
   protected boolean timedOut;
   protected Map<String, Object> shards;
   protected String scrollId;
+
+  protected String pitId;
   protected boolean terminatedEarly;
   protected String field;
   protected long total;
+  protected boolean totalTracked;
+  protected String totalRelation;
   protected double maxScore;
   protected String index;
   protected String type;
   protected String id;
+  protected String routing;
   protected double score;
   protected Object sort;
+  protected Map<String, Object> aggregations;
 
   protected boolean idOnly;
 
@@ -46,6 +52,13 @@ public abstract class BaseSearchResultParser {
     return total;
   }
 
+  /**
+   * Return true if the total hits is accurate (tracked and not a lower bound).
+   */
+  public boolean isTotalAccurate() {
+    return totalTracked && !"gte".equals(totalRelation);
+  }
+
   /**
    * Return the server execution time.
    */
@@ -53,6 +66,20 @@ public abstract class BaseSearchResultParser {
     return took;
   }
 
+  /**
+   * Return the aggregations (null when the response has no aggregations).
+   */
+  public Map<String, Object> getAggregations() {
+    return aggregations;
+  }
+
+  /**
+   * Return the sort values of the last hit read (null when the hits are not sorted).
+   */
+  public Object getLastSort() {
+    return sort;
+  }
+
   /**
    * Return the scrollId.
    */
@@ -60,6 +87,13 @@ public abstract class BaseSearchResultParser {
     return scrollId;
   }
 
+  /**
+   * Return the point in time id of the response (null when not searching a point in time).
+   */
+  public String getPitId() {
+    return pitId;
+  }
+
   /**
    * Return true if all the hits have been read.
    */
@@ -113,16 +147,32 @@ public abstract class BaseSearchResultParser {
     sort = EJson.parse(parser);
   }
 
+  /**
+   * Read the inner hits of a collapsed hit (by default skipped).
+   */
+  protected void readInnerHits() throws IOException {
+    EJson.parseObject(parser);
+  }
+
   /**
    * Move forward to the next field name if possible.
    */
   protected boolean nextFieldName() throws IOException {
     JsonToken token = parser.nextToken();
     while (true) {
+      if (token == null) {
+        return false;
+      }
       switch (token) {
         case FIELD_NAME:
           return true;
         case END_ARRAY:
+          if (documentLevel == 2) {
+            // end of the hits, continue to read aggregations etc
+            documentLevel = 0;
+            token = parser.nextToken();
+            break;
+          }
           return false;
         case END_OBJECT:
           if (documentLevel == 2 && idOnly) {
@@ -147,10 +197,13 @@ public abstract class BaseSearchResultParser {
     if ("_index".equals(field)) {
       index = readString();
       idOnly = true;
+      routing = null;
     } else if ("_type".equals(field)) {
       type = readString();
     } else if ("_id".equals(field)) {
       id = readString();
+    } else if ("_routing".equals(field)) {
+      routing = readString();
 //    } else if ("_type".equals(field)) {
 //      readString();
     } else if ("_score".equals(field)) {
@@ -163,6 +216,8 @@ public abstract class BaseSearchResultParser {
       readSource();
     } else if ("sort".equals(field)) {
       readSort();
+    } else if ("inner_hits".equals(field)) {
+      readInnerHits();
     } else {
       throw new IllegalStateException("Unrecognized field at level 2: '" + field + "'!");
     }
@@ -186,9 +241,18 @@ public abstract class BaseSearchResultParser {
     }
   }
 
+  /**
+   * Read the aggregations.
+   */
+  protected void readAggregations() throws IOException {
+    aggregations = EJson.parseObject(parser);
+  }
+
   protected long readTotal() throws IOException {
     final Map<String, Object> totalObj = EJson.parseObject(parser);
     final Long value = (Long)totalObj.get("value");
+    totalRelation = (String)totalObj.get("relation");
+    totalTracked = true;
     return (value == null) ? 0 : value;
   }
 
@@ -205,12 +269,19 @@ public abstract class BaseSearchResultParser {
       shards = EJson.parseObject(parser);
     } else if ("_scroll_id".equals(field)) {
       scrollId = readString();
+    } else if ("pit_id".equals(field)) {
+      pitId = readString();
     } else if ("terminated_early".equals(field)) {
       terminatedEarly = readBoolean();
     } else if ("hits".equals(field)) {
       // read object start
       parser.nextToken();
       documentLevel = 1;
+    } else if ("aggregations".equals(field)) {
+      readAggregations();
+    } else if ("status".equals(field)) {
+      // multi search response status
+      readLong();
     } else {
       throw new IllegalStateException("Unrecognized field at level 0: '" + field + "'!");
     }
@@ -0,0 +1,40 @@
+package io.ebeanservice.elastic.search;
+
+import io.ebean.docstore.RawDoc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The top hit per collapsed value along with the inner hits of each collapsed value.
+ */
+public class CollapsedList<T> {
+
+  private final List<T> list;
+
+  private final Map<String, List<RawDoc>> innerHits;
+
+  /**
+   * Construct with the top hits and the inner hits keyed by the id of the top hit.
+   */
+  public CollapsedList(List<T> list, Map<String, List<RawDoc>> innerHits) {
+    this.list = list;
+    this.innerHits = innerHits;
+  }
+
+  /**
+   * Return the top hit per collapsed value.
+   */
+  public List<T> getList() {
+    return list;
+  }
+
+  /**
+   * Return the inner hits for the top hit with the given id (empty when inner hits are not requested).
+   */
+  public List<RawDoc> getInnerHits(Object id) {
+    List<RawDoc> docs = innerHits.get(id.toString());
+    return docs == null ? Collections.emptyList() : docs;
+  }
+}
@@ -0,0 +1,79 @@
+package io.ebeanservice.elastic.search;
+
+import com.fasterxml.jackson.core.JsonParser;
+import io.ebean.text.json.EJson;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a single value per hit being either the document id or the first value of a doc value field.
+ */
+public class HitValuesReader extends BaseSearchResultParser {
+
+  private final List<Object> values = new ArrayList<>();
+
+  private final String field;
+
+  /**
+   * Construct with the doc value field to read (or null to read the document ids).
+   */
+  public HitValuesReader(JsonParser parser, String field) {
+    super(parser);
+    this.field = field;
+  }
+
+  /**
+   * Create another reader for more JSON (aka scroll queries).
+   */
+  public HitValuesReader moreJson(JsonParser moreJson) {
+    return new HitValuesReader(moreJson, field);
+  }
+
+  @Override
+  public boolean allHitsRead() {
+    if (!totalTracked) {
+      return values.isEmpty();
+    }
+    return total == 0 || total == values.size();
+  }
+
+  @Override
+  public boolean zeroHits() {
+    return values.isEmpty();
+  }
+
+  @Override
+  public void readSource() throws IOException {
+    // not expected with _source false
+    parser.nextToken();
+    parser.skipChildren();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void readFields() throws IOException {
+    Map<String, Object> fields = EJson.parseObject(parser);
+    if (field == null) {
+      values.add(id);
+    } else {
+      List<Object> fieldValues = (List<Object>) fields.get(field);
+      values.add(fieldValues == null || fieldValues.isEmpty() ? null : fieldValues.get(0));
+    }
+  }
+
+  @Override
+  public void readIdOnly() {
+    values.add(field == null ? id : null);
+  }
+
+  /**
+   * Read the response returning the values.
+   */
+  public List<Object> read() throws IOException {
+    readAll();
+    return values;
+  }
+}
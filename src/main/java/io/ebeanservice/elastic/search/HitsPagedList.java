@@ -2,18 +2,28 @@ package io.ebeanservice.elastic.search;
 
 import io.ebean.PagedList;
 
+import javax.persistence.PersistenceException;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * PagedList implementation with an already supplied total row count and list.
+ * <p>
+ * When the total count is not known (not tracked accurately by the search) then it
+ * is loaded on demand via the supplied count loader (typically an async _count request).
+ * </p>
  */
 public class HitsPagedList<T> implements PagedList<T> {
 
-  private final int totalRowCount;
+  private final Supplier<Future<Integer>> countLoader;
+
+  private Future<Integer> futureCount;
+
+  private volatile int totalRowCount;
 
   private final List<T> list;
 
@@ -23,6 +33,10 @@ public class HitsPagedList<T> implements PagedList<T> {
 
   private final int pageIndex;
 
+  private boolean cursorPaged;
+
+  private String nextCursor;
+
   /**
    * Construct with firstRow/maxRows.
    */
@@ -32,6 +46,36 @@ public class HitsPagedList<T> implements PagedList<T> {
     this.totalRowCount = totalCount > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)totalCount;
     this.list = list;
     this.pageIndex = 0;
+    this.countLoader = null;
+  }
+
+  /**
+   * Construct with firstRow/maxRows and a loader for the total count.
+   */
+  public HitsPagedList(int firstRow, int maxRows, List<T> list, Supplier<Future<Integer>> countLoader) {
+    this.maxRows = maxRows;
+    this.firstRow = firstRow;
+    this.totalRowCount = -1;
+    this.list = list;
+    this.pageIndex = 0;
+    this.countLoader = countLoader;
+  }
+
+  /**
+   * Set the cursor for the next page when this page was read using cursor paging.
+   *
+   * @param nextCursor The cursor for the next page (null when this is the last page)
+   */
+  public void setNextCursor(String nextCursor) {
+    this.cursorPaged = true;
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * Return the cursor for the next page (null when this is the last page or not cursor paged).
+   */
+  public String getNextCursor() {
+    return nextCursor;
   }
 
   public List<T> getList() {
@@ -40,21 +84,40 @@ public class HitsPagedList<T> implements PagedList<T> {
 
   @Override
   public int getTotalCount() {
-    return totalRowCount;
+    if (totalRowCount > -1) {
+      return totalRowCount;
+    }
+    try {
+      totalRowCount = getFutureCount().get();
+      return totalRowCount;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PersistenceException("Interrupted obtaining total count", e);
+    } catch (ExecutionException e) {
+      throw new PersistenceException("Error obtaining total count", e.getCause());
+    }
   }
 
   public int getTotalRowCount() {
     return getTotalCount();
   }
 
-  public void loadCount() {
+  public synchronized void loadCount() {
+    if (totalRowCount == -1 && futureCount == null) {
+      futureCount = countLoader.get();
+    }
   }
 
   public void loadRowCount() {
+    loadCount();
   }
 
   public Future<Integer> getFutureCount() {
-    return new FutInt<Integer>(this.totalRowCount);
+    if (totalRowCount > -1) {
+      return new FutInt<Integer>(this.totalRowCount);
+    }
+    loadCount();
+    return futureCount;
   }
 
   public Future<Integer> getFutureRowCount() {
@@ -72,6 +135,9 @@ public class HitsPagedList<T> implements PagedList<T> {
   }
 
   public boolean hasNext() {
+    if (cursorPaged) {
+      return nextCursor != null;
+    }
     return (firstRow + maxRows) < getTotalRowCount();
   }
 
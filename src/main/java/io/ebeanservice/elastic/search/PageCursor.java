@@ -0,0 +1,78 @@
+package io.ebeanservice.elastic.search;
+
+import io.ebean.text.json.EJson;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes and decodes the opaque cursor used for search_after paging.
+ * <p>
+ * The cursor holds the point in time id searched along with the sort values of the last hit of a page.
+ * </p>
+ */
+public final class PageCursor {
+
+  private final String pitId;
+
+  private final List<Object> searchAfter;
+
+  private PageCursor(String pitId, List<Object> searchAfter) {
+    this.pitId = pitId;
+    this.searchAfter = searchAfter;
+  }
+
+  /**
+   * Return the point in time id of the cursor.
+   */
+  public String pitId() {
+    return pitId;
+  }
+
+  /**
+   * Return the sort values of the last hit of the prior page.
+   */
+  public List<Object> searchAfter() {
+    return searchAfter;
+  }
+
+  /**
+   * Return the cursor for the point in time and sort values of the last hit (null when there are no sort values).
+   */
+  public static String encode(String pitId, Object sortValues) throws IOException {
+    if (sortValues == null) {
+      return null;
+    }
+    Map<String, Object> cursor = new LinkedHashMap<>();
+    cursor.put("pit", pitId);
+    cursor.put("after", sortValues);
+    String json = EJson.write(cursor);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decode the cursor (null for a null cursor meaning the first page).
+   */
+  @SuppressWarnings("unchecked")
+  public static PageCursor decode(String cursor) {
+    if (cursor == null) {
+      return null;
+    }
+    try {
+      String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      Map<String, Object> map = EJson.parseObject(json);
+      Object pitId = (map == null) ? null : map.get("pit");
+      Object sortValues = (map == null) ? null : map.get("after");
+      if (!(pitId instanceof String) || !(sortValues instanceof List) || ((List<Object>) sortValues).isEmpty()) {
+        throw new IllegalArgumentException("Invalid cursor [" + cursor + "]");
+      }
+      return new PageCursor((String) pitId, (List<Object>) sortValues);
+    } catch (IOException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor [" + cursor + "]", e);
+    }
+  }
+}
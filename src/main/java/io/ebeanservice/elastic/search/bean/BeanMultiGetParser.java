@@ -0,0 +1,62 @@
+package io.ebeanservice.elastic.search.bean;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.ebean.plugin.BeanType;
+import io.ebean.text.json.JsonBeanReader;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads the JSON response of a multi get (_mget) request populating beans for the found documents.
+ */
+public class BeanMultiGetParser<T> {
+
+  private final JsonParser parser;
+
+  private final BeanSourceReader<T> listener;
+
+  public BeanMultiGetParser(JsonParser parser, BeanType<T> desc, JsonBeanReader<T> reader) {
+    this.parser = parser;
+    this.listener = new BeanSourceReader<>(desc, reader, null);
+  }
+
+  /**
+   * Read the response returning the beans in the order of the requested ids.
+   */
+  public List<T> read() throws IOException {
+    parser.nextToken();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if ("docs".equals(field)) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          readDoc();
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return listener.getList();
+  }
+
+  /**
+   * Read a document (documents not found have no _source).
+   */
+  private void readDoc() throws IOException {
+    String id = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      if ("_id".equals(field)) {
+        parser.nextToken();
+        id = parser.getValueAsString();
+      } else if ("_source".equals(field)) {
+        listener.readSource(id);
+      } else {
+        parser.nextToken();
+        parser.skipChildren();
+      }
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package io.ebeanservice.elastic.search.bean;
 
+import io.ebean.docstore.RawDoc;
 import io.ebean.plugin.BeanType;
 import io.ebean.text.json.EJson;
 import io.ebean.text.json.JsonBeanReader;
@@ -8,7 +9,10 @@ import io.ebeanservice.elastic.search.BaseSearchResultParser;
 import com.fasterxml.jackson.core.JsonParser;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Reads JSON results for a given bean type.
@@ -17,6 +21,8 @@ public class BeanSearchParser<T> extends BaseSearchResultParser {
 
   private final BeanSourceReader<T> listener;
 
+  private final Map<String, List<RawDoc>> innerHits = new LinkedHashMap<>();
+
   public BeanSearchParser(JsonParser parser, BeanType<T> desc, JsonBeanReader<T> reader, BeanPropertyAssocMany<?> lazyLoadMany) {
     super(parser);
     this.listener = new BeanSourceReader<>(desc, reader, lazyLoadMany);
@@ -37,8 +43,14 @@ public class BeanSearchParser<T> extends BaseSearchResultParser {
 
   /**
    * Return true if all the hits have been read.
+   * <p>
+   * When the total hits are not tracked this is only known when there are no hits.
+   * </p>
    */
   public boolean allHitsRead() {
+    if (!totalTracked) {
+      return listener.size() == 0;
+    }
     return total == 0 || total == listener.size();
   }
 
@@ -71,6 +83,39 @@ public class BeanSearchParser<T> extends BaseSearchResultParser {
     listener.readFields(EJson.parseObject(parser), id);
   }
 
+  /**
+   * Return the inner hits of collapsed hits keyed by the id of the top hit.
+   */
+  public Map<String, List<RawDoc>> getInnerHits() {
+    return innerHits;
+  }
+
+  /**
+   * Read the inner hits of a collapsed hit as raw documents.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  protected void readInnerHits() throws IOException {
+    List<RawDoc> docs = new ArrayList<>();
+    for (Object named : EJson.parseObject(parser).values()) {
+      Map<String, Object> hits = (Map<String, Object>) ((Map<String, Object>) named).get("hits");
+      List<Object> hitList = (hits == null) ? null : (List<Object>) hits.get("hits");
+      if (hitList != null) {
+        for (Object hit : hitList) {
+          docs.add(rawDoc((Map<String, Object>) hit));
+        }
+      }
+    }
+    innerHits.put(id, docs);
+  }
+
+  @SuppressWarnings("unchecked")
+  private RawDoc rawDoc(Map<String, Object> hit) {
+    Object hitScore = hit.get("_score");
+    double docScore = (hitScore instanceof Number) ? ((Number) hitScore).doubleValue() : 0;
+    return new RawDoc((Map<String, Object>) hit.get("_source"), (String) hit.get("_id"), docScore, (String) hit.get("_index"), null);
+  }
+
   /**
    * For Id only results (typically creates a reference bean).
    */
@@ -4,10 +4,20 @@ import com.fasterxml.jackson.core.JsonParser;
 import io.ebean.bean.EntityBean;
 import io.ebean.plugin.BeanType;
 import io.ebean.plugin.ExpressionPath;
+import io.ebean.plugin.Property;
 import io.ebean.text.json.JsonBeanReader;
 import io.ebeaninternal.server.deploy.BeanPropertyAssocMany;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -17,6 +27,11 @@ import java.util.Set;
  */
 class BeanSourceReader<T> {
 
+  private static final String RAW_SUFFIX = ".raw";
+
+  private static final Set<Class<?>> DATE_TIME_TYPES = new HashSet<>(Arrays.asList(
+    Instant.class, LocalDateTime.class, OffsetDateTime.class, ZonedDateTime.class));
+
   private final BeanType<T> desc;
 
   private final List<T> beans = new ArrayList<>();
@@ -83,17 +98,47 @@ class BeanSourceReader<T> {
 
     Set<Map.Entry<String, Object>> entries = fields.entrySet();
     for (Map.Entry<String, Object> entry : entries) {
-      ExpressionPath path = desc.expressionPath(entry.getKey());
+      String propertyName = propertyName(entry.getKey());
+      ExpressionPath path = desc.expressionPath(propertyName);
       List<Object> value = (List<Object>)entry.getValue();
 
       if (!path.containsMany()) {
         if (value.size() == 1) {
-          path.pathSet(bean, value.get(0));
+          path.pathSet(bean, path.convert(docValue(propertyName, value.get(0))));
         }
       }
     }
   }
 
+  /**
+   * Return the property name for the field (doc values of sortable text use the raw field).
+   */
+  private String propertyName(String field) {
+    return field.endsWith(RAW_SUFFIX) ? field.substring(0, field.length() - RAW_SUFFIX.length()) : field;
+  }
+
+  /**
+   * Return the value translating formatted date doc values to a form the property converts.
+   */
+  private Object docValue(String propertyName, Object value) {
+    if (!(value instanceof String)) {
+      return value;
+    }
+    Property property = desc.property(propertyName);
+    if (property == null) {
+      return value;
+    }
+    Class<?> type = property.type();
+    String formatted = (String) value;
+    if (LocalDate.class.equals(type)) {
+      return formatted.length() > 10 ? formatted.substring(0, 10) : formatted;
+    }
+    if (Date.class.isAssignableFrom(type) || Calendar.class.isAssignableFrom(type) || DATE_TIME_TYPES.contains(type)) {
+      return Instant.parse(formatted).toEpochMilli();
+    }
+    return value;
+  }
+
   public List<T> getList() {
     return beans;
   }
@@ -0,0 +1,85 @@
+package io.ebeanservice.elastic.search.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Maps the _source of hits directly into a DTO class (or record).
+ * <p>
+ * The deserializer is built once per DTO type and the _source is streamed into it with no
+ * entity bean, persistence context or lazy loading involved. The document id (which is not
+ * part of the _source) is set on an "id" property when the DTO has one.
+ * </p>
+ */
+public class DtoMapper<D> {
+
+  private static final String ID = "id";
+
+  private final ObjectReader reader;
+
+  private final Set<String> properties;
+
+  private final boolean hasId;
+
+  DtoMapper(ObjectMapper objectMapper, Class<D> dtoType) {
+    JavaType javaType = objectMapper.constructType(dtoType);
+    this.reader = objectMapper.readerFor(javaType).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    Set<String> names = new LinkedHashSet<>();
+    for (BeanPropertyDefinition property : objectMapper.getDeserializationConfig().introspect(javaType).findProperties()) {
+      if (property.couldDeserialize()) {
+        names.add(property.getName());
+      }
+    }
+    this.hasId = names.remove(ID);
+    this.properties = Collections.unmodifiableSet(names);
+  }
+
+  /**
+   * Return the DTO properties (excluding id) used to filter the _source.
+   */
+  public Set<String> properties() {
+    return properties;
+  }
+
+  /**
+   * Read the _source (parser positioned on the _source field name) into a DTO.
+   */
+  D read(JsonParser parser, String id) throws IOException {
+    parser.nextToken();
+    if (!hasId) {
+      return reader.readValue(parser);
+    }
+    TokenBuffer buffer = new TokenBuffer(parser);
+    buffer.writeStartObject();
+    buffer.writeStringField(ID, id);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      buffer.copyCurrentStructure(parser);
+    }
+    buffer.writeEndObject();
+    return reader.readValue(buffer.asParser());
+  }
+
+  /**
+   * Create a DTO for a hit with no _source (only the id set).
+   */
+  D readId(String id) throws IOException {
+    TokenBuffer buffer = new TokenBuffer(reader, false);
+    buffer.writeStartObject();
+    if (hasId) {
+      buffer.writeStringField(ID, id);
+    }
+    buffer.writeEndObject();
+    return reader.readValue(buffer.asParser());
+  }
+}
@@ -0,0 +1,30 @@
+package io.ebeanservice.elastic.search.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The DTO mappers built once per DTO type.
+ */
+public class DtoMappers {
+
+  private final ConcurrentHashMap<Class<?>, DtoMapper<?>> mappers = new ConcurrentHashMap<>();
+
+  private final ObjectMapper objectMapper;
+
+  /**
+   * Create using the ObjectMapper of the database config (or a default one when that is not set).
+   */
+  public DtoMappers(Object objectMapper) {
+    this.objectMapper = (objectMapper instanceof ObjectMapper) ? (ObjectMapper) objectMapper : new ObjectMapper().findAndRegisterModules();
+  }
+
+  /**
+   * Return the mapper for the given DTO type.
+   */
+  @SuppressWarnings("unchecked")
+  public <D> DtoMapper<D> mapper(Class<D> dtoType) {
+    return (DtoMapper<D>) mappers.computeIfAbsent(dtoType, type -> new DtoMapper<>(objectMapper, type));
+  }
+}
@@ -0,0 +1,66 @@
+package io.ebeanservice.elastic.search.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import io.ebean.PersistenceIOException;
+import io.ebean.text.json.EJson;
+import io.ebeanservice.elastic.search.BaseSearchResultParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the hits of search results as DTOs.
+ */
+public class DtoSearchParser<D> extends BaseSearchResultParser {
+
+  private final DtoMapper<D> mapper;
+
+  private final List<D> list = new ArrayList<>();
+
+  public DtoSearchParser(JsonParser parser, DtoMapper<D> mapper) {
+    super(parser);
+    this.mapper = mapper;
+  }
+
+  @Override
+  public boolean allHitsRead() {
+    if (!totalTracked) {
+      return list.isEmpty();
+    }
+    return total == 0 || total == list.size();
+  }
+
+  @Override
+  public boolean zeroHits() {
+    return list.isEmpty();
+  }
+
+  @Override
+  public void readSource() throws IOException {
+    list.add(mapper.read(parser, id));
+  }
+
+  @Override
+  public void readFields() throws IOException {
+    // DTOs are only read from the _source
+    EJson.parseObject(parser);
+  }
+
+  @Override
+  public void readIdOnly() {
+    try {
+      list.add(mapper.readId(id));
+    } catch (IOException e) {
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  /**
+   * Read the hits returning the list of DTOs.
+   */
+  public List<D> read() throws IOException {
+    readAll();
+    return list;
+  }
+}
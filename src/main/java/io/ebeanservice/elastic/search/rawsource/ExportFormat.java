@@ -0,0 +1,17 @@
+package io.ebeanservice.elastic.search.rawsource;
+
+/**
+ * The format the _source of the hits are written in when exported.
+ */
+public enum ExportFormat {
+
+  /**
+   * Newline delimited JSON with one _source per line.
+   */
+  NDJSON,
+
+  /**
+   * A JSON array of the _source of each hit.
+   */
+  JSON_ARRAY
+}
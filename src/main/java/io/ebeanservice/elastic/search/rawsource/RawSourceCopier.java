@@ -34,7 +34,8 @@ public class RawSourceCopier implements Consumer<RawDoc> {
 
     try {
       JsonGenerator gen = txn.obtain().gen();
-      writeBulkHeader(gen, bean.getId());
+      String routing = (bean instanceof RoutedRawDoc) ? ((RoutedRawDoc) bean).getRouting() : null;
+      writeBulkHeader(gen, bean.getId(), routing);
       EJson.write(bean.getSource(), gen);
       gen.writeRaw("\n");
 
@@ -43,13 +44,16 @@ public class RawSourceCopier implements Consumer<RawDoc> {
     }
   }
 
-  private void writeBulkHeader(JsonGenerator gen, Object idValue) throws IOException {
+  private void writeBulkHeader(JsonGenerator gen, Object idValue, String routing) throws IOException {
 
     gen.writeStartObject();
     gen.writeFieldName("index");
     gen.writeStartObject();
     gen.writeStringField("_id", idValue.toString());
     gen.writeStringField("_index", targetIndexName);
+    if (routing != null) {
+      gen.writeStringField("routing", routing);
+    }
     gen.writeEndObject();
     gen.writeEndObject();
     gen.writeRaw("\n");
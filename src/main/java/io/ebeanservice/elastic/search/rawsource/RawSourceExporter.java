@@ -0,0 +1,75 @@
+package io.ebeanservice.elastic.search.rawsource;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import io.ebean.text.json.EJson;
+import io.ebeanservice.elastic.search.BaseSearchResultParser;
+
+import java.io.IOException;
+
+/**
+ * Reads the JSON response copying the _source of each hit to the export generator.
+ * <p>
+ * The _source is copied token by token so no per document object model is built.
+ * </p>
+ */
+public class RawSourceExporter extends BaseSearchResultParser {
+
+  private final JsonGenerator out;
+
+  private final boolean ndJson;
+
+  private int hits;
+
+  private int exported;
+
+  public RawSourceExporter(JsonParser parser, JsonGenerator out, ExportFormat format) {
+    super(parser);
+    this.out = out;
+    this.ndJson = format == ExportFormat.NDJSON;
+  }
+
+  @Override
+  public boolean allHitsRead() {
+    if (!totalTracked) {
+      return hits == 0;
+    }
+    return total == 0 || total == hits;
+  }
+
+  @Override
+  public boolean zeroHits() {
+    return hits == 0;
+  }
+
+  @Override
+  public void readSource() throws IOException {
+    hits++;
+    exported++;
+    parser.nextToken();
+    out.copyCurrentStructure(parser);
+    if (ndJson) {
+      out.writeRaw('\n');
+    }
+  }
+
+  @Override
+  public void readFields() throws IOException {
+    // do nothing, expect to only export source
+    EJson.parseObject(parser);
+  }
+
+  @Override
+  public void readIdOnly() {
+    // no _source to export
+    hits++;
+  }
+
+  /**
+   * Read the response returning the number of documents exported.
+   */
+  public int export() throws IOException {
+    readAll();
+    return exported;
+  }
+}
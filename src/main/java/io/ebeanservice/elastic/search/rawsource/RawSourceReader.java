@@ -23,6 +23,9 @@ public class RawSourceReader extends BaseSearchResultParser {
 
   @Override
   public boolean allHitsRead() {
+    if (!totalTracked) {
+      return list.isEmpty();
+    }
     return total == 0 || total == list.size();
   }
 
@@ -34,7 +37,11 @@ public class RawSourceReader extends BaseSearchResultParser {
   @Override
   public void readSource() throws IOException {
     Map<String, Object> source = EJson.parseObject(parser);
-    list.add(new RawDoc(source, id, score, index, null));
+    if (routing != null) {
+      list.add(new RoutedRawDoc(source, id, score, index, routing));
+    } else {
+      list.add(new RawDoc(source, id, score, index, null));
+    }
   }
 
   @Override
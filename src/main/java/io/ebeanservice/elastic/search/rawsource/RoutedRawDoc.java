@@ -0,0 +1,25 @@
+package io.ebeanservice.elastic.search.rawsource;
+
+import io.ebean.docstore.RawDoc;
+
+import java.util.Map;
+
+/**
+ * A raw document that was indexed with a routing value.
+ */
+class RoutedRawDoc extends RawDoc {
+
+  private final String routing;
+
+  RoutedRawDoc(Map<String, Object> source, String id, double score, String index, String routing) {
+    super(source, id, score, index, null);
+    this.routing = routing;
+  }
+
+  /**
+   * Return the routing value the document was indexed with.
+   */
+  String getRouting() {
+    return routing;
+  }
+}
@@ -9,6 +9,8 @@ import okhttp3.RequestBody;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 
 import static java.lang.System.Logger.Level.DEBUG;
@@ -24,6 +26,8 @@ public class BaseHttpMessageSender implements IndexMessageSender {
 
   private static final MediaType TEXT = MediaType.parse("text/plain; charset=utf-8");
 
+  private static final MediaType ND_JSON = MediaType.parse("application/x-ndjson; charset=utf-8");
+
   private final OkHttpClient client;
 
   private final String baseUrl;
@@ -132,11 +136,60 @@ public class BaseHttpMessageSender implements IndexMessageSender {
   }
 
   @Override
-  public IndexMessageResponse postQuery(boolean scroll, String indexName, String jsonQuery) throws IOException {
+  public IndexMessageResponse postQuery(boolean scroll, String indexName, String urlParams, String jsonQuery) throws IOException {
+
+    String scrollParam = (scroll) ? "scroll=1m" : null;
+    String index = (indexName == null) ? "" : indexName + "/";
+    String url = baseUrl + index + "_search" + queryString(scrollParam, urlParams);
+
+    Response response = postJson(url, jsonQuery);
+    String responseBody = responseDebug("POST", url, response);
+
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
+  @Override
+  public IndexMessageResponse postMultiGet(String indexName, String sourceIncludes, String urlParams, String jsonIds) throws IOException {
+
+    String includes = (sourceIncludes == null) ? null : "_source_includes=" + URLEncoder.encode(sourceIncludes, StandardCharsets.UTF_8.name());
+    String url = baseUrl + indexName + "/_mget" + queryString(includes, urlParams);
+    Response response = postJson(url, jsonIds);
+    String responseBody = responseDebug("POST", url, response);
+
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
+  @Override
+  public IndexMessageResponse postMultiSearch(String ndJson) throws IOException {
+
+    String url = baseUrl + "_msearch";
+    if (logger.isLoggable(DEBUG)) {
+      logger.log(DEBUG, "POST url:{0} json:{1}", url, ndJson);
+    }
+    Request request = new Request.Builder()
+        .url(url)
+        .post(RequestBody.create(ND_JSON, ndJson))
+        .build();
+
+    Response response = client.newCall(request).execute();
+    String responseBody = responseDebug("POST", url, response);
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
+  @Override
+  public IndexMessageResponse postCount(String indexName, String urlParams, String jsonQuery) throws IOException {
 
-    String scrollSuffix = (scroll) ? "?scroll=1m" : "";
-    String url = baseUrl + indexName + "/_search" + scrollSuffix;
+    String url = baseUrl + indexName + "/_count" + queryString(null, urlParams);
+    Response response = postJson(url, jsonQuery);
+    String responseBody = responseDebug("POST", url, response);
 
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
+  @Override
+  public IndexMessageResponse postUpdateQuery(String indexName, String urlParams, String jsonQuery) throws IOException {
+
+    String url = baseUrl + indexName + "/_update_by_query" + queryString(null, urlParams);
     Response response = postJson(url, jsonQuery);
     String responseBody = responseDebug("POST", url, response);
 
@@ -144,15 +197,57 @@ public class BaseHttpMessageSender implements IndexMessageSender {
   }
 
   @Override
-  public IndexMessageResponse postUpdateQuery(String indexType, String indexName, String jsonQuery) throws IOException {
+  public IndexMessageResponse putScript(String scriptId, String scriptJson) throws IOException {
+
+    String url = baseUrl + "_scripts/" + scriptId;
+    Response response = putJson(url, scriptJson);
+    String responseBody = responseDebug("PUT", url, response);
+
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
+  @Override
+  public IndexMessageResponse getTask(String taskId) throws IOException {
+
+    String url = baseUrl + "_tasks/" + taskId;
+
+    Request request = new Request.Builder().url(url).get().build();
+    Response response = client.newCall(request).execute();
+    String responseBody = responseDebug("GET", url, response);
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
+  @Override
+  public IndexMessageResponse deleteTaskResult(String taskId) throws IOException {
 
-    String url = baseUrl + indexName + "/_update_by_query";
+    String url = baseUrl + ".tasks/_doc/" + taskId;
+
+    Request request = new Request.Builder().url(url).delete().build();
+    Response response = client.newCall(request).execute();
+    String responseBody = responseDebug("DELETE", url, response);
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
+  @Override
+  public IndexMessageResponse postDeleteQuery(String indexName, String urlParams, String jsonQuery) throws IOException {
+
+    String url = baseUrl + indexName + "/_delete_by_query" + queryString(null, urlParams);
     Response response = postJson(url, jsonQuery);
     String responseBody = responseDebug("POST", url, response);
 
     return new IndexMessageResponse(response.code(), responseBody);
   }
 
+  /**
+   * Return the URL query string for the given parameters (either of which can be null).
+   */
+  private String queryString(String param, String urlParams) {
+    if (param == null) {
+      return (urlParams == null) ? "" : "?" + urlParams;
+    }
+    return (urlParams == null) ? "?" + param : "?" + param + "&" + urlParams;
+  }
+
   @Override
   public IndexMessageResponse getScroll(String scrollId) throws IOException {
 
@@ -166,6 +261,29 @@ public class BaseHttpMessageSender implements IndexMessageSender {
     return new IndexMessageResponse(response.code(), responseBody);
   }
 
+  @Override
+  public IndexMessageResponse openPointInTime(String indexName, String urlParams) throws IOException {
+
+    String url = baseUrl + indexName + "/_pit" + queryString("keep_alive=1m", urlParams);
+    Response response = postJson(url, "");
+    String responseBody = responseDebug("POST", url, response);
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
+  @Override
+  public IndexMessageResponse closePointInTime(String pitId) throws IOException {
+
+    String url = baseUrl + "_pit";
+    Request request = new Request.Builder()
+        .url(url)
+        .delete(RequestBody.create(JSON, "{\"id\":\"" + pitId + "\"}"))
+        .build();
+
+    Response response = client.newCall(request).execute();
+    String responseBody = responseDebug("DELETE", url, response);
+    return new IndexMessageResponse(response.code(), responseBody);
+  }
+
   @Override
   public IndexMessageResponse clearScrollIds(Set<String> scrollIds) throws IOException {
 
@@ -194,9 +312,9 @@ public class BaseHttpMessageSender implements IndexMessageSender {
   }
 
   @Override
-  public IndexMessageResponse getDocSource(String indexName, String docId) throws IOException {
+  public IndexMessageResponse getDocSource(String indexName, String docId, String urlParams) throws IOException {
 
-    String url = baseUrl + indexName + "/_doc/" + docId + "/_source";
+    String url = baseUrl + indexName + "/_doc/" + docId + "/_source" + queryString(null, urlParams);
 
     Request request = new Request.Builder().url(url).get().build();
     if (logger.isLoggable(DEBUG)) {
@@ -209,9 +327,9 @@ public class BaseHttpMessageSender implements IndexMessageSender {
   }
 
   @Override
-  public String postBulk(String json) throws IOException {
+  public String postBulk(String urlParams, String json) throws IOException {
 
-    Response response = postJson(false, bulkUrl, json);
+    Response response = postJson(false, bulkUrl + queryString(null, urlParams), json);
     return response.body().string();
   }
 
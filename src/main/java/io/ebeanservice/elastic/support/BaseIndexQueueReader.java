@@ -1,177 +1,391 @@
 package io.ebeanservice.elastic.support;
 
 import io.avaje.applog.AppLog;
+import io.ebean.DocStoreQueueEntry;
 import io.ebean.SqlQuery;
 import io.ebean.SqlRow;
 import io.ebean.SqlUpdate;
 import io.ebean.Transaction;
-import io.ebeaninternal.api.SpiEbeanServer;
+import io.ebean.plugin.SpiServer;
+import io.ebean.util.SplitName;
 import io.ebeaninternal.server.deploy.BeanDescriptor;
-import io.ebeanservice.docstore.api.DocStoreUpdates;
+import io.ebeanservice.elastic.ElasticUpdateProcessor;
+import io.ebeanservice.elastic.bulk.BulkUpdate;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.INFO;
 
 /**
  * Base implementation that will periodically read the queue and process the entries.
+ * <p>
+ * Each drain claims a batch of entries (skipping entries locked by other readers), processes
+ * them via the bulk API and deletes them on success or releases them on failure. Entries left
+ * processing by a failed node are reclaimed once claimed for longer than the claim timeout.
+ * </p>
+ * <p>
+ * When the queue is partitioned into buckets each node only claims the entries of the buckets
+ * it holds a lease on such that nodes drain disjoint buckets and the entries of a document
+ * are processed in order by a single node.
+ * </p>
  */
 public class BaseIndexQueueReader {
 
   protected System.Logger logger = AppLog.getLogger(BaseIndexQueueReader.class);
 
-  protected final SpiEbeanServer server;
+  protected final SpiServer server;
+
+  protected final ElasticUpdateProcessor updateProcessor;
 
   protected final String queueTableName;
 
+  protected final int batchSize;
+
+  protected final int drainMillis;
+
   protected final String sqlObtainEntries;
 
   protected final String markProcessingSql;
 
-  public BaseIndexQueueReader(SpiEbeanServer server, String queueTableName){
-    this.server = server;
-    this.queueTableName = queueTableName;
-    this.sqlObtainEntries = getObtainSql();
-    this.markProcessingSql = getMarkProcessingSql();
-  }
-
-  public boolean process() {
+  protected final String deleteSql;
 
-    // obtain a cluster wide lock
-    if (!obtainClusterWideLock()) {
-      logger.log(DEBUG, "did not obtain cluster wide lock");
-      return false;
-    }
+  protected final String releaseSql;
 
-    List<SqlRow> entries = obtainEntriesReleaseLock();
+  protected final String reclaimSql;
 
+  private final long claimTimeoutMillis;
 
-    DocStoreUpdates docStoreUpdates = new DocStoreUpdates();
+  private final AtomicLong processedCount = new AtomicLong();
 
-    // group by queueId/type
-    Map<String,List<SqlRow>> map = groupEntriesByQueueId(entries);
+  private final AtomicLong failedCount = new AtomicLong();
 
-    for (Map.Entry<String, List<SqlRow>> queueEntries : map.entrySet()) {
-      addEntries(docStoreUpdates, queueEntries);
-    }
+  private volatile long lagMillis;
 
+  private final QueueLeases leases;
 
-    // loop the entries and process them via bulk api
-    // successful entries delete
-    // unsuccessful entries re-activate
+  private ScheduledFuture<?> drainTask;
 
-    return true;
+  public BaseIndexQueueReader(SpiServer server, ElasticUpdateProcessor updateProcessor, String queueTableName, int batchSize, int drainMillis) {
+    this(server, updateProcessor, queueTableName, batchSize, drainMillis, 0, 0, 0);
   }
 
-  private void addEntries(DocStoreUpdates docStoreUpdates, Map.Entry<String, List<SqlRow>> queueEntries) {
-
-    String queueId = queueEntries.getKey();
-    List<SqlRow> entries = queueEntries.getValue();
-
-    // convert into a query
-
+  /**
+   * Construct with the queue partitioned into buckets leased via the <code>queueTableName_lease</code> table.
+   *
+   * @param buckets     The number of buckets the queue is partitioned into (0 for no partitioning)
+   * @param leaseMillis The time a bucket lease is held without being renewed
+   */
+  public BaseIndexQueueReader(SpiServer server, ElasticUpdateProcessor updateProcessor, String queueTableName, int batchSize, int drainMillis,
+                              int buckets, long leaseMillis) {
+    this(server, updateProcessor, queueTableName, batchSize, drainMillis, buckets, leaseMillis, 0);
   }
 
   /**
-   * Return the entries grouped by queueId.
+   * Construct with the claim timeout after which entries left processing (by a failed node) are reclaimed.
+   *
+   * @param claimTimeoutMillis The time after which entries left processing are reclaimed (0 for never)
    */
-  private Map<String, List<SqlRow>> groupEntriesByQueueId(List<SqlRow> entries) {
-
-    Map<String, List<SqlRow>> map = new LinkedHashMap<String, List<SqlRow>>();
-
-    for (int i = 0; i < entries.size(); i++) {
+  public BaseIndexQueueReader(SpiServer server, ElasticUpdateProcessor updateProcessor, String queueTableName, int batchSize, int drainMillis,
+                              int buckets, long leaseMillis, long claimTimeoutMillis) {
+    this.server = server;
+    this.updateProcessor = updateProcessor;
+    this.queueTableName = queueTableName;
+    this.batchSize = batchSize;
+    this.drainMillis = drainMillis;
+    this.claimTimeoutMillis = claimTimeoutMillis;
+    this.leases = (buckets <= 0) ? null : new QueueLeases(server, queueTableName, queueTableName + "_lease", buckets, leaseMillis);
+    this.sqlObtainEntries = getObtainSql();
+    this.markProcessingSql = getMarkProcessingSql();
+    this.deleteSql = getDeleteSql();
+    this.releaseSql = getReleaseSql();
+    this.reclaimSql = getReclaimSql();
+  }
 
-      SqlRow entry = entries.get(i);
-      String queueId = entry.getString("queue_id");
+  /**
+   * Start the scheduled drain of the queue (when the queue table is available).
+   */
+  public synchronized void onStartup() {
+    if (drainMillis <= 0 || drainTask != null) {
+      return;
+    }
+    try {
+      server.sqlQuery("select count(*) from " + queueTableName).findOne();
+    } catch (Exception e) {
+      logger.log(INFO, "Not draining doc store queue as table {0} is not available", queueTableName);
+      return;
+    }
+    drainTask = server.backgroundExecutor().scheduleWithFixedDelay(this::drain, drainMillis, drainMillis, TimeUnit.MILLISECONDS);
+  }
 
-      List<SqlRow> list = map.get(queueId);
-      if (list == null) {
-        // no map entry for this queueId so initialise it
-        list = new ArrayList<SqlRow>();
-        map.put(queueId, list);
+  /**
+   * Stop the scheduled drain of the queue.
+   */
+  public synchronized void shutdown() {
+    if (drainTask != null) {
+      drainTask.cancel(false);
+      drainTask = null;
+      if (leases != null) {
+        try {
+          leases.releaseAll();
+        } catch (Exception e) {
+          logger.log(ERROR, "Error releasing doc store queue leases", e);
+        }
       }
-      list.add(entry);
     }
+  }
 
-    return map;
+  /**
+   * Process batches of entries until the queue is empty.
+   */
+  public void drain() {
+    try {
+      if (leases != null && leases.rebalance().isEmpty()) {
+        logger.log(DEBUG, "no doc store queue buckets leased");
+        return;
+      }
+      if (leases == null && claimTimeoutMillis > 0) {
+        reclaim();
+      }
+      while (process() == batchSize) {
+        logger.log(DEBUG, "draining more doc store queue entries");
+      }
+    } catch (Exception e) {
+      logger.log(ERROR, "Error draining doc store queue", e);
+    }
   }
 
-  private void addEntry(DocStoreUpdates docStoreUpdates, SqlRow entry) {
+  /**
+   * Claim and process a batch of entries returning the number of entries successfully processed.
+   */
+  public int process() {
 
-    BeanDescriptor<?> desc = null;
-    //desc.
-    //indexUpdates.add();
+    if (leases != null && (leases.owned().isEmpty() || leases.renew().isEmpty())) {
+      return 0;
+    }
+    List<SqlRow> rows = obtainEntries();
+    if (rows.isEmpty()) {
+      lagMillis = 0;
+      return 0;
+    }
 
+    lagMillis = lag(rows);
+    try {
+      List<DocStoreQueueEntry> entries = new ArrayList<>(rows.size());
+      for (SqlRow row : rows) {
+        entries.add(toEntry(row));
+      }
+      BulkUpdate txn = updateProcessor.createBulkUpdate(0);
+      updateProcessor.processQueue(txn, entries);
+      txn.flush();
+
+      // only delete the entries of the buckets still leased (fencing entries reset by a new owner)
+      List<Object> ids = stillOwned(rows);
+      executeForIds(deleteSql, ids);
+      processedCount.addAndGet(ids.size());
+      logger.log(DEBUG, "processed {0} doc store queue entries lag:{1}ms", ids.size(), lagMillis);
+      return rows.size();
+
+    } catch (Exception e) {
+      failedCount.addAndGet(rows.size());
+      logger.log(ERROR, "Error processing doc store queue entries, releasing " + rows.size() + " entries", e);
+      executeForIds(releaseSql, stillOwned(rows));
+      return 0;
+    }
   }
 
-  private List<SqlRow> obtainEntriesReleaseLock() {
-    try {
+  /**
+   * Return the ids of the entries of the buckets this node still holds the lease on.
+   * <p>
+   * The entries of a bucket whose lease expired during processing are left for the node that
+   * acquired the bucket (which resets them for processing).
+   * </p>
+   */
+  private List<Object> stillOwned(List<SqlRow> rows) {
+    if (leases == null) {
+      return allIds(rows);
+    }
+    Set<Integer> owned = leases.renew();
+    List<Object> ids = new ArrayList<>(rows.size());
+    for (SqlRow row : rows) {
+      if (owned.contains(row.getInteger("bucket"))) {
+        ids.add(row.getLong("id"));
+      }
+    }
+    if (ids.size() < rows.size()) {
+      logger.log(INFO, "lease expired for {0} doc store queue entries left for the new bucket owner", rows.size() - ids.size());
+    }
+    return ids;
+  }
 
-      // read a batch of queue entries
-      Transaction transaction = server.createTransaction();
-      try {
-        List<SqlRow> rows = server.sqlQuery(sqlObtainEntries)
-                .usingTransaction(transaction)
-                .findList();
-
-        SqlUpdate sqlUpdate = server.sqlUpdate(markProcessingSql);
-        transaction.setBatchSize(100);
-        // update the entries marking them as processing
-        for (SqlRow row : rows) {
-          markEntryAsProcessing(row, sqlUpdate, transaction);
-        }
+  /**
+   * Return the total number of queue entries successfully processed.
+   */
+  public long getProcessedCount() {
+    return processedCount.get();
+  }
 
-        // return the entries
-        transaction.commit();
+  /**
+   * Return the total number of queue entries that failed processing (and were released).
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
 
-        return rows;
+  /**
+   * Return the age in millis of the oldest entry of the last batch claimed (0 when the queue was empty).
+   */
+  public long getLagMillis() {
+    return lagMillis;
+  }
 
-      } finally {
-        transaction.end();
+  private long lag(List<SqlRow> rows) {
+    long oldest = Long.MAX_VALUE;
+    for (SqlRow row : rows) {
+      Timestamp whenQueued = row.getTimestamp("when_queued");
+      if (whenQueued != null) {
+        oldest = Math.min(oldest, whenQueued.getTime());
       }
+    }
+    return (oldest == Long.MAX_VALUE) ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+  }
 
-    } finally {
-      releaseClusterWideLock();
+  /**
+   * Release the entries claimed for longer than the claim timeout (left processing by a failed node).
+   */
+  private void reclaim() {
+    int rows = server.sqlUpdate(reclaimSql)
+      .setParameter("claimedBefore", new Timestamp(System.currentTimeMillis() - claimTimeoutMillis))
+      .execute();
+    if (rows > 0) {
+      logger.log(INFO, "reclaimed {0} doc store queue entries left processing", rows);
     }
+  }
 
+  private List<Object> allIds(List<SqlRow> rows) {
+    List<Object> ids = new ArrayList<>(rows.size());
+    for (SqlRow row : rows) {
+      ids.add(row.getLong("id"));
+    }
+    return ids;
   }
 
-  protected void markEntryAsProcessing(SqlRow row, SqlUpdate sqlUpdate, Transaction transaction) {
+  /**
+   * Convert the queue row into a queue entry with the id converted to the type of the bean id.
+   */
+  protected DocStoreQueueEntry toEntry(SqlRow row) {
 
+    String queueId = row.getString("queue_id");
+    DocStoreQueueEntry.Action action = action(row.getInteger("action"));
+    BeanDescriptor<?> desc = (BeanDescriptor<?>) server.beanTypeForQueueId(queueId);
+    if (desc == null) {
+      throw new IllegalStateException("No bean type for doc store queueId " + queueId);
+    }
     String docId = row.getString("doc_id");
-    sqlUpdate.setParameter(1, docId);
-    sqlUpdate.execute();
-
+    if (action == DocStoreQueueEntry.Action.NESTED) {
+      String path = row.getString("path");
+      BeanDescriptor<?> nestedDesc = (BeanDescriptor<?>) desc.beanTypeAtPath(SplitName.split(path)[0]);
+      return new DocStoreQueueEntry(action, queueId, path, nestedDesc.convertId(docId));
+    }
+    return new DocStoreQueueEntry(action, queueId, desc.convertId(docId));
   }
 
+  private static DocStoreQueueEntry.Action action(int value) {
+    for (DocStoreQueueEntry.Action action : DocStoreQueueEntry.Action.values()) {
+      if (action.getValue() == value) {
+        return action;
+      }
+    }
+    throw new IllegalStateException("Unknown doc store queue action " + value);
+  }
 
-  protected void releaseClusterWideLock() {
-
+  /**
+   * Claim a batch of entries marking them as processing.
+   */
+  private List<SqlRow> obtainEntries() {
+    try (Transaction transaction = server.beginTransaction()) {
+      SqlQuery query = server.sqlQuery(sqlObtainEntries).usingTransaction(transaction);
+      if (leases != null) {
+        query.setParameter("buckets", leases.owned());
+      }
+      List<SqlRow> rows = query.findList();
 
+      if (!rows.isEmpty()) {
+        server.sqlUpdate(markProcessingSql)
+          .setParameter("ids", allIds(rows))
+          .setParameter("claimedAt", new Timestamp(System.currentTimeMillis()))
+          .execute();
+      }
+      transaction.commit();
+      return rows;
+    }
   }
 
-  protected boolean obtainClusterWideLock() {
-
-    return true;
+  private void executeForIds(String sql, List<Object> ids) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    SqlUpdate sqlUpdate = server.sqlUpdate(sql);
+    sqlUpdate.setParameter("ids", ids);
+    sqlUpdate.execute();
   }
 
   protected String getMarkProcessingSql() {
+    return "update " + queueTableName
+      + " set processing = " + BaseIndexQueueWriter.PROCESSING_TRUE + ", claimed_at = :claimedAt"
+      + " where id in (:ids)";
+  }
 
-    return "update "+queueTableName
-        +" set processing = "+ BaseIndexQueueWriter.PROCESSING_TRUE
-        +" where id = ?";
+  protected String getDeleteSql() {
+    return "delete from " + queueTableName + " where id in (:ids)";
   }
 
-  protected String getObtainSql() {
+  protected String getReleaseSql() {
+    return "update " + queueTableName
+      + " set processing = " + BaseIndexQueueWriter.PROCESSING_FALSE + ", claimed_at = null"
+      + " where id in (:ids)";
+  }
 
-    return "select id, queue_id, doc_id, action, processing, when_queued from "
-        + queueTableName
-        + " where processing = "+ BaseIndexQueueWriter.PROCESSING_FALSE
-        +" order by id";
+  protected String getReclaimSql() {
+    return "update " + queueTableName
+      + " set processing = " + BaseIndexQueueWriter.PROCESSING_FALSE + ", claimed_at = null"
+      + " where processing = " + BaseIndexQueueWriter.PROCESSING_TRUE + " and claimed_at < :claimedBefore";
+  }
 
+  /**
+   * Return the SQL claiming a batch of entries skipping the rows locked by other readers.
+   */
+  protected String getObtainSql() {
 
+    String columns = "id, queue_id, doc_id, action, path, processing, when_queued";
+    String where = " where processing = " + BaseIndexQueueWriter.PROCESSING_FALSE;
+    if (leases != null) {
+      columns += ", bucket";
+      where += " and bucket in (:buckets)";
+    }
+    switch (server.databasePlatform().platform().base()) {
+      case SQLSERVER:
+        return "select top " + batchSize + " " + columns + " from " + queueTableName
+          + " with (updlock, readpast, rowlock)" + where + " order by id";
+      case ORACLE:
+        // rownum applies before order by (and skip locked) so the batch of ids is limited in a subselect
+        return "select " + columns + " from " + queueTableName + where
+          + " and id in (select id from " + queueTableName + where + " order by id fetch first " + batchSize + " rows only)"
+          + " order by id for update skip locked";
+      case H2:
+        // rows are claimed by marking them as processing so H2 without skip locked only blocks briefly
+        return "select " + columns + " from " + queueTableName + where
+          + " order by id limit " + batchSize + " for update";
+      default:
+        return "select " + columns + " from " + queueTableName + where
+          + " order by id limit " + batchSize + " for update skip locked";
+    }
   }
 }
@@ -1,67 +1,131 @@
 package io.ebeanservice.elastic.support;
 
+import io.avaje.applog.AppLog;
 import io.ebean.*;
 
 import java.sql.Timestamp;
 import java.util.List;
 
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.INFO;
+
 /**
  * Base implementation of IndexQueueWriter that inserts the events into a database table.
+ * <p>
+ * The DDL for the queue table (and the lease table used when the queue is partitioned into buckets)
+ * is in the <code>io/ebeanservice/elastic/eb_elastic_queue.sql</code> resource.
+ * </p>
  */
 public class BaseIndexQueueWriter implements IndexQueueWriter {
 
+  private static final System.Logger logger = AppLog.getLogger(BaseIndexQueueWriter.class);
+
   public static final int PROCESSING_FALSE = 0;
 
   public static final int PROCESSING_TRUE = 1;
 
   final Database server;
 
+  final String tableName;
+
+  final int buckets;
+
   final String sql;
 
+  /**
+   * False when the queue table was not available on startup.
+   */
+  private volatile boolean available = true;
+
   public BaseIndexQueueWriter(Database server, String tableName) {
+    this(server, tableName, 0);
+  }
+
+  /**
+   * Construct partitioning the entries into the given number of buckets (0 for no partitioning).
+   */
+  public BaseIndexQueueWriter(Database server, String tableName, int buckets) {
     this.server = server;
+    this.tableName = tableName;
+    this.buckets = buckets;
     this.sql = createSql(tableName);
   }
 
   protected String createSql(String tableName) {
-    return "insert into "+tableName+" (queue_id, doc_id, action, path, processing, when_queued) values (?,?,?,?,?)";
+    if (buckets > 0) {
+      return "insert into "+tableName+" (queue_id, doc_id, action, path, processing, when_queued, bucket) values (?,?,?,?,?,?,?)";
+    }
+    return "insert into "+tableName+" (queue_id, doc_id, action, path, processing, when_queued) values (?,?,?,?,?,?)";
+  }
+
+  /**
+   * Return the bucket of the document such that all the entries of a document are in the same bucket.
+   */
+  public static int bucket(String queueId, String docId, int buckets) {
+    return Math.floorMod((queueId + ":" + docId).hashCode(), buckets);
   }
 
+  /**
+   * Check the queue table is available (with queue entries dropped when it is not).
+   */
   @Override
   public void onStartup() {
-    // check queue connectivity
+    try {
+      server.sqlQuery("select count(*) from " + tableName).findOne();
+      available = true;
+    } catch (Exception e) {
+      available = false;
+      logger.log(INFO, "Not queuing doc store entries as table {0} is not available", tableName);
+    }
   }
 
   @Override
   public void queue(List<DocStoreQueueEntry> queueEntries) {
+    if (isQueueable(queueEntries)) {
+      try (Transaction transaction = server.beginTransaction()) {
+        insert(transaction, queueEntries);
+        transaction.commit();
+      }
+    }
+  }
 
-    if (true) {
-      return;
+  @Override
+  public void queue(Transaction transaction, List<DocStoreQueueEntry> queueEntries) {
+    if (isQueueable(queueEntries)) {
+      insert(transaction, queueEntries);
     }
+  }
+
+  private boolean isQueueable(List<DocStoreQueueEntry> queueEntries) {
     if (queueEntries.isEmpty()) {
-      return;
+      return false;
     }
+    if (!available) {
+      logger.log(ERROR, "Dropping {0} doc store queue entries as table {1} is not available", queueEntries.size(), tableName);
+      return false;
+    }
+    return true;
+  }
 
-    SqlUpdate sqlUpdate = server.sqlUpdate(sql);
-    Transaction transaction = server.createTransaction();
-    try {
-      transaction.setBatchSize(100);
-
-      for (DocStoreQueueEntry entry : queueEntries) {
-        sqlUpdate.setParameter(1, entry.getQueueId());
-        sqlUpdate.setParameter(2, entry.getBeanId().toString());
-        sqlUpdate.setParameter(3, entry.getType().getValue());
-        sqlUpdate.setParameter(4, entry.getPath());
-        sqlUpdate.setParameter(5, PROCESSING_FALSE);
-        sqlUpdate.setParameter(6, new Timestamp(System.currentTimeMillis()));
-
-        sqlUpdate.execute();
+  /**
+   * Insert the entries as a JDBC batch using the given transaction.
+   */
+  private void insert(Transaction transaction, List<DocStoreQueueEntry> queueEntries) {
+    Timestamp whenQueued = new Timestamp(System.currentTimeMillis());
+    SqlUpdate sqlUpdate = server.sqlUpdate(sql).usingTransaction(transaction);
+    for (DocStoreQueueEntry entry : queueEntries) {
+      String docId = entry.getBeanId().toString();
+      sqlUpdate.setParameter(1, entry.getQueueId());
+      sqlUpdate.setParameter(2, docId);
+      sqlUpdate.setParameter(3, entry.getType().getValue());
+      sqlUpdate.setParameter(4, entry.getPath());
+      sqlUpdate.setParameter(5, PROCESSING_FALSE);
+      sqlUpdate.setParameter(6, whenQueued);
+      if (buckets > 0) {
+        sqlUpdate.setParameter(7, bucket(entry.getQueueId(), docId, buckets));
       }
-
-      transaction.commit();
-
-    } finally {
-      transaction.end();
+      sqlUpdate.addBatch();
     }
+    sqlUpdate.executeBatch();
   }
 }
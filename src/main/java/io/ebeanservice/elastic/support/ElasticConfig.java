@@ -0,0 +1,538 @@
+package io.ebeanservice.elastic.support;
+
+import io.ebeanservice.elastic.query.SearchHints;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * ElasticSearch specific configuration (in addition to DocStoreConfig).
+ * <p>
+ * These settings are loaded from properties using the <code>ebean.docstore.elastic</code> prefix.
+ * </p>
+ */
+public class ElasticConfig {
+
+  private static final String PREFIX = "ebean.docstore.elastic.";
+
+  /**
+   * IN lists with more values than this are split into chunks (0 to disable).
+   */
+  private int inListChunkSize = 10_000;
+
+  /**
+   * The track_total_hits accuracy threshold used by findPagedList.
+   */
+  private int trackTotalHits = 10_000;
+
+  /**
+   * The max number of selected properties fetched using docvalue_fields rather than _source (0 to disable).
+   */
+  private int docValueProjectionMax;
+
+  /**
+   * Time in millis that concurrent searches wait to be batched into a single _msearch (0 to disable).
+   */
+  private int multiSearchWindowMillis;
+
+  /**
+   * The max number of searches batched into a single _msearch.
+   */
+  private int multiSearchMaxBatch = 20;
+
+  /**
+   * The max number of search responses held in the query result cache (0 to disable).
+   */
+  private int queryCacheMaxEntries;
+
+  /**
+   * The time to live in millis of search responses held in the query result cache.
+   */
+  private int queryCacheTtlMillis = 5000;
+
+  /**
+   * The time in millis after a write to an index during which its search responses are not cached.
+   */
+  private int queryCacheGraceMillis = 1000;
+
+  /**
+   * The max number of documents held in the findById near cache (0 to disable).
+   */
+  private int nearCacheMaxEntries;
+
+  /**
+   * The max total bytes of document source held in the findById near cache.
+   */
+  private long nearCacheMaxBytes = 10_000_000;
+
+  /**
+   * The time to live in millis of documents held in the findById near cache.
+   */
+  private int nearCacheTtlMillis = 600_000;
+
+  /**
+   * The indexes that use the findById near cache (empty for all indexes).
+   */
+  private Set<String> nearCacheIndexes = Collections.emptySet();
+
+  /**
+   * Set to true to coalesce identical concurrent searches and findById requests.
+   */
+  private boolean coalesceRequests;
+
+  /**
+   * The number of queued index ids loaded per query when reindexing (0 to load all in one query).
+   */
+  private int reindexChunkSize = 1000;
+
+  /**
+   * The max number of chunks of queued index ids loaded concurrently when reindexing.
+   */
+  private int reindexParallelism = 2;
+
+  /**
+   * The delay in millis between drains of the queue table (0 to not drain the queue).
+   */
+  private int queueDrainMillis = 1000;
+
+  /**
+   * The max number of queue entries claimed and processed per batch.
+   */
+  private int queueBatchSize = 500;
+
+  /**
+   * The number of buckets the queue is partitioned into for draining by multiple nodes (0 for none).
+   */
+  private int queueBuckets;
+
+  /**
+   * The time in millis a node holds the lease of a queue bucket without renewing it.
+   */
+  private int queueLeaseMillis = 30_000;
+
+  /**
+   * The time in millis after which queue entries left processing (by a failed node) are reclaimed.
+   */
+  private int queueClaimTimeoutMillis = 300_000;
+
+  /**
+   * The default search hints by index name.
+   */
+  private final Map<String, SearchHints> searchHints = new HashMap<>();
+
+  /**
+   * Return the number of values after which an IN list is split into chunked queries.
+   */
+  public int getInListChunkSize() {
+    return inListChunkSize;
+  }
+
+  /**
+   * Set the number of values after which an IN list is split into chunked queries (0 to disable).
+   */
+  public void setInListChunkSize(int inListChunkSize) {
+    this.inListChunkSize = inListChunkSize;
+  }
+
+  /**
+   * Return the track_total_hits accuracy threshold used by findPagedList.
+   */
+  public int getTrackTotalHits() {
+    return trackTotalHits;
+  }
+
+  /**
+   * Set the track_total_hits accuracy threshold used by findPagedList.
+   * <p>
+   * When the total hits exceeds this threshold the total count is obtained via a
+   * separate _count request when it is requested. Set to 0 to always use a separate
+   * _count request and Integer.MAX_VALUE to always count accurately in the search.
+   * </p>
+   */
+  public void setTrackTotalHits(int trackTotalHits) {
+    this.trackTotalHits = trackTotalHits;
+  }
+
+  /**
+   * Return the max number of selected properties fetched using docvalue_fields rather than _source.
+   */
+  public int getDocValueProjectionMax() {
+    return docValueProjectionMax;
+  }
+
+  /**
+   * Set the max number of selected properties fetched using docvalue_fields rather than _source.
+   * <p>
+   * Queries that select only this many top level keyword, numeric, boolean or date properties
+   * fetch them as doc values with _source false. Defaults to 0 which always fetches the _source.
+   * </p>
+   */
+  public void setDocValueProjectionMax(int docValueProjectionMax) {
+    this.docValueProjectionMax = docValueProjectionMax;
+  }
+
+  /**
+   * Return the time in millis concurrent searches wait to be batched into a single _msearch.
+   */
+  public int getMultiSearchWindowMillis() {
+    return multiSearchWindowMillis;
+  }
+
+  /**
+   * Set the time in millis concurrent searches wait to be batched into a single _msearch.
+   * <p>
+   * When greater than 0 searches issued concurrently (e.g. by the queries of a dashboard) are
+   * sent as a single _msearch request. Defaults to 0 meaning each search is sent on its own.
+   * </p>
+   */
+  public void setMultiSearchWindowMillis(int multiSearchWindowMillis) {
+    this.multiSearchWindowMillis = multiSearchWindowMillis;
+  }
+
+  /**
+   * Return the max number of searches batched into a single _msearch.
+   */
+  public int getMultiSearchMaxBatch() {
+    return multiSearchMaxBatch;
+  }
+
+  /**
+   * Set the max number of searches batched into a single _msearch.
+   */
+  public void setMultiSearchMaxBatch(int multiSearchMaxBatch) {
+    this.multiSearchMaxBatch = multiSearchMaxBatch;
+  }
+
+  /**
+   * Return the max number of search responses held in the query result cache.
+   */
+  public int getQueryCacheMaxEntries() {
+    return queryCacheMaxEntries;
+  }
+
+  /**
+   * Set the max number of search responses held in the query result cache.
+   * <p>
+   * Defaults to 0 meaning the query result cache is not used.
+   * </p>
+   */
+  public void setQueryCacheMaxEntries(int queryCacheMaxEntries) {
+    this.queryCacheMaxEntries = queryCacheMaxEntries;
+  }
+
+  /**
+   * Return the time to live in millis of search responses held in the query result cache.
+   */
+  public int getQueryCacheTtlMillis() {
+    return queryCacheTtlMillis;
+  }
+
+  /**
+   * Set the time to live in millis of search responses held in the query result cache.
+   */
+  public void setQueryCacheTtlMillis(int queryCacheTtlMillis) {
+    this.queryCacheTtlMillis = queryCacheTtlMillis;
+  }
+
+  /**
+   * Return the time in millis after a write to an index during which its search responses are not cached.
+   */
+  public int getQueryCacheGraceMillis() {
+    return queryCacheGraceMillis;
+  }
+
+  /**
+   * Set the time in millis after a write to an index during which its search responses are not cached.
+   * <p>
+   * Writes are not refreshed so this should be at least the refresh_interval of the indexes (default 1 second).
+   * </p>
+   */
+  public void setQueryCacheGraceMillis(int queryCacheGraceMillis) {
+    this.queryCacheGraceMillis = queryCacheGraceMillis;
+  }
+
+  /**
+   * Return the max number of documents held in the findById near cache.
+   */
+  public int getNearCacheMaxEntries() {
+    return nearCacheMaxEntries;
+  }
+
+  /**
+   * Set the max number of documents held in the findById near cache.
+   * <p>
+   * Defaults to 0 meaning findById always fetches the document source. This is intended
+   * for indexes of reference documents that rarely change (e.g. country, product).
+   * </p>
+   */
+  public void setNearCacheMaxEntries(int nearCacheMaxEntries) {
+    this.nearCacheMaxEntries = nearCacheMaxEntries;
+  }
+
+  /**
+   * Return the max total bytes of document source held in the findById near cache.
+   */
+  public long getNearCacheMaxBytes() {
+    return nearCacheMaxBytes;
+  }
+
+  /**
+   * Set the max total bytes of document source held in the findById near cache.
+   */
+  public void setNearCacheMaxBytes(long nearCacheMaxBytes) {
+    this.nearCacheMaxBytes = nearCacheMaxBytes;
+  }
+
+  /**
+   * Return the time to live in millis of documents held in the findById near cache.
+   */
+  public int getNearCacheTtlMillis() {
+    return nearCacheTtlMillis;
+  }
+
+  /**
+   * Set the time to live in millis of documents held in the findById near cache.
+   */
+  public void setNearCacheTtlMillis(int nearCacheTtlMillis) {
+    this.nearCacheTtlMillis = nearCacheTtlMillis;
+  }
+
+  /**
+   * Return the indexes that use the findById near cache (empty for all indexes).
+   */
+  public Set<String> getNearCacheIndexes() {
+    return nearCacheIndexes;
+  }
+
+  /**
+   * Set the indexes that use the findById near cache (empty for all indexes).
+   */
+  public void setNearCacheIndexes(Set<String> nearCacheIndexes) {
+    this.nearCacheIndexes = nearCacheIndexes;
+  }
+
+  /**
+   * Return true if identical concurrent searches and findById requests are coalesced.
+   */
+  public boolean isCoalesceRequests() {
+    return coalesceRequests;
+  }
+
+  /**
+   * Set to true to coalesce identical concurrent searches and findById requests.
+   * <p>
+   * Concurrent requests with the same index and body then share a single in-flight request
+   * and response body with each caller building its own beans. Defaults to false as a
+   * request that joins an in-flight request can miss a write made just before it.
+   * </p>
+   */
+  public void setCoalesceRequests(boolean coalesceRequests) {
+    this.coalesceRequests = coalesceRequests;
+  }
+
+  /**
+   * Return the number of queued index ids loaded per query when reindexing.
+   */
+  public int getReindexChunkSize() {
+    return reindexChunkSize;
+  }
+
+  /**
+   * Set the number of queued index ids loaded per query when reindexing (0 to load all in one query).
+   * <p>
+   * This bounds the size of the SQL IN clause when processing a large backlog of queued index
+   * entries (for example after an outage of ElasticSearch).
+   * </p>
+   */
+  public void setReindexChunkSize(int reindexChunkSize) {
+    this.reindexChunkSize = reindexChunkSize;
+  }
+
+  /**
+   * Return the max number of chunks of queued index ids loaded concurrently when reindexing.
+   */
+  public int getReindexParallelism() {
+    return reindexParallelism;
+  }
+
+  /**
+   * Set the max number of chunks of queued index ids loaded concurrently when reindexing.
+   */
+  public void setReindexParallelism(int reindexParallelism) {
+    this.reindexParallelism = reindexParallelism;
+  }
+
+  /**
+   * Return the delay in millis between drains of the queue table.
+   */
+  public int getQueueDrainMillis() {
+    return queueDrainMillis;
+  }
+
+  /**
+   * Set the delay in millis between drains of the queue table (0 to not drain the queue).
+   * <p>
+   * Set to 0 when the queue is drained by other instances of the application.
+   * </p>
+   */
+  public void setQueueDrainMillis(int queueDrainMillis) {
+    this.queueDrainMillis = queueDrainMillis;
+  }
+
+  /**
+   * Return the max number of queue entries claimed and processed per batch.
+   */
+  public int getQueueBatchSize() {
+    return queueBatchSize;
+  }
+
+  /**
+   * Set the max number of queue entries claimed and processed per batch.
+   */
+  public void setQueueBatchSize(int queueBatchSize) {
+    this.queueBatchSize = queueBatchSize;
+  }
+
+  /**
+   * Return the number of buckets the queue is partitioned into for draining by multiple nodes.
+   */
+  public int getQueueBuckets() {
+    return queueBuckets;
+  }
+
+  /**
+   * Set the number of buckets the queue is partitioned into for draining by multiple nodes (0 for none).
+   * <p>
+   * Entries are assigned to a bucket by a hash of queue id and document id (stored in the
+   * <code>bucket</code> column) and nodes lease buckets via the <code>eb_elastic_queue_lease</code>
+   * table (with <code>lease_key</code>, <code>owner</code> and <code>lease_until</code> columns) such
+   * that the nodes drain disjoint buckets and the entries of a document are processed in order.
+   * The DDL for both tables is in the <code>io/ebeanservice/elastic/eb_elastic_queue.sql</code> resource.
+   * </p>
+   */
+  public void setQueueBuckets(int queueBuckets) {
+    this.queueBuckets = queueBuckets;
+  }
+
+  /**
+   * Return the time in millis a node holds the lease of a queue bucket without renewing it.
+   */
+  public int getQueueLeaseMillis() {
+    return queueLeaseMillis;
+  }
+
+  /**
+   * Set the time in millis a node holds the lease of a queue bucket without renewing it.
+   * <p>
+   * This should be longer than the time taken to process a batch of queue entries.
+   * </p>
+   */
+  public void setQueueLeaseMillis(int queueLeaseMillis) {
+    this.queueLeaseMillis = queueLeaseMillis;
+  }
+
+  /**
+   * Return the time in millis after which queue entries left processing (by a failed node) are reclaimed.
+   */
+  public int getQueueClaimTimeoutMillis() {
+    return queueClaimTimeoutMillis;
+  }
+
+  /**
+   * Set the time in millis after which queue entries left processing (by a failed node) are reclaimed (0 for never).
+   * <p>
+   * This should be longer than the time taken to process a batch of queue entries. When the queue
+   * is partitioned into buckets the entries of a bucket are instead reclaimed when its lease expires.
+   * </p>
+   */
+  public void setQueueClaimTimeoutMillis(int queueClaimTimeoutMillis) {
+    this.queueClaimTimeoutMillis = queueClaimTimeoutMillis;
+  }
+
+  /**
+   * Return the default search hints for the index (null when none are set).
+   */
+  public SearchHints getSearchHints(String indexName) {
+    return searchHints.get(indexName);
+  }
+
+  /**
+   * Set the default search hints for the index of a bean type.
+   * <p>
+   * These are sent with the searches and counts of the index with hints given for a query
+   * overriding them. In properties these are set using the URL parameter name like
+   * <code>ebean.docstore.elastic.searchHints.order.request_cache=true</code>.
+   * </p>
+   */
+  public void setSearchHints(String indexName, SearchHints hints) {
+    searchHints.put(indexName, hints);
+  }
+
+  /**
+   * Load the settings from properties.
+   */
+  public void loadSettings(Properties properties) {
+    if (properties == null) {
+      return;
+    }
+    inListChunkSize = intProperty(properties, "inListChunkSize", inListChunkSize);
+    trackTotalHits = intProperty(properties, "trackTotalHits", trackTotalHits);
+    docValueProjectionMax = intProperty(properties, "docValueProjectionMax", docValueProjectionMax);
+    multiSearchWindowMillis = intProperty(properties, "multiSearchWindowMillis", multiSearchWindowMillis);
+    multiSearchMaxBatch = intProperty(properties, "multiSearchMaxBatch", multiSearchMaxBatch);
+    queryCacheMaxEntries = intProperty(properties, "queryCacheMaxEntries", queryCacheMaxEntries);
+    queryCacheTtlMillis = intProperty(properties, "queryCacheTtlMillis", queryCacheTtlMillis);
+    queryCacheGraceMillis = intProperty(properties, "queryCacheGraceMillis", queryCacheGraceMillis);
+    nearCacheMaxEntries = intProperty(properties, "nearCacheMaxEntries", nearCacheMaxEntries);
+    nearCacheMaxBytes = longProperty(properties, "nearCacheMaxBytes", nearCacheMaxBytes);
+    nearCacheTtlMillis = intProperty(properties, "nearCacheTtlMillis", nearCacheTtlMillis);
+    reindexChunkSize = intProperty(properties, "reindexChunkSize", reindexChunkSize);
+    reindexParallelism = intProperty(properties, "reindexParallelism", reindexParallelism);
+    queueDrainMillis = intProperty(properties, "queueDrainMillis", queueDrainMillis);
+    queueBatchSize = intProperty(properties, "queueBatchSize", queueBatchSize);
+    queueBuckets = intProperty(properties, "queueBuckets", queueBuckets);
+    queueLeaseMillis = intProperty(properties, "queueLeaseMillis", queueLeaseMillis);
+    queueClaimTimeoutMillis = intProperty(properties, "queueClaimTimeoutMillis", queueClaimTimeoutMillis);
+    String coalesce = properties.getProperty(PREFIX + "coalesceRequests");
+    if (coalesce != null) {
+      coalesceRequests = Boolean.parseBoolean(coalesce.trim());
+    }
+    String indexes = properties.getProperty(PREFIX + "nearCacheIndexes");
+    if (indexes != null && !indexes.trim().isEmpty()) {
+      nearCacheIndexes = new LinkedHashSet<>(Arrays.asList(indexes.trim().split("\\s*,\\s*")));
+    }
+    loadSearchHints(properties);
+  }
+
+  private void loadSearchHints(Properties properties) {
+    String hintsPrefix = PREFIX + "searchHints.";
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith(hintsPrefix)) {
+        // index names can contain dots so the hint name is after the last dot
+        String indexHint = key.substring(hintsPrefix.length());
+        int pos = indexHint.lastIndexOf('.');
+        if (pos < 1) {
+          throw new IllegalArgumentException("Expected " + hintsPrefix + "<indexName>.<hint> but got " + key);
+        }
+        String indexName = indexHint.substring(0, pos);
+        searchHints.computeIfAbsent(indexName, name -> SearchHints.create())
+          .set(indexHint.substring(pos + 1), properties.getProperty(key).trim());
+      }
+    }
+  }
+
+  private int intProperty(Properties properties, String key, int defaultValue) {
+    String value = properties.getProperty(PREFIX + key);
+    return (value == null) ? defaultValue : Integer.parseInt(value.trim());
+  }
+
+  private long longProperty(Properties properties, String key, long defaultValue) {
+    String value = properties.getProperty(PREFIX + key);
+    return (value == null) ? defaultValue : Long.parseLong(value.trim());
+  }
+}
@@ -10,23 +10,86 @@ public interface IndexMessageSender {
 
   /**
    * Send the JSON to the ElasticSearch Bulk API.
+   *
+   * @param urlParams Additional URL parameters such as refresh (null for none)
    */
-  String postBulk(String json) throws IOException;
+  String postBulk(String urlParams, String json) throws IOException;
 
   /**
    * Get the document source for a specific document.
+   *
+   * @param urlParams Additional URL parameters such as routing (null for none)
    */
-  IndexMessageResponse getDocSource(String indexName, String docId) throws IOException;
+  IndexMessageResponse getDocSource(String indexName, String docId, String urlParams) throws IOException;
+
+  /**
+   * Send a multi get request for the documents with the given ids.
+   *
+   * @param sourceIncludes Comma delimited _source includes (null for all the source)
+   * @param urlParams      Additional URL parameters such as routing (null for none)
+   */
+  IndexMessageResponse postMultiGet(String indexName, String sourceIncludes, String urlParams, String jsonIds) throws IOException;
 
   /**
    * Send a query request.
+   *
+   * @param indexName The index to search (null when searching a point in time)
+   * @param urlParams Additional URL parameters such as routing (null for none)
+   */
+  IndexMessageResponse postQuery(boolean scroll, String indexName, String urlParams, String jsonQuery) throws IOException;
+
+  /**
+   * Send a multi search request (newline delimited header and query pairs).
+   */
+  IndexMessageResponse postMultiSearch(String ndJson) throws IOException;
+
+  /**
+   * Send a count request.
+   *
+   * @param urlParams Additional URL parameters such as routing (null for none)
+   */
+  IndexMessageResponse postCount(String indexName, String urlParams, String jsonQuery) throws IOException;
+
+  /**
+   * Send an update by query request.
+   *
+   * @param urlParams Additional URL parameters such as conflicts and slices (null for none)
+   */
+  IndexMessageResponse postUpdateQuery(String indexName, String urlParams, String jsonQuery) throws IOException;
+
+  /**
+   * Store (create or replace) a script with the given id.
+   */
+  IndexMessageResponse putScript(String scriptId, String scriptJson) throws IOException;
+
+  /**
+   * Get the status of a task (such as an update by query run without waiting for completion).
+   */
+  IndexMessageResponse getTask(String taskId) throws IOException;
+
+  /**
+   * Delete the stored result of a completed task (its document in the .tasks index).
+   */
+  IndexMessageResponse deleteTaskResult(String taskId) throws IOException;
+
+  /**
+   * Send a delete by query request.
+   *
+   * @param urlParams Additional URL parameters such as refresh (null for none)
+   */
+  IndexMessageResponse postDeleteQuery(String indexName, String urlParams, String jsonQuery) throws IOException;
+
+  /**
+   * Open a point in time on the index.
+   *
+   * @param urlParams Additional URL parameters such as routing (null for none)
    */
-  IndexMessageResponse postQuery(boolean scroll, String indexName, String jsonQuery) throws IOException;
+  IndexMessageResponse openPointInTime(String indexName, String urlParams) throws IOException;
 
   /**
-   * Send an update query request.
+   * Close the point in time.
    */
-  IndexMessageResponse postUpdateQuery(String indexType, String indexName, String jsonQuery) throws IOException;
+  IndexMessageResponse closePointInTime(String pitId) throws IOException;
 
   /**
    * Send a get scroll request.
@@ -1,6 +1,7 @@
 package io.ebeanservice.elastic.support;
 
 import io.ebean.DocStoreQueueEntry;
+import io.ebean.Transaction;
 
 import java.util.List;
 
@@ -19,4 +20,9 @@ public interface IndexQueueWriter {
    */
   void queue(List<DocStoreQueueEntry> queueEntries);
 
+  /**
+   * Push all the queue entries onto the queue using the given transaction (such that they commit with it).
+   */
+  void queue(Transaction transaction, List<DocStoreQueueEntry> queueEntries);
+
 }
@@ -0,0 +1,263 @@
+package io.ebeanservice.elastic.support;
+
+import io.avaje.applog.AppLog;
+import io.ebean.DuplicateKeyException;
+import io.ebean.SqlRow;
+import io.ebean.plugin.SpiServer;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.lang.System.Logger.Level.DEBUG;
+
+/**
+ * Time bounded leases on the buckets of the queue table such that nodes drain disjoint buckets.
+ * <p>
+ * The lease table holds a row per bucket (<code>bucket:n</code>) with the owning node and a row per
+ * node (<code>node:id</code>) used as a heartbeat. Each node targets an even share of the buckets
+ * given the number of live nodes, acquiring free or expired buckets and releasing buckets above
+ * its share such that the leases rebalance as nodes join or leave.
+ * </p>
+ * <p>
+ * A lease is only renewed while it has not expired. Before deleting processed entries the reader
+ * renews its leases and only deletes the entries of the buckets it still owns, as the entries of
+ * a bucket whose lease expired are reset for processing by the node that acquires it.
+ * </p>
+ */
+class QueueLeases {
+
+  private static final System.Logger log = AppLog.getLogger(QueueLeases.class);
+
+  private static final String BUCKET = "bucket:";
+
+  private static final String NODE = "node:";
+
+  private final SpiServer server;
+
+  private final String leaseTable;
+
+  private final String queueTable;
+
+  private final int buckets;
+
+  private final long leaseMillis;
+
+  private final String nodeId = UUID.randomUUID().toString();
+
+  private final Set<Integer> owned = new LinkedHashSet<>();
+
+  QueueLeases(SpiServer server, String queueTable, String leaseTable, int buckets, long leaseMillis) {
+    this.server = server;
+    this.queueTable = queueTable;
+    this.leaseTable = leaseTable;
+    this.buckets = buckets;
+    this.leaseMillis = leaseMillis;
+  }
+
+  /**
+   * Return the number of buckets a node should own given the number of live nodes.
+   */
+  static int target(int buckets, int liveNodes) {
+    int nodes = Math.max(1, liveNodes);
+    return (buckets + nodes - 1) / nodes;
+  }
+
+  /**
+   * Return the buckets currently leased by this node.
+   */
+  synchronized Set<Integer> owned() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(owned));
+  }
+
+  /**
+   * Heartbeat, renew the owned leases and rebalance returning the buckets leased by this node.
+   */
+  synchronized Set<Integer> rebalance() {
+    long now = System.currentTimeMillis();
+    Timestamp until = new Timestamp(now + leaseMillis);
+    upsert(NODE + nodeId, until);
+    deleteExpiredNodes(new Timestamp(now));
+
+    int liveNodes = server.sqlQuery("select count(*) as live from " + leaseTable + " where lease_key like :node and lease_until > :now")
+      .setParameter("node", NODE + "%")
+      .setParameter("now", new Timestamp(now))
+      .findOne()
+      .getInteger("live");
+
+    Set<Integer> free = new LinkedHashSet<>();
+    Set<Integer> leased = new HashSet<>();
+    owned.clear();
+    List<SqlRow> rows = server.sqlQuery("select lease_key, owner, lease_until from " + leaseTable + " where lease_key like :bucket")
+      .setParameter("bucket", BUCKET + "%")
+      .findList();
+    for (SqlRow row : rows) {
+      int bucket = Integer.parseInt(row.getString("lease_key").substring(BUCKET.length()));
+      Timestamp leaseUntil = row.getTimestamp("lease_until");
+      boolean live = leaseUntil != null && leaseUntil.getTime() > now && row.getString("owner") != null;
+      leased.add(bucket);
+      if (live && nodeId.equals(row.getString("owner"))) {
+        owned.add(bucket);
+      } else if (!live) {
+        free.add(bucket);
+      }
+    }
+    for (int bucket = 0; bucket < buckets; bucket++) {
+      if (!leased.contains(bucket)) {
+        free.add(bucket);
+      }
+    }
+
+    int target = target(buckets, liveNodes);
+    releaseAbove(target);
+    renew(until, new Timestamp(now));
+    for (Integer bucket : free) {
+      if (owned.size() >= target) {
+        break;
+      }
+      if (acquire(bucket, until, new Timestamp(now))) {
+        owned.add(bucket);
+      }
+    }
+    log.log(DEBUG, "node:{0} live nodes:{1} target:{2} buckets:{3}", nodeId, liveNodes, target, owned);
+    return owned();
+  }
+
+  /**
+   * Renew the unexpired leases of the owned buckets returning the buckets still owned.
+   */
+  synchronized Set<Integer> renew() {
+    long now = System.currentTimeMillis();
+    renew(new Timestamp(now + leaseMillis), new Timestamp(now));
+    List<SqlRow> rows = server.sqlQuery("select lease_key from " + leaseTable + " where owner = :owner and lease_key like :bucket and lease_until > :now")
+      .setParameter("owner", nodeId)
+      .setParameter("bucket", BUCKET + "%")
+      .setParameter("now", new Timestamp(now))
+      .findList();
+    owned.clear();
+    for (SqlRow row : rows) {
+      owned.add(Integer.parseInt(row.getString("lease_key").substring(BUCKET.length())));
+    }
+    return owned();
+  }
+
+  /**
+   * Release all the leases of this node (on shutdown).
+   */
+  synchronized void releaseAll() {
+    releaseAbove(0);
+    server.sqlUpdate("delete from " + leaseTable + " where lease_key = :key")
+      .setParameter("key", NODE + nodeId)
+      .execute();
+  }
+
+  private void renew(Timestamp until, Timestamp now) {
+    if (!owned.isEmpty()) {
+      server.sqlUpdate("update " + leaseTable + " set lease_until = :until where owner = :owner and lease_key in (:keys) and lease_until > :now")
+        .setParameter("until", until)
+        .setParameter("owner", nodeId)
+        .setParameter("keys", keys(owned))
+        .setParameter("now", now)
+        .execute();
+    }
+  }
+
+  /**
+   * Delete the heartbeat rows of nodes that have stopped (without releasing their leases).
+   */
+  private void deleteExpiredNodes(Timestamp now) {
+    server.sqlUpdate("delete from " + leaseTable + " where lease_key like :node and lease_until <= :now")
+      .setParameter("node", NODE + "%")
+      .setParameter("now", now)
+      .execute();
+  }
+
+  private void releaseAbove(int target) {
+    if (owned.size() <= target) {
+      return;
+    }
+    List<Integer> release = new ArrayList<>(owned).subList(target, owned.size());
+    server.sqlUpdate("update " + leaseTable + " set owner = null, lease_until = null where owner = :owner and lease_key in (:keys)")
+      .setParameter("owner", nodeId)
+      .setParameter("keys", keys(release))
+      .execute();
+    release.forEach(owned::remove);
+  }
+
+  /**
+   * Acquire the free or expired bucket.
+   * <p>
+   * Only when the lease of the prior owner expired (rather than being released) are the entries
+   * it left processing reset.
+   * </p>
+   */
+  private boolean acquire(int bucket, Timestamp until, Timestamp now) {
+    int rows = server.sqlUpdate("update " + leaseTable + " set owner = :owner, lease_until = :until"
+      + " where lease_key = :key and (owner is null or lease_until is null)")
+      .setParameter("owner", nodeId)
+      .setParameter("until", until)
+      .setParameter("key", BUCKET + bucket)
+      .execute();
+    if (rows > 0) {
+      return true;
+    }
+    rows = server.sqlUpdate("update " + leaseTable + " set owner = :owner, lease_until = :until"
+      + " where lease_key = :key and owner is not null and lease_until <= :now")
+      .setParameter("owner", nodeId)
+      .setParameter("until", until)
+      .setParameter("key", BUCKET + bucket)
+      .setParameter("now", now)
+      .execute();
+    if (rows == 0) {
+      return insert(BUCKET + bucket, until);
+    }
+    int reset = server.sqlUpdate("update " + queueTable + " set processing = " + BaseIndexQueueWriter.PROCESSING_FALSE + ", claimed_at = null"
+      + " where bucket = :bucket and processing = " + BaseIndexQueueWriter.PROCESSING_TRUE)
+      .setParameter("bucket", bucket)
+      .execute();
+    log.log(DEBUG, "node:{0} acquired expired bucket:{1} reset:{2}", nodeId, bucket, reset);
+    return true;
+  }
+
+  private void upsert(String key, Timestamp until) {
+    int rows = server.sqlUpdate("update " + leaseTable + " set owner = :owner, lease_until = :until where lease_key = :key")
+      .setParameter("owner", nodeId)
+      .setParameter("until", until)
+      .setParameter("key", key)
+      .execute();
+    if (rows == 0) {
+      insert(key, until);
+    }
+  }
+
+  /**
+   * Insert the lease row returning false when another node inserted it first.
+   */
+  private boolean insert(String key, Timestamp until) {
+    try {
+      server.sqlUpdate("insert into " + leaseTable + " (lease_key, owner, lease_until) values (:key, :owner, :until)")
+        .setParameter("key", key)
+        .setParameter("owner", nodeId)
+        .setParameter("until", until)
+        .execute();
+      return true;
+    } catch (DuplicateKeyException e) {
+      // another node inserted the row first
+      return false;
+    }
+  }
+
+  private static List<String> keys(Collection<Integer> buckets) {
+    List<String> keys = new ArrayList<>(buckets.size());
+    for (Integer bucket : buckets) {
+      keys.add(BUCKET + bucket);
+    }
+    return keys;
+  }
+}
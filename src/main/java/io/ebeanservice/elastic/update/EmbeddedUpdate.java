@@ -0,0 +1,214 @@
+package io.ebeanservice.elastic.update;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.ebeanservice.elastic.support.StringBuilderWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds a single update by query replacing embedded documents of a path for many changed ids.
+ * <p>
+ * A terms filter matches all the documents embedding any of the changed beans and a stored
+ * script looks up the replacement embedded document by id from the params.
+ * </p>
+ */
+class EmbeddedUpdate {
+
+  /**
+   * The id of the stored script for embedded 'one' (object) paths.
+   */
+  static final String ONE_SCRIPT_ID = "ebean-update-embedded-one";
+
+  /**
+   * The stored script replacing the embedded document (noop when not in the params values).
+   */
+  static final String ONE_SCRIPT = "{\"script\":{\"lang\":\"painless\",\"source\":\""
+    + "def emb = ctx._source[params.path]; "
+    + "def value = (emb == null) ? null : params.values[String.valueOf(emb[params.id])]; "
+    + "if (value == null) { ctx.op = 'noop'; } else { ctx._source[params.path] = value; }"
+    + "\"}}";
+
+  /**
+   * The id of the stored script for beans embedded in the elements of 'many' (nested) paths.
+   */
+  static final String MANY_SCRIPT_ID = "ebean-update-embedded-many";
+
+  /**
+   * The stored script replacing the bean at the element path of each matching nested element
+   * (noop when no element matched).
+   */
+  static final String MANY_SCRIPT = "{\"script\":{\"lang\":\"painless\",\"source\":\""
+    + "def list = ctx._source[params.path]; boolean changed = false; "
+    + "if (list != null) { "
+    + "int last = params.element.size() - 1; "
+    + "for (def el : list) { "
+    + "def parent = el; "
+    + "for (int i = 0; i < last && parent != null; i++) { parent = parent[params.element[i]]; } "
+    + "def emb = (parent == null) ? null : parent[params.element[last]]; "
+    + "def value = (emb == null) ? null : params.values[String.valueOf(emb[params.id])]; "
+    + "if (value != null) { parent[params.element[last]] = value; changed = true; } "
+    + "} } "
+    + "if (!changed) { ctx.op = 'noop'; }"
+    + "\"}}";
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  private final String fullNestedPath;
+
+  private final String nestedPath;
+
+  private final List<String> elementPath;
+
+  private final String idProperty;
+
+  private final Map<String, String> values = new LinkedHashMap<>();
+
+  private Set<String> excludeIds = Collections.emptySet();
+
+  private EmbeddedUpdate(String fullNestedPath, String nestedPath, List<String> elementPath, String idProperty) {
+    this.fullNestedPath = fullNestedPath;
+    this.nestedPath = nestedPath;
+    this.elementPath = elementPath;
+    this.idProperty = idProperty;
+  }
+
+  /**
+   * Create for an embedded 'one' path replacing the embedded document.
+   *
+   * @param idPath     The full path of the id of the embedded bean (like customer.id)
+   * @param idProperty The id property of the embedded bean (like id)
+   */
+  static EmbeddedUpdate one(String idPath, String nestedPath, String idProperty) {
+    return new EmbeddedUpdate(idPath, nestedPath, null, idProperty);
+  }
+
+  /**
+   * Create for a bean embedded in the elements of a 'many' path (like details.product.id)
+   * replacing the bean in each matching element.
+   *
+   * @param elementPath The path of the bean within the element (like product)
+   */
+  static EmbeddedUpdate many(String fullNestedPath, String nestedPath, String elementPath, String idProperty) {
+    return new EmbeddedUpdate(fullNestedPath, nestedPath, Arrays.asList(elementPath.split("\\.")), idProperty);
+  }
+
+  /**
+   * Exclude the documents with the given ids (as they are deleted or reindexed anyway).
+   */
+  EmbeddedUpdate exclude(Set<String> excludeIds) {
+    this.excludeIds = excludeIds;
+    return this;
+  }
+
+  /**
+   * Return the id of the stored script used.
+   */
+  String scriptId() {
+    return elementPath == null ? ONE_SCRIPT_ID : MANY_SCRIPT_ID;
+  }
+
+  /**
+   * Return the stored script used.
+   */
+  String script() {
+    return elementPath == null ? ONE_SCRIPT : MANY_SCRIPT;
+  }
+
+  /**
+   * Add the embedded JSON for the changed bean.
+   */
+  void add(Object id, String embedJson) {
+    values.put(String.valueOf(id), embedJson);
+  }
+
+  /**
+   * Return the number of changed beans added.
+   */
+  int size() {
+    return values.size();
+  }
+
+  /**
+   * Clear the changed beans (for the next batch).
+   */
+  void clear() {
+    values.clear();
+  }
+
+  /**
+   * Return the update by query JSON.
+   */
+  String json() throws IOException {
+    StringBuilderWriter writer = new StringBuilderWriter(200 + values.size() * 100);
+    try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+      gen.writeStartObject();
+      gen.writeObjectFieldStart("query");
+      gen.writeObjectFieldStart("bool");
+      gen.writeObjectFieldStart("filter");
+      if (elementPath != null) {
+        gen.writeObjectFieldStart("nested");
+        gen.writeStringField("path", nestedPath);
+        gen.writeObjectFieldStart("query");
+        writeTerms(gen);
+        gen.writeEndObject();
+        gen.writeEndObject();
+      } else {
+        writeTerms(gen);
+      }
+      gen.writeEndObject();
+      if (!excludeIds.isEmpty()) {
+        gen.writeObjectFieldStart("must_not");
+        gen.writeObjectFieldStart("ids");
+        gen.writeArrayFieldStart("values");
+        for (String id : excludeIds) {
+          gen.writeString(id);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeEndObject();
+      }
+      gen.writeEndObject();
+      gen.writeEndObject();
+
+      gen.writeObjectFieldStart("script");
+      gen.writeStringField("id", scriptId());
+      gen.writeObjectFieldStart("params");
+      gen.writeStringField("path", nestedPath);
+      if (elementPath != null) {
+        gen.writeArrayFieldStart("element");
+        for (String name : elementPath) {
+          gen.writeString(name);
+        }
+        gen.writeEndArray();
+      }
+      gen.writeStringField("id", idProperty);
+      gen.writeObjectFieldStart("values");
+      for (Map.Entry<String, String> entry : values.entrySet()) {
+        gen.writeFieldName(entry.getKey());
+        gen.writeRawValue(entry.getValue());
+      }
+      gen.writeEndObject();
+      gen.writeEndObject();
+      gen.writeEndObject();
+      gen.writeEndObject();
+    }
+    return writer.toString();
+  }
+
+  private void writeTerms(JsonGenerator gen) throws IOException {
+    gen.writeObjectFieldStart("terms");
+    gen.writeArrayFieldStart(fullNestedPath);
+    for (String id : values.keySet()) {
+      gen.writeString(id);
+    }
+    gen.writeEndArray();
+    gen.writeEndObject();
+  }
+}
@@ -1,5 +1,6 @@
 package io.ebeanservice.elastic.update;
 
+import io.avaje.applog.AppLog;
 import io.ebean.PersistenceIOException;
 import io.ebean.Query;
 import io.ebean.plugin.BeanType;
@@ -9,13 +10,29 @@ import io.ebeanservice.docstore.api.support.DocStoreIndexEvent;
 import io.ebeanservice.elastic.bulk.BulkUpdate;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.INFO;
 
 /**
+ * Process the queued updates of a group (queueId) sending them via the bulk API.
  */
 public class ProcessGroup<T> {
 
+  private static final System.Logger log = AppLog.getLogger(ProcessGroup.class);
+
   private final SpiServer server;
 
   private final BeanType<T> desc;
@@ -24,17 +41,26 @@ public class ProcessGroup<T> {
 
   private final BulkUpdate txn;
 
+  private final int chunkSize;
+
+  private final int parallelism;
+
   private long count;
 
-  public static <T> long process(SpiServer server, BeanType<T> desc, UpdateGroup group, BulkUpdate txn) throws IOException {
-    return new ProcessGroup<>(server, desc, group, txn).processGroup();
+  /**
+   * Process the group loading the beans to reindex in chunks of ids with up to parallelism chunks loaded concurrently.
+   */
+  public static <T> long process(SpiServer server, BeanType<T> desc, UpdateGroup group, BulkUpdate txn, int chunkSize, int parallelism) throws IOException {
+    return new ProcessGroup<>(server, desc, group, txn, chunkSize, parallelism).processGroup();
   }
 
-  private ProcessGroup(SpiServer server, BeanType<T> desc, UpdateGroup group, BulkUpdate txn) {
+  private ProcessGroup(SpiServer server, BeanType<T> desc, UpdateGroup group, BulkUpdate txn, int chunkSize, int parallelism) {
     this.server = server;
     this.desc = desc;
     this.group = group;
     this.txn = txn;
+    this.chunkSize = chunkSize;
+    this.parallelism = Math.max(1, parallelism);
   }
 
   private long processGroup() throws IOException {
@@ -47,34 +73,112 @@ public class ProcessGroup<T> {
     count += deleteIds.size();
 
     List<Object> indexIds = group.getIndexIds();
-    if (!indexIds.isEmpty()) {
+    if (chunkSize > 0 && indexIds.size() > chunkSize) {
+      indexChunked(indexIds);
+    } else if (!indexIds.isEmpty()) {
       Query<T> query = server.find(desc.type());
       query.where().idIn(indexIds);
       indexUsingQuery(query, txn);
     }
 
     Collection<UpdateNested> values = group.getNestedPathIds().values();
-    for (UpdateNested nested : values) {
-      ProcessNested<T> nestedDocUpdate = new ProcessNested<>(server, desc, txn, nested);
-      count += nestedDocUpdate.process();
+    if (!values.isEmpty()) {
+      // skip nested updates of the documents that are deleted or reindexed above
+      Set<String> coveredIds = group.getCoveredIds();
+      for (UpdateNested nested : values) {
+        ProcessNested<T> nestedDocUpdate = new ProcessNested<>(server, desc, txn, nested, coveredIds);
+        count += nestedDocUpdate.process();
+      }
     }
 
     return count;
   }
 
 
-  private void indexUsingQuery(Query<T> query, final BulkUpdate txn) throws IOException {
+  /**
+   * Reindex a large number of ids loading the beans in chunks of ids.
+   */
+  private void indexChunked(List<Object> indexIds) {
+    int total = indexIds.size();
+    log.log(INFO, "Reindex queueId:{0} loading {1} ids in chunks of {2}", group.getQueueId(), total, chunkSize);
+    forEachChunked(indexIds, chunkSize, parallelism, server.backgroundExecutor()::execute, this::findChunk, this::index, done ->
+      log.log(DEBUG, "Reindex queueId:{0} processed {1} of {2} ids", group.getQueueId(), done, total));
+    log.log(INFO, "Reindex queueId:{0} processed {1} ids", group.getQueueId(), total);
+  }
 
+  /**
+   * Load the beans for the ids in chunks passing them to the consumer in the order of the ids.
+   * <p>
+   * Up to parallelism chunks are loaded concurrently using the executor while the loaded
+   * beans are passed to the consumer in order on the calling thread. The progress is given
+   * the number of ids processed after each chunk.
+   * </p>
+   */
+  static <B> void forEachChunked(List<Object> ids, int chunkSize, int parallelism, Executor executor,
+                                 Function<List<Object>, List<B>> loader, Consumer<B> consumer, IntConsumer progress) {
+    int total = ids.size();
+    int next = 0;
+    int done = 0;
+    Deque<Future<List<B>>> pending = new ArrayDeque<>(parallelism);
+    try {
+      while (done < total) {
+        while (next < total && pending.size() < parallelism) {
+          List<Object> chunk = ids.subList(next, Math.min(next + chunkSize, total));
+          FutureTask<List<B>> task = new FutureTask<>(() -> loader.apply(chunk));
+          executor.execute(task);
+          pending.add(task);
+          next += chunk.size();
+        }
+        for (B bean : awaitChunk(pending.poll())) {
+          consumer.accept(bean);
+        }
+        done = Math.min(done + chunkSize, total);
+        progress.accept(done);
+      }
+    } finally {
+      for (Future<List<B>> future : pending) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private List<T> findChunk(List<Object> ids) {
+    Query<T> query = server.find(desc.type());
     desc.docStore().applyPath(query);
     query.setLazyLoadBatchSize(100);
-    query.findEach(bean -> {
-      Object idValue = desc.id(bean);
-      try {
-        count++;
-        txn.send(new DocStoreIndexEvent<>(desc, idValue, bean));
-      } catch (Exception e) {
-        throw new PersistenceIOException("Error performing query update to doc store", e);
+    query.where().idIn(ids);
+    return query.findList();
+  }
+
+  private static <B> List<B> awaitChunk(Future<List<B>> chunk) {
+    try {
+      return chunk.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PersistenceIOException("Interrupted loading beans to reindex", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
       }
-    });
+      throw new PersistenceIOException(e);
+    }
+  }
+
+  private void indexUsingQuery(Query<T> query, final BulkUpdate txn) throws IOException {
+
+    desc.docStore().applyPath(query);
+    query.setLazyLoadBatchSize(100);
+    query.findEach(this::index);
+  }
+
+  private void index(T bean) {
+    Object idValue = desc.id(bean);
+    try {
+      count++;
+      txn.send(new DocStoreIndexEvent<>(desc, idValue, bean));
+    } catch (Exception e) {
+      throw new PersistenceIOException("Error performing query update to doc store", e);
+    }
   }
 }
@@ -1,36 +1,40 @@
 package io.ebeanservice.elastic.update;
 
-import io.avaje.applog.AppLog;
 import io.ebean.Database;
 import io.ebean.FetchPath;
-import io.ebean.PersistenceIOException;
 import io.ebean.Query;
-import io.ebean.plugin.BeanDocType;
 import io.ebean.plugin.BeanType;
 import io.ebean.plugin.Property;
+import io.ebean.text.PathProperties;
 import io.ebean.util.SplitName;
+import io.ebeanservice.elastic.ElasticDocStoreBeanAdapter;
 import io.ebeanservice.elastic.bulk.BulkUpdate;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import static java.lang.System.Logger.Level.ERROR;
+import java.util.Set;
 
 /**
  * Process an embedded document update.
  */
 public class ProcessNested<T> {
 
-  private static final System.Logger log = AppLog.getLogger(ProcessNested.class);
+  /**
+   * The max number of changed embedded beans per update by query.
+   */
+  private static final int UPDATE_QUERY_BATCH_SIZE = 1000;
+
+  /**
+   * The max number of top level beans loaded per query when reloading nested many paths.
+   */
+  private static final int TOP_ID_CHUNK_SIZE = 100;
 
   private final Database server;
   private final BeanType<T> desc;
   private final BulkUpdate txn;
   private final UpdateNested nested;
-
-  private final Map<Object, String> jsonMap = new HashMap<>();
+  private final Set<String> excludeIds;
 
   private final String nestedPath;
   private final String nestedIdProperty;
@@ -39,22 +43,22 @@ public class ProcessNested<T> {
   private final BeanType<?> nestedDesc;
 
   private final Property nestedProperty;
-  private final String selectId;
-  private final String nestedIdPropertyName;
   private final boolean nestedMany;
-  private final BeanDocType<T> beanDocType;
+  private final ElasticDocStoreBeanAdapter<T> beanDocType;
   private FetchPath manyRootDoc;
 
-  private long count;
-
-  public ProcessNested(Database server, BeanType<T> desc, BulkUpdate txn, UpdateNested nested) {
+  /**
+   * Construct excluding the documents with the given ids (that are deleted or reindexed anyway).
+   */
+  public ProcessNested(Database server, BeanType<T> desc, BulkUpdate txn, UpdateNested nested, Set<String> excludeIds) {
     this.server = server;
     this.desc = desc;
     this.txn = txn;
     this.nested = nested;
+    this.excludeIds = excludeIds;
     this.fullNestedPath = nested.getPath();
 
-    beanDocType = desc.docStore();
+    this.beanDocType = (ElasticDocStoreBeanAdapter<T>) desc.docStore();
 
     String[] nestedPathSplit = getTopNestedPath(fullNestedPath);
     this.nestedPath = nestedPathSplit[0];
@@ -68,17 +72,6 @@ public class ProcessNested<T> {
     if (nestedMany) {
       manyRootDoc = beanDocType.embeddedManyRoot(nestedPath);
     }
-
-    this.selectId = createSelectId(desc);
-    this.nestedIdPropertyName = nestedDesc.idProperty().name();
-  }
-
-  private String createSelectId(BeanType<T> desc) {
-    String id = desc.idProperty().name();
-    if (desc.hasInheritance()) {
-      id += "," + desc.discColumn();
-    }
-    return id;
   }
 
   /**
@@ -91,113 +84,136 @@ public class ProcessNested<T> {
   public long process() throws IOException {
 
     List<Object> nestedIds = nested.getIds();
-    if (nestedMany) {
-      fetchEmbeddedAssocMany(nestedIds);
-      processTop(nestedIds);
-    } else {
+    if (!nestedMany) {
       return updateByQueryAssocOne(nestedIds);
     }
-
-    return count;
+    int dot = nestedIdProperty.lastIndexOf('.');
+    if (dot > 0 && nestedDoc.hasPath(nestedIdProperty.substring(0, dot))) {
+      // a bean embedded in the nested elements changed (like details.product.id)
+      return updateByQueryManyElement(nestedIds, nestedIdProperty.substring(0, dot), nestedIdProperty.substring(dot + 1));
+    }
+    return updateAssocMany(nestedIds);
   }
 
   /**
-   * Load the json map given the embedded document has cardinality one (ElasticSearch object).
+   * Update the embedded documents with cardinality one (ElasticSearch object) using update by query.
+   * <p>
+   * All the changed beans of the path are updated by a single update by query (per batch) using
+   * a terms filter on the changed ids and the stored script that replaces the embedded document.
+   * </p>
+   * <p>
+   * The embedded beans reloaded are keyed by their own id (like customer.id) as the changed path
+   * can be deeper (like customer.billingAddress.id).
+   * </p>
    */
-  private long updateByQueryAssocOne(List<Object> nestedIds) {
+  private long updateByQueryAssocOne(List<Object> nestedIds) throws IOException {
 
     Query<?> pathQuery = server.createQuery(nestedDesc.type());
     pathQuery.apply(nestedDoc);
     pathQuery.where().in(nestedIdProperty, nestedIds);
 
-    // hit the database and build the embedded JSON documents
-    List<?> list = pathQuery.findList();
-    for (Object bean : list) {
-      String embedJson = server.json().toJson(bean, nestedDoc);
-      Object beanId = nestedDesc.id(bean);
-      jsonMap.put(beanId, embedJson);
-
-      String script =
-      "{ \"query\":{\"bool\":{\"filter\":{\"term\":{\""+fullNestedPath+"\":\""+beanId+"\"}}}}" +
-      " ,\"script\": { \"lang\": \"painless\", "+
-      "  \"inline\": \"ctx._source."+nestedPath+" = params."+nestedPath+"\",  "+
-      "  \"params\" : { "+
-      "  \""+nestedPath+"\":" + embedJson +
-      "}}}";
-
-      BeanDocType<T> docType = desc.docStore();
-      try {
-        Map<String, Object> response = txn.sendUpdateQuery(docType.indexName(), docType.indexType(), script);
-
-        Object updatedDocs = response.get("total");
-        if (updatedDocs instanceof Number) {
-          return ((Number)updatedDocs).longValue();
-        }
+    String idProperty = nestedDesc.idProperty().name();
+    return updateByQuery(pathQuery, nestedDesc, nestedDoc, EmbeddedUpdate.one(nestedPath + "." + idProperty, nestedPath, idProperty).exclude(excludeIds));
+  }
 
-      } catch (IOException e) {
-        log.log(ERROR, "Error performing updateByQuery", e);
+  /**
+   * Update the changed bean embedded in the elements of a nested many path using update by query.
+   * <p>
+   * Only the changed beans are loaded from the database (not the top level documents) and a
+   * script replaces the bean in each matching element of the nested array in place.
+   * </p>
+   */
+  private long updateByQueryManyElement(List<Object> nestedIds, String elementPath, String idProperty) throws IOException {
+
+    BeanType<?> elementDesc = nestedDesc.beanTypeAtPath(elementPath);
+    FetchPath elementDoc = subPath(nestedDoc, elementPath);
+
+    Query<?> elementQuery = server.createQuery(elementDesc.type());
+    elementQuery.apply(elementDoc);
+    elementQuery.where().idIn(nestedIds);
+
+    return updateByQuery(elementQuery, elementDesc, elementDoc, EmbeddedUpdate.many(fullNestedPath, nestedPath, elementPath, idProperty).exclude(excludeIds));
+  }
+
+  /**
+   * Return the fetch path of the properties under the given path.
+   */
+  private static FetchPath subPath(FetchPath fetchPath, String path) {
+    PathProperties subPath = new PathProperties();
+    copyPath(fetchPath, path, null, subPath);
+    return subPath;
+  }
+
+  private static void copyPath(FetchPath source, String sourcePath, String targetPath, PathProperties target) {
+    Set<String> properties = source.getProperties(sourcePath);
+    if (properties != null) {
+      for (String property : properties) {
+        target.addToPath(targetPath, property);
+        String childPath = sourcePath + "." + property;
+        if (source.hasPath(childPath)) {
+          copyPath(source, childPath, (targetPath == null) ? property : targetPath + "." + property, target);
+        }
       }
     }
-    return 0;
   }
 
   /**
-   * Load the json map given the embedded document has cardinality many (ElasticSearch nested).
+   * Build the embedded JSON documents of the changed beans executing the update by query in batches.
    */
-  private void fetchEmbeddedAssocMany(List<Object> nestedIds) {
+  private long updateByQuery(Query<?> changedQuery, BeanType<?> changedDesc, FetchPath embeddedDoc, EmbeddedUpdate update) throws IOException {
 
-    Query<T> query = server.createQuery(desc.type());
-    query.apply(manyRootDoc);
-    query.where().in(fullNestedPath, nestedIds);
+    txn.storeScript(update.scriptId(), update.script());
 
     // hit the database and build the embedded JSON documents
-    List<T> list = query.findList();
-    for (T bean : list) {
-      Object manyList = nestedProperty.value(bean);
-      String embedJson = server.json().toJson(manyList, nestedDoc);
-      Object beanId = desc.id(bean);
-      jsonMap.put(beanId, embedJson);
+    long updated = 0;
+    for (Object bean : changedQuery.findList()) {
+      update.add(changedDesc.id(bean), server.json().toJson(bean, embeddedDoc));
+      if (update.size() >= UPDATE_QUERY_BATCH_SIZE) {
+        updated += updateByQuery(update);
+      }
+    }
+    if (update.size() > 0) {
+      updated += updateByQuery(update);
     }
+    return updated;
   }
 
-  protected void processTop(List<Object> nestedIds) {
+  private long updateByQuery(EmbeddedUpdate update) throws IOException {
+    Map<String, Object> response = txn.updateByQuery(beanDocType.indexName(), update.json());
+    update.clear();
+    Object updatedDocs = (response == null) ? null : response.get("updated");
+    return (updatedDocs instanceof Number) ? ((Number) updatedDocs).longValue() : 0;
+  }
 
-    Query<T> topQuery = server.createQuery(desc.type());
-    topQuery.setUseDocStore(true);
-    topQuery.select(selectId);
-    if (!nestedMany) {
-      topQuery.fetch(nestedPath, nestedIdPropertyName);
-    }
-    topQuery.where().in(fullNestedPath, nestedIds);
+  /**
+   * Update the embedded documents with cardinality many (ElasticSearch nested) reloading the top level beans.
+   * <p>
+   * The top level beans are loaded in chunks of ids with the embedded collection of each bean
+   * written directly into the bulk buffer such that memory is bounded by the chunk size.
+   * </p>
+   */
+  private long updateAssocMany(List<Object> nestedIds) throws IOException {
 
-    topQuery.findEach(bean -> {
-      updateEmbedded(bean);
-      count++;
-    });
-  }
+    List<Object> topIds = server.createQuery(desc.type())
+      .where().in(fullNestedPath, nestedIds)
+      .findIds();
+    topIds.removeIf(id -> excludeIds.contains(String.valueOf(id)));
 
-  private void updateEmbedded(T bean) {
-    try {
-      Object beanId = desc.id(bean);
-      Object targetId;
-      if (nestedMany) {
-        targetId = beanId;
-      } else {
-        Object embBean = nestedProperty.value(bean);
-        targetId = nestedDesc.id(embBean);
-      }
+    long count = 0;
+    for (int from = 0; from < topIds.size(); from += TOP_ID_CHUNK_SIZE) {
+      List<Object> chunk = topIds.subList(from, Math.min(from + TOP_ID_CHUNK_SIZE, topIds.size()));
 
-      String json = jsonMap.get(targetId);
-      if (json == null) {
-        log.log(ERROR, "No content for updateEmbedded path:{0} id:{1}", nestedPath, beanId);
-      } else {
-        beanDocType.updateEmbedded(beanId, nestedPath, json, txn.obtain());
-      }
+      Query<T> query = server.createQuery(desc.type());
+      query.apply(manyRootDoc);
+      query.where().idIn(chunk);
 
-    } catch (IOException e) {
-      throw new PersistenceIOException(e);
+      // hit the database writing the embedded collections to the bulk buffer
+      for (T bean : query.findList()) {
+        beanDocType.updateEmbedded(bean, nestedPath, nestedProperty.value(bean), nestedDoc, txn.obtain());
+        count++;
+      }
     }
+    return count;
   }
 
-
 }
@@ -3,23 +3,30 @@ package io.ebeanservice.elastic.update;
 import io.ebean.DocStoreQueueEntry;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Groups index update events by queueId.
  *
  * Some nested path updates can overlap with index events so it is good to process these together as
  * a group and check for these overlaps (and skip unnecessary work).
+ * <p>
+ * Repeated ids are merged and the documents deleted or fully reindexed by the group are
+ * excluded from the nested path updates.
+ * </p>
  */
 public class UpdateGroup {
 
   private final String queueId;
 
-  private final List<Object> deleteIds = new ArrayList<Object>();
+  private final Set<Object> deleteIds = new LinkedHashSet<Object>();
 
-  private final List<Object> indexIds = new ArrayList<Object>();
+  private final Set<Object> indexIds = new LinkedHashSet<Object>();
 
   private final Map<String, UpdateNested> pathIds = new LinkedHashMap<String, UpdateNested>();
 
@@ -32,11 +39,28 @@ public class UpdateGroup {
   }
 
   public List<Object> getDeleteIds() {
-    return deleteIds;
+    return new ArrayList<Object>(deleteIds);
   }
 
   public List<Object> getIndexIds() {
-    return indexIds;
+    return new ArrayList<Object>(indexIds);
+  }
+
+  /**
+   * Return the ids (as strings) of the documents that are deleted or fully reindexed by this group.
+   * <p>
+   * Nested path updates of these documents are redundant and skipped.
+   * </p>
+   */
+  public Set<String> getCoveredIds() {
+    Set<String> covered = new HashSet<String>();
+    for (Object id : deleteIds) {
+      covered.add(String.valueOf(id));
+    }
+    for (Object id : indexIds) {
+      covered.add(String.valueOf(id));
+    }
+    return covered;
   }
 
   public Map<String, UpdateNested> getNestedPathIds() {
@@ -1,7 +1,9 @@
 package io.ebeanservice.elastic.update;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A group of nested updates for a given path.
@@ -13,7 +15,7 @@ public class UpdateNested {
 
   private final String path;
 
-  private final List<Object> ids = new ArrayList<Object>();
+  private final Set<Object> ids = new LinkedHashSet<Object>();
 
   /**
    * Construct given the path.
@@ -30,14 +32,14 @@ public class UpdateNested {
   }
 
   /**
-   * Return the Ids.
+   * Return the Ids (without duplicates).
    */
   public List<Object> getIds() {
-    return ids;
+    return new ArrayList<Object>(ids);
   }
 
   /**
-   * Add an Id to the list.
+   * Add an Id (ignored when already added).
    */
   public void addId(Object id) {
     ids.add(id);
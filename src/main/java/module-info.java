@@ -3,6 +3,7 @@ module io.ebean.elastic {
     requires io.ebean.api;
     requires io.ebean.core;
     requires com.fasterxml.jackson.core;
+    requires static com.fasterxml.jackson.databind;
     requires okhttp3;
 
     provides io.ebeanservice.docstore.api.DocStoreFactory with io.ebeanservice.elastic.ElasticDocStoreFactory;
@@ -0,0 +1,26 @@
+-- Doc store queue table used when the DocStoreMode of a bean type is QUEUE.
+-- The identity syntax is for H2, Postgres and Oracle, use auto_increment
+-- for MySQL and identity(1,1) for SQL Server.
+create table eb_elastic_queue (
+  id                            bigint generated by default as identity not null,
+  queue_id                      varchar(255) not null,
+  doc_id                        varchar(255) not null,
+  action                        integer not null,
+  path                          varchar(255),
+  processing                    integer not null,
+  claimed_at                    timestamp,
+  when_queued                   timestamp not null,
+  bucket                        integer,
+  constraint pk_eb_elastic_queue primary key (id)
+);
+
+create index ix_eb_elastic_queue_processing on eb_elastic_queue (processing, id);
+create index ix_eb_elastic_queue_bucket on eb_elastic_queue (bucket, processing, id);
+
+-- Bucket leases and node heartbeats used when the queue is partitioned into buckets.
+create table eb_elastic_queue_lease (
+  lease_key                     varchar(100) not null,
+  owner                         varchar(40),
+  lease_until                   timestamp,
+  constraint pk_eb_elastic_queue_lease primary key (lease_key)
+);
@@ -33,7 +33,7 @@ public class QueryEachTest extends BaseTest {
 
     assertEquals(count.get(), 3);
     assertEquals(skuSet.size(), 3);
-    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"query\":{\"bool\":{\"filter\":{\"prefix\":{\"sku\":\"c00\"}}}}}");
+    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"sort\":[\"_doc\"],\"query\":{\"bool\":{\"filter\":{\"prefix\":{\"sku\":\"c00\"}}}}}");
   }
 
   @Test
@@ -54,7 +54,7 @@ public class QueryEachTest extends BaseTest {
 
     assertEquals(count.get(), 2);
     assertEquals(skuSet.size(), 2);
-    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"query\":{\"bool\":{\"filter\":{\"prefix\":{\"sku\":\"c00\"}}}}}");
+    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"sort\":[\"_doc\"],\"query\":{\"bool\":{\"filter\":{\"prefix\":{\"sku\":\"c00\"}}}}}");
   }
 
   @Test
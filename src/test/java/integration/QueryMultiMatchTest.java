@@ -22,7 +22,7 @@ public class QueryMultiMatchTest extends BaseTest {
 
     List<Customer> list = query.findList();
     assertThat(list).hasSize(1);
-    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"query\":{\"multi_match\":{\"query\":\"Rob\",\"fields\":[\"name\",\"smallNotes\"]}}}");
+    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":false,\"query\":{\"multi_match\":{\"query\":\"Rob\",\"fields\":[\"name\",\"smallNotes\"]}}}");
   }
 
   @Test
@@ -37,7 +37,7 @@ public class QueryMultiMatchTest extends BaseTest {
 
     List<Customer> list = query.findList();
     assertThat(list).hasSize(1);
-    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"query\":{\"multi_match\":{\"query\":\"Rob\",\"fields\":[\"name\",\"smallNotes\"],\"operator\":\"and\",\"boost\":2.0}}}");
+    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":false,\"query\":{\"multi_match\":{\"query\":\"Rob\",\"fields\":[\"name\",\"smallNotes\"],\"operator\":\"and\",\"boost\":2.0}}}");
   }
 
   @Test
@@ -61,7 +61,7 @@ public class QueryMultiMatchTest extends BaseTest {
 
     List<Customer> list = query.findList();
 
-    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"query\":{\"multi_match\":{\"query\":\"Rob\",\"fields\":[\"name\",\"smallNotes\"],\"type\":\"cross_fields\",\"tie_breaker\":0.3,\"max_expansions\":10,\"operator\":\"and\",\"boost\":2.0,\"minimum_should_match\":\"1\",\"zero_terms_query\":\"all\",\"analyzer\":\"whitespace\"}}}");
+    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":false,\"query\":{\"multi_match\":{\"query\":\"Rob\",\"fields\":[\"name\",\"smallNotes\"],\"type\":\"cross_fields\",\"tie_breaker\":0.3,\"max_expansions\":10,\"operator\":\"and\",\"boost\":2.0,\"minimum_should_match\":\"1\",\"zero_terms_query\":\"all\",\"analyzer\":\"whitespace\"}}}");
     assertThat(list).hasSize(0);
   }
 
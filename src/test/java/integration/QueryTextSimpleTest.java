@@ -24,7 +24,7 @@ public class QueryTextSimpleTest extends BaseTest {
 
     List<Customer> list = query.findList();
     assertThat(list).hasSize(0);
-    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"query\":{\"simple_query_string\":{\"query\":\"quick brown\"}}}");
+    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":false,\"query\":{\"simple_query_string\":{\"query\":\"quick brown\"}}}");
   }
 
   @Test
@@ -40,7 +40,7 @@ public class QueryTextSimpleTest extends BaseTest {
 
     List<Customer> list = query.findList();
     assertThat(list).hasSize(0);
-    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"query\":{\"simple_query_string\":{\"query\":\"quick brown\",\"flags\":\"OR|AND|PREFIX\"}}}");
+    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":false,\"query\":{\"simple_query_string\":{\"query\":\"quick brown\",\"flags\":\"OR|AND|PREFIX\"}}}");
   }
 
   @Test
@@ -63,7 +63,7 @@ public class QueryTextSimpleTest extends BaseTest {
 
     List<Customer> list = query.findList();
     assertThat(list).hasSize(0);
-    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":true,\"query\":{\"simple_query_string\":{\"query\":\"quick brown\",\"analyzer\":\"whitespace\",\"fields\":[\"name\"],\"default_operator\":\"and\",\"analyze_wildcard\":true,\"lenient\":true,\"minimum_should_match\":\"1\"}}}");
+    assertEquals(query.getGeneratedSql(), "{\"track_total_hits\":false,\"query\":{\"simple_query_string\":{\"query\":\"quick brown\",\"analyzer\":\"whitespace\",\"fields\":[\"name\"],\"default_operator\":\"and\",\"analyze_wildcard\":true,\"lenient\":true,\"minimum_should_match\":\"1\"}}}");
   }
 
 
@@ -0,0 +1,58 @@
+package io.ebeanservice.elastic.aggregation;
+
+import io.ebean.DB;
+import io.ebean.plugin.BeanDocType;
+import io.ebeanservice.elastic.querywriter.ElasticJsonContext;
+import org.example.domain.Order;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AggregationQueryTest {
+
+  private final ElasticJsonContext context = new ElasticJsonContext(DB.json());
+
+  private final BeanDocType<Order> docType = DB.getDefault().pluginApi().beanType(Order.class).docStore();
+
+  @Test
+  public void json_termsWithSubAggregation() throws Exception {
+
+    Aggregation byStatus = Aggregation.terms("byStatus", "status")
+      .size(5)
+      .subAggregation(Aggregation.cardinality("customers", "customer.id"));
+
+    AggregationQuery query = new AggregationQuery(context, docType, "{\"match_all\":{}}", Collections.singletonList(byStatus));
+
+    assertThat(query.json(null)).isEqualTo("{\"size\":0,\"track_total_hits\":false,\"query\":{\"match_all\":{}},\"aggs\":{" +
+      "\"byStatus\":{\"terms\":{\"field\":\"status\",\"size\":5},\"aggs\":{\"customers\":{\"cardinality\":{\"field\":\"customer.id\"}}}}}}");
+  }
+
+  @Test
+  public void json_compositeAfterKey() throws Exception {
+
+    Aggregation composite = Aggregation.composite("names", Aggregation.terms("name", "customer.name")).size(100);
+    AggregationQuery query = new AggregationQuery(context, docType, "{\"match_all\":{}}", Arrays.asList(composite, Aggregation.stats("totals", "id")));
+
+    Map<String, Map<String, Object>> afterKeys = Collections.singletonMap("names", Collections.singletonMap("name", "Rob"));
+    assertThat(query.json(afterKeys)).isEqualTo("{\"size\":0,\"track_total_hits\":false,\"query\":{\"match_all\":{}},\"aggs\":{" +
+      "\"names\":{\"composite\":{\"size\":100,\"sources\":[{\"name\":{\"terms\":{\"field\":\"customer.name.raw\"}}}],\"after\":{\"name\":\"Rob\"}}}," +
+      "\"totals\":{\"stats\":{\"field\":\"id\"}}}}");
+  }
+
+  @Test
+  public void json_multipleComposite_afterKeyByName() throws Exception {
+
+    Aggregation names = Aggregation.composite("names", Aggregation.terms("name", "customer.name")).size(10);
+    Aggregation statuses = Aggregation.composite("statuses", Aggregation.terms("status", "status")).size(10);
+    AggregationQuery query = new AggregationQuery(context, docType, "{\"match_all\":{}}", Arrays.asList(names, statuses));
+
+    Map<String, Map<String, Object>> afterKeys = Collections.singletonMap("statuses", Collections.singletonMap("status", "NEW"));
+    assertThat(query.json(afterKeys)).isEqualTo("{\"size\":0,\"track_total_hits\":false,\"query\":{\"match_all\":{}},\"aggs\":{" +
+      "\"names\":{\"composite\":{\"size\":10,\"sources\":[{\"name\":{\"terms\":{\"field\":\"customer.name.raw\"}}}]}}," +
+      "\"statuses\":{\"composite\":{\"size\":10,\"sources\":[{\"status\":{\"terms\":{\"field\":\"status\"}}}],\"after\":{\"status\":\"NEW\"}}}}}");
+  }
+}
@@ -0,0 +1,70 @@
+package io.ebeanservice.elastic.bulk;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkCollapserTest {
+
+  private static final String INDEX_1 = "{\"index\":{\"_id\":\"1\",\"_index\":\"order\"}}";
+  private static final String UPDATE_1 = "{\"update\":{\"_id\":\"1\",\"_index\":\"order\"}}";
+  private static final String DELETE_1 = "{\"delete\":{\"_id\":\"1\",\"_index\":\"order\"}}";
+  private static final String INDEX_2 = "{\"index\":{\"_id\":\"2\",\"_index\":\"order\"}}";
+
+  @Test
+  public void indexThenDelete_delete() throws Exception {
+
+    String content = INDEX_1 + "\n" + "{\"status\":\"NEW\"}\n"
+      + INDEX_2 + "\n" + "{\"status\":\"NEW\"}\n"
+      + DELETE_1 + "\n";
+
+    assertThat(BulkCollapser.collapse(content)).isEqualTo(DELETE_1 + "\n"
+      + INDEX_2 + "\n" + "{\"status\":\"NEW\"}\n");
+  }
+
+  @Test
+  public void updateThenUpdate_mergedDoc() throws Exception {
+
+    String content = UPDATE_1 + "\n" + "{\"doc\":{\"status\":\"NEW\",\"customer\":{\"id\":1,\"name\":\"Rob\"}}}\n"
+      + " " + UPDATE_1 + "\n" + " {\"doc\":{\"status\":\"SHIPPED\",\"customer\":{\"name\":\"Jim\"}}}\n";
+
+    assertThat(BulkCollapser.collapse(content)).isEqualTo(UPDATE_1 + "\n"
+      + "{\"doc\":{\"status\":\"SHIPPED\",\"customer\":{\"id\":1,\"name\":\"Jim\"}}}\n");
+  }
+
+  @Test
+  public void updateThenIndex_index() throws Exception {
+
+    String content = UPDATE_1 + "\n" + "{\"doc\":{\"status\":\"NEW\"}}\n"
+      + INDEX_1 + "\n" + "{\"id\":1,\"status\":\"SHIPPED\"}\n";
+
+    assertThat(BulkCollapser.collapse(content)).isEqualTo(INDEX_1 + "\n" + "{\"id\":1,\"status\":\"SHIPPED\"}\n");
+  }
+
+  @Test
+  public void indexThenUpdate_indexMerged() throws Exception {
+
+    String content = INDEX_1 + "\n" + "{\"id\":1,\"status\":\"NEW\"}\n"
+      + UPDATE_1 + "\n" + "{\"doc\":{\"status\":\"SHIPPED\"}}\n";
+
+    assertThat(BulkCollapser.collapse(content)).isEqualTo(INDEX_1 + "\n" + "{\"id\":1,\"status\":\"SHIPPED\"}\n");
+  }
+
+  @Test
+  public void deleteThenUpdate_unchanged() throws Exception {
+
+    String content = DELETE_1 + "\n"
+      + UPDATE_1 + "\n" + "{\"doc\":{\"status\":\"SHIPPED\"}}\n";
+
+    assertThat(BulkCollapser.collapse(content)).isEqualTo(content);
+  }
+
+  @Test
+  public void differentRouting_notCombined() throws Exception {
+
+    String routed = "{\"delete\":{\"_id\":\"1\",\"_index\":\"order\",\"routing\":\"7\"}}";
+    String content = INDEX_1 + "\n" + "{\"id\":1}\n" + routed + "\n";
+
+    assertThat(BulkCollapser.collapse(content)).isEqualTo(content);
+  }
+}
@@ -1,13 +1,22 @@
 package io.ebeanservice.elastic.bulk;
 
 import io.ebean.config.JsonConfig;
+import io.ebeanservice.elastic.query.QueryResultCache;
 import io.ebeanservice.elastic.testdoubles.TDIndexMessageSender;
 import com.fasterxml.jackson.core.JsonFactory;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
 
 
 public class BulkSenderTest {
@@ -42,15 +51,143 @@ public class BulkSenderTest {
     bulkSender.sendBulk(buffer);
 
     assertEquals(messageSender.request, "{\"name\":\"rob\"}");
+    assertNull(messageSender.bulkParams);
+  }
+
+  @Test
+  public void sendBulk_error_flushedToListener() throws Exception {
+
+    List<Map<String, Set<String>>> flushed = new ArrayList<>();
+    BulkSender bulkSender = createBulkSender(flushed::add);
+    messageSender.bulkError = new IOException("connection reset");
+
+    BulkBuffer buffer = bulkSender.newBuffer();
+    buffer.written("order", 42);
+    buffer.gen().writeStartObject();
+    buffer.gen().writeEndObject();
+
+    assertThrows(IOException.class, () -> bulkSender.sendBulk(buffer));
+
+    // notified such that pending writes are released
+    assertEquals(flushed.size(), 1);
+    assertEquals(flushed.get(0), Collections.singletonMap("order", Collections.singleton("42")));
+  }
+
+  @Test
+  public void sendBulk_queryCache_noRefresh() throws Exception {
+
+    BulkSender bulkSender = createBulkSender(new QueryResultCache(10, 60_000));
+
+    BulkBuffer buffer = bulkSender.newBuffer();
+    buffer.gen().writeStartObject();
+    buffer.gen().writeStringField("name","rob");
+    buffer.gen().writeEndObject();
+
+    bulkSender.sendBulk(buffer);
+
+    assertNull(messageSender.bulkParams);
+  }
+
+  @Test
+  public void sendBulk_deleteByQuery() throws Exception {
+
+    BulkSender bulkSender = createBulkSender();
+
+    BulkBuffer buffer = bulkSender.newBuffer();
+    buffer.deleteByQuery("order", 42);
+    buffer.deleteByQuery("order", 43);
+
+    bulkSender.sendBulk(buffer);
+
+    assertNull(messageSender.request);
+    assertEquals(messageSender.deleteQuery, "order?refresh=true {\"query\":{\"ids\":{\"values\":[\"42\",\"43\"]}}}");
+  }
+
+  @Test
+  public void sendBulk_deleteByQuery_afterRefreshedBulk() throws Exception {
+
+    BulkSender bulkSender = createBulkSender();
+
+    BulkBuffer buffer = bulkSender.newBuffer();
+    buffer.written("order", 42);
+    buffer.gen().writeRaw("{\"index\":{\"_id\":\"42\",\"_index\":\"order\",\"routing\":\"7\"}}\n{}\n");
+    buffer.deleteByQuery("order", 43);
+
+    bulkSender.sendBulk(buffer);
+
+    assertEquals(messageSender.bulkParams, "refresh=wait_for");
+    assertEquals(messageSender.deleteQuery, "order?refresh=true {\"query\":{\"ids\":{\"values\":[\"43\"]}}}");
+  }
+
+  @Test
+  public void sendBulk_deleteByQueryFailures_throws() throws Exception {
+
+    BulkSender bulkSender = createBulkSender();
+    messageSender.deleteResponse = "{\"deleted\":0,\"failures\":[{\"id\":\"42\",\"status\":409}]}";
+
+    BulkBuffer buffer = bulkSender.newBuffer();
+    buffer.deleteByQuery("order", 42);
+
+    assertThrows(IOException.class, () -> bulkSender.sendBulk(buffer));
+  }
+
+  @Test
+  public void updateByQuery_awaitsTask() throws Exception {
+
+    BulkSender bulkSender = createBulkSender();
+    bulkSender.storeScript("s1", "{}");
+    bulkSender.storeScript("s1", "{}");
+
+    Map<String, Object> response = bulkSender.updateByQuery("order", "{}");
+
+    assertEquals(messageSender.scriptPuts, 1);
+    assertEquals(messageSender.taskPolls, 2);
+    assertEquals(messageSender.updateQuery, "order?conflicts=proceed&slices=auto&wait_for_completion=false {}");
+    assertEquals(response.get("updated"), 2L);
+    assertEquals(messageSender.deletedTask, "n1:7");
+  }
+
+  @Test
+  public void updateByQuery_failures_throws() throws Exception {
+
+    BulkSender bulkSender = createBulkSender();
+    messageSender.taskResponse = "{\"total\":3,\"updated\":2,\"failures\":[{\"id\":\"42\",\"cause\":{\"type\":\"mapper_parsing_exception\"}}]}";
+
+    assertThrows(IOException.class, () -> bulkSender.updateByQuery("order", "{}"));
+    assertEquals(messageSender.deletedTask, "n1:7");
+  }
+
+  @Test
+  public void updateByQuery_timeout_throws() throws Exception {
+
+    BulkSender bulkSender = createBulkSender();
+    bulkSender.setTaskTimeoutMillis(0);
+
+    assertThrows(IOException.class, () -> bulkSender.updateByQuery("order", "{}"));
+    assertEquals(messageSender.taskPolls, 1);
+    assertNull(messageSender.deletedTask);
   }
 
   private BulkSender createBulkSender() {
+    return createBulkSender(null);
+  }
+
+  private BulkSender createBulkSender(BulkListener listener) {
 
     messageSender.request = null;
+    messageSender.bulkParams = null;
+    messageSender.bulkError = null;
+    messageSender.deleteQuery = null;
+    messageSender.deleteResponse = "{\"deleted\":2,\"failures\":[]}";
+    messageSender.updateQuery = null;
+    messageSender.scriptPuts = 0;
+    messageSender.taskPolls = 0;
+    messageSender.taskResponse = "{\"total\":3,\"updated\":2,\"noops\":1,\"failures\":[]}";
+    messageSender.deletedTask = null;
 
     JsonFactory jsonFactory = new JsonFactory();
     JsonConfig.Include defaultInclude = JsonConfig.Include.NON_EMPTY;
-    return new BulkSender(jsonFactory, defaultInclude, null, messageSender);
+    return new BulkSender(jsonFactory, defaultInclude, null, messageSender, listener);
   }
 
 
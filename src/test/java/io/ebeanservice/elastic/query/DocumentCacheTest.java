@@ -0,0 +1,61 @@
+package io.ebeanservice.elastic.query;
+
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocumentCacheTest {
+
+  private final byte[] source = "{\"name\":\"NZ\"}".getBytes();
+
+  @Test
+  public void written_invalidatesUntilFlushed() {
+
+    DocumentCache cache = new DocumentCache(10, 10_000, 60_000, Collections.emptySet());
+    cache.put("country", "1", cache.version("country"), source);
+    assertThat(cache.get("country", "1")).isEqualTo(source);
+
+    cache.written("country", "1");
+    assertThat(cache.get("country", "1")).isNull();
+
+    // not cached while the write is pending
+    cache.put("country", "1", cache.version("country"), source);
+    assertThat(cache.get("country", "1")).isNull();
+
+    Map<String, Set<String>> written = Collections.singletonMap("country", Collections.singleton("1"));
+    cache.flushed(written);
+    cache.put("country", "1", cache.version("country"), source);
+    assertThat(cache.get("country", "1")).isEqualTo(source);
+  }
+
+  @Test
+  public void put_maxBytes_evicts() {
+
+    DocumentCache cache = new DocumentCache(10, source.length * 2, 60_000, Collections.emptySet());
+    cache.put("country", "1", 0, source);
+    cache.put("country", "2", 0, source);
+    cache.put("country", "3", 0, source);
+
+    assertThat(cache.get("country", "1")).isNull();
+    assertThat(cache.get("country", "3")).isEqualTo(source);
+    assertThat(cache.statistics().getSize()).isEqualTo(2);
+  }
+
+  @Test
+  public void written_neverFlushed_expiresAfterTtl() throws InterruptedException {
+
+    DocumentCache cache = new DocumentCache(10, 10_000, 20, Collections.emptySet());
+    cache.written("country", "1");
+    cache.put("country", "1", cache.version("country"), source);
+    assertThat(cache.get("country", "1")).isNull();
+
+    // the write was discarded (rolled back) so after the ttl it no longer blocks caching
+    Thread.sleep(30);
+    cache.put("country", "1", cache.version("country"), source);
+    assertThat(cache.get("country", "1")).isEqualTo(source);
+  }
+}
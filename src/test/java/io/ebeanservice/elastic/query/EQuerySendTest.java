@@ -0,0 +1,206 @@
+package io.ebeanservice.elastic.query;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import io.ebean.DB;
+import io.ebean.text.json.EJson;
+import io.ebean.text.json.JsonReadOptions;
+import io.ebeanservice.docstore.api.DocumentNotFoundException;
+import io.ebeanservice.elastic.support.ElasticConfig;
+import io.ebeanservice.elastic.support.IndexMessageResponse;
+import io.ebeanservice.elastic.testdoubles.TDIndexMessageSender;
+import org.example.domain.Product;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EQuerySendTest {
+
+  private final TDIndexMessageSender messageSender = new TDIndexMessageSender();
+
+  @Test
+  public void findById_cached() throws IOException {
+
+    EQuerySend send = create(new ElasticConfig());
+    send.findById("order", 42).close();
+    send.findById("order", 42).close();
+
+    assertThat(messageSender.docGets).isEqualTo(1);
+  }
+
+  @Test
+  public void findById_routed_notCached() throws IOException {
+
+    EQuerySend send = create(new ElasticConfig());
+    send.findById("order", 42, "routing=7").close();
+    send.findById("order", 42, "routing=8").close();
+
+    assertThat(messageSender.docGets).isEqualTo(2);
+    assertThat(messageSender.docParams).isEqualTo("routing=8");
+  }
+
+  @Test
+  public void findById_coalesced_notAcrossRouting() throws Exception {
+
+    AtomicInteger gets = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    TDIndexMessageSender blockingSender = new TDIndexMessageSender() {
+      @Override
+      public IndexMessageResponse getDocSource(String indexName, String docId, String urlParams) throws IOException {
+        gets.incrementAndGet();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return new IndexMessageResponse(200, "{\"" + urlParams + "\":true}");
+      }
+    };
+    ElasticConfig config = new ElasticConfig();
+    config.setCoalesceRequests(true);
+    EQuerySend send = new EQuerySend(new JsonFactory(), blockingSender, config, null, null);
+
+    CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> fieldName(send, "routing=7"));
+    CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> fieldName(send, "routing=8"));
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (gets.get() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("routing=7");
+    assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("routing=8");
+    assertThat(gets.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void findHitsMulti_splitsResponses() throws IOException {
+
+    String first = "{\"took\":1,\"hits\":{\"hits\":[{\"_id\":\"1\",\"_source\":{\"name\":\"a]},{\"}}]},\"status\":200}";
+    messageSender.multiSearchResponse = "{\"took\":3,\"responses\":[" + first + ","
+      + "{\"error\":{\"type\":\"index_not_found_exception\",\"reason\":\"no such index [missing]\"},\"status\":404},"
+      + "{\"error\":{\"type\":\"search_phase_execution_exception\"},\"status\":500}]}";
+
+    EQuerySend send = create(new ElasticConfig());
+    List<EQuerySend.MultiResponse> responses = send.findHitsMulti(Arrays.asList("order", "missing", "order"),
+      Arrays.asList("{\"size\":1}", "{}", "{}"));
+
+    assertThat(messageSender.multiSearchRequest).isEqualTo("{\"index\":\"order\"}\n{\"size\":1}\n{\"index\":\"missing\"}\n{}\n{\"index\":\"order\"}\n{}\n");
+    assertThat(responses).hasSize(3);
+    assertThat(responses.get(0).body()).isEqualTo(first);
+    assertThatThrownBy(() -> responses.get(1).body()).isInstanceOf(DocumentNotFoundException.class);
+    assertThatThrownBy(() -> responses.get(2).body()).isInstanceOf(IOException.class).hasMessageContaining("500");
+  }
+
+  @Test
+  public void findHitsMulti_missingResponse_throws() {
+
+    messageSender.multiSearchResponse = "{\"took\":3,\"responses\":[{\"hits\":{},\"status\":200}]}";
+    EQuerySend send = create(new ElasticConfig());
+
+    assertThatThrownBy(() -> send.findHitsMulti(Arrays.asList("order", "order"), Arrays.asList("{}", "{}")))
+      .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  public void findHits_concurrent_batchedIntoMultiSearch() throws Exception {
+
+    AtomicInteger multiSearches = new AtomicInteger();
+    TDIndexMessageSender multiSender = new TDIndexMessageSender() {
+      @Override
+      public IndexMessageResponse postMultiSearch(String ndJson) {
+        multiSearches.incrementAndGet();
+        // respond to each search with its index name (or not found for the missing index)
+        StringBuilder body = new StringBuilder("{\"responses\":[");
+        String[] lines = ndJson.split("\n");
+        for (int i = 0; i < lines.length; i += 2) {
+          if (i > 0) {
+            body.append(',');
+          }
+          String index = (String) parse(lines[i]).get("index");
+          if (index.equals("missing")) {
+            body.append("{\"error\":{\"type\":\"index_not_found_exception\"},\"status\":404}");
+          } else {
+            body.append("{\"index\":\"").append(index).append("\",\"status\":200}");
+          }
+        }
+        return new IndexMessageResponse(200, body.append("]}").toString());
+      }
+    };
+    ElasticConfig config = new ElasticConfig();
+    config.setMultiSearchWindowMillis(5_000);
+    config.setMultiSearchMaxBatch(2);
+    EQuerySend send = new EQuerySend(new JsonFactory(), multiSender, config, null, null);
+
+    CompletableFuture<Object> order = CompletableFuture.supplyAsync(() -> search(send, "order"));
+    CompletableFuture<Object> missing = CompletableFuture.supplyAsync(() -> search(send, "missing"));
+
+    // the batch is sent when full rather than waiting for the window
+    assertThat(order.get(4, TimeUnit.SECONDS)).isEqualTo("order");
+    assertThatThrownBy(() -> missing.get(4, TimeUnit.SECONDS)).hasCauseInstanceOf(DocumentNotFoundException.class);
+    assertThat(multiSearches.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void findByIds_mapsFoundDocuments() throws IOException {
+
+    messageSender.multiGetResponse = "{\"docs\":["
+      + "{\"_index\":\"product\",\"_id\":\"1\",\"_version\":1,\"found\":true,\"_source\":{\"sku\":\"C001\",\"name\":\"Chair\"}},"
+      + "{\"_index\":\"product\",\"_id\":\"2\",\"found\":false},"
+      + "{\"_index\":\"product\",\"_id\":\"3\",\"_version\":2,\"found\":true,\"_source\":{\"sku\":\"D001\",\"name\":\"Desk\"}}]}";
+
+    EQuerySend send = create(new ElasticConfig());
+    JsonParser parser = send.findByIds("product", "sku,name", Arrays.asList(1L, 2L, 3L));
+    List<Product> products = new EQuery<>(DB.getDefault().pluginApi().beanType(Product.class), DB.json(), new JsonReadOptions())
+      .createMultiGetParser(parser).read();
+
+    assertThat(messageSender.multiGetRequest).isEqualTo("{\"ids\":[\"1\",\"2\",\"3\"]}");
+    assertThat(products).extracting(Product::getId).containsExactly(1L, 3L);
+    assertThat(products).extracting(Product::getName).containsExactly("Chair", "Desk");
+  }
+
+  private static Object search(EQuerySend send, String indexName) {
+    try (JsonParser parser = send.findHits(indexName, "{}")) {
+      return EJson.parseObject(parser).get("index");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Map<String, Object> parse(String json) {
+    try {
+      return EJson.parseObject(json);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String fieldName(EQuerySend send, String urlParams) {
+    try (JsonParser parser = send.findById("order", 42, urlParams)) {
+      parser.nextToken();
+      parser.nextToken();
+      return parser.getCurrentName();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private EQuerySend create(ElasticConfig config) {
+    messageSender.docGets = 0;
+    messageSender.docParams = null;
+    DocumentCache documentCache = new DocumentCache(10, 10_000, 60_000, Collections.emptySet());
+    return new EQuerySend(new JsonFactory(), messageSender, config, null, documentCache);
+  }
+}
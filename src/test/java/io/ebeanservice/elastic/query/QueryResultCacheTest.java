@@ -0,0 +1,81 @@
+package io.ebeanservice.elastic.query;
+
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryResultCacheTest {
+
+  @Test
+  public void get_put() {
+
+    QueryResultCache cache = new QueryResultCache(10, 60_000);
+    assertThat(cache.get("order", "{}")).isNull();
+
+    cache.put("order", "{}", cache.version("order"), "response");
+    assertThat(cache.get("order", "{}")).isEqualTo("response");
+    assertThat(cache.get("customer", "{}")).isNull();
+
+    QueryResultCache.Statistics statistics = cache.statistics();
+    assertThat(statistics.getHitCount()).isEqualTo(1);
+    assertThat(statistics.getMissCount()).isEqualTo(2);
+    assertThat(statistics.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void flushed_invalidatesIndex() {
+
+    QueryResultCache cache = new QueryResultCache(10, 60_000);
+    cache.put("order", "{}", cache.version("order"), "order response");
+    cache.put("customer", "{}", cache.version("customer"), "customer response");
+
+    cache.flushed(Collections.singletonMap("order", null));
+    assertThat(cache.get("order", "{}")).isNull();
+    assertThat(cache.get("customer", "{}")).isEqualTo("customer response");
+  }
+
+  @Test
+  public void put_whenWrittenSinceVersion_notCached() {
+
+    QueryResultCache cache = new QueryResultCache(10, 60_000);
+    long version = cache.version("order");
+    cache.flushed(Collections.singletonMap("order", null));
+
+    cache.put("order", "{}", version, "stale response");
+    assertThat(cache.get("order", "{}")).isNull();
+  }
+
+  @Test
+  public void put_withinGraceAfterWrite_notCached() throws InterruptedException {
+
+    QueryResultCache cache = new QueryResultCache(10, 60_000, 50);
+    cache.flushed(Collections.singletonMap("order", null));
+
+    long version = cache.version("order");
+    assertThat(version).isEqualTo(QueryResultCache.NOT_CACHEABLE);
+    cache.put("order", "{}", version, "maybe not refreshed");
+    assertThat(cache.get("order", "{}")).isNull();
+
+    Thread.sleep(60);
+    version = cache.version("order");
+    assertThat(version).isEqualTo(1);
+    cache.put("order", "{}", version, "refreshed");
+    assertThat(cache.get("order", "{}")).isEqualTo("refreshed");
+  }
+
+  @Test
+  public void put_maxEntries_evictsLeastRecentlyUsed() {
+
+    QueryResultCache cache = new QueryResultCache(2, 60_000);
+    cache.put("order", "a", 0, "a");
+    cache.put("order", "b", 0, "b");
+    cache.get("order", "a");
+    cache.put("order", "c", 0, "c");
+
+    assertThat(cache.get("order", "b")).isNull();
+    assertThat(cache.get("order", "a")).isEqualTo("a");
+    assertThat(cache.statistics().getEvictionCount()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,50 @@
+package io.ebeanservice.elastic.query;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SearchHintsTest {
+
+  @Test
+  public void searchParams_none() {
+    assertThat(SearchHints.create().searchParams(null)).isNull();
+    assertThat(SearchHints.create().searchParams("a")).isEqualTo("routing=a");
+  }
+
+  @Test
+  public void searchParams_all() {
+    SearchHints hints = SearchHints.create()
+      .requestCache(true)
+      .preference("session 1")
+      .timeout("2s")
+      .batchedReduceSize(64)
+      .maxConcurrentShardRequests(3);
+
+    assertThat(hints.searchParams("a,b")).isEqualTo("routing=a%2Cb&preference=session+1&request_cache=true&timeout=2s&batched_reduce_size=64&max_concurrent_shard_requests=3");
+    assertThat(hints.scrollParams(null)).isEqualTo("preference=session+1&timeout=2s&batched_reduce_size=64&max_concurrent_shard_requests=3");
+    assertThat(hints.countParams(null)).isEqualTo("preference=session+1");
+  }
+
+  @Test
+  public void with_overrides() {
+    SearchHints defaults = SearchHints.create().requestCache(true).timeout("5s");
+    SearchHints merged = defaults.with(SearchHints.create().requestCache(false).preference("_local"));
+
+    assertThat(merged.getRequestCache()).isFalse();
+    assertThat(merged.getTimeout()).isEqualTo("5s");
+    assertThat(merged.getPreference()).isEqualTo("_local");
+    assertThat(defaults.getRequestCache()).isTrue();
+  }
+
+  @Test
+  public void set_byParamName() {
+    SearchHints hints = SearchHints.create()
+      .set("request_cache", "true")
+      .set("max_concurrent_shard_requests", "2");
+
+    assertThat(hints.searchParams(null)).isEqualTo("request_cache=true&max_concurrent_shard_requests=2");
+    assertThatThrownBy(() -> hints.set("foo", "1")).isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,115 @@
+package io.ebeanservice.elastic.query;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+
+  @Test
+  public void execute_concurrentIdentical_sharesResponse() throws Exception {
+
+    SingleFlight singleFlight = new SingleFlight();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+
+    CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> execute(singleFlight, "{}", () -> {
+      calls.incrementAndGet();
+      started.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return "response";
+    }));
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> execute(singleFlight, "{}", () -> {
+      calls.incrementAndGet();
+      return "other";
+    }));
+    while (singleFlight.statistics().getCoalescedCount() == 0) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("response");
+    assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("response");
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(singleFlight.statistics().getExecutedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void execute_sequential_notCoalesced() throws IOException {
+
+    SingleFlight singleFlight = new SingleFlight();
+    assertThat(singleFlight.execute("order", "{}", () -> "a")).isEqualTo("a");
+    assertThat(singleFlight.execute("order", "{}", () -> "b")).isEqualTo("b");
+    assertThat(singleFlight.execute("customer", "{}", () -> "c")).isEqualTo("c");
+
+    SingleFlight.Statistics statistics = singleFlight.statistics();
+    assertThat(statistics.getExecutedCount()).isEqualTo(3);
+    assertThat(statistics.getCoalescedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_error_notRetained() throws IOException {
+
+    SingleFlight singleFlight = new SingleFlight();
+    assertThatThrownBy(() -> singleFlight.execute("order", "{}", () -> {
+      throw new IOException("failed");
+    })).isInstanceOf(IOException.class);
+
+    assertThat(singleFlight.execute("order", "{}", () -> "ok")).isEqualTo("ok");
+  }
+
+  @Test
+  public void execute_concurrentError_completesWaiting() throws Exception {
+
+    SingleFlight singleFlight = new SingleFlight();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> execute(singleFlight, "{}", () -> {
+      started.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      throw new AssertionError("failed");
+    }));
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> execute(singleFlight, "{}", () -> "other"));
+    while (singleFlight.statistics().getCoalescedCount() == 0) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+
+    assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+    assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+    assertThat(singleFlight.execute("order", "{}", () -> "ok")).isEqualTo("ok");
+  }
+
+  private interface BlockingRequest {
+    String execute() throws Exception;
+  }
+
+  private static String execute(SingleFlight singleFlight, String body, BlockingRequest request) {
+    try {
+      return singleFlight.execute("order", body, () -> {
+        try {
+          return request.execute();
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      });
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package io.ebeanservice.elastic.search.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DtoSearchParserTest {
+
+  private static final String RESPONSE = "{\"took\":2,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+    + "\"hits\":{\"total\":{\"value\":2,\"relation\":\"eq\"},\"max_score\":1.0,\"hits\":["
+    + "{\"_index\":\"order\",\"_id\":\"1\",\"_score\":1.0,\"_source\":{\"status\":\"NEW\",\"customer\":{\"id\":7,\"name\":\"Rob\"},\"notes\":\"x\"}},"
+    + "{\"_index\":\"order\",\"_id\":\"2\",\"_score\":1.0,\"_source\":{\"status\":\"SHIPPED\"}}"
+    + "]}}";
+
+  private final DtoMappers mappers = new DtoMappers(null);
+
+  @Test
+  public void read_withId() throws IOException {
+
+    DtoMapper<OrderSummary> mapper = mappers.mapper(OrderSummary.class);
+    assertThat(mapper.properties()).containsExactlyInAnyOrder("status", "customer");
+    assertThat(mappers.mapper(OrderSummary.class)).isSameAs(mapper);
+
+    List<OrderSummary> list = new DtoSearchParser<>(parser(), mapper).read();
+
+    assertThat(list).hasSize(2);
+    assertThat(list.get(0).id).isEqualTo(1L);
+    assertThat(list.get(0).status).isEqualTo("NEW");
+    assertThat(list.get(0).customer.name).isEqualTo("Rob");
+    assertThat(list.get(1).id).isEqualTo(2L);
+    assertThat(list.get(1).status).isEqualTo("SHIPPED");
+    assertThat(list.get(1).customer).isNull();
+  }
+
+  @Test
+  public void read_noId() throws IOException {
+
+    List<StatusOnly> list = new DtoSearchParser<>(parser(), mappers.mapper(StatusOnly.class)).read();
+
+    assertThat(list).extracting(dto -> dto.status).containsExactly("NEW", "SHIPPED");
+  }
+
+  private JsonParser parser() throws IOException {
+    return new JsonFactory().createParser(RESPONSE);
+  }
+
+  public static class OrderSummary {
+    public Long id;
+    public String status;
+    public CustomerName customer;
+  }
+
+  public static class CustomerName {
+    public String name;
+  }
+
+  public static class StatusOnly {
+    public String status;
+  }
+}
@@ -0,0 +1,55 @@
+package io.ebeanservice.elastic.search.rawsource;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RawSourceExporterTest {
+
+  private static final String RESPONSE = "{\"_scroll_id\":\"s1\",\"took\":2,\"timed_out\":false,"
+    + "\"hits\":{\"total\":{\"value\":2,\"relation\":\"eq\"},\"max_score\":null,\"hits\":["
+    + "{\"_index\":\"product\",\"_id\":\"1\",\"_score\":null,\"_source\":{\"sku\":\"A1\",\"tags\":[\"x\",\"y\"]},\"sort\":[0]},"
+    + "{\"_index\":\"product\",\"_id\":\"2\",\"_score\":null,\"_source\":{\"sku\":\"B2\",\"dims\":{\"w\":1.5}},\"sort\":[1]}"
+    + "]}}";
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+
+  @Test
+  public void export_ndJson() throws IOException {
+
+    StringWriter writer = new StringWriter();
+    JsonGenerator gen = generator(writer);
+
+    RawSourceExporter exporter = new RawSourceExporter(jsonFactory.createParser(RESPONSE), gen, ExportFormat.NDJSON);
+    assertThat(exporter.export()).isEqualTo(2);
+    gen.flush();
+
+    assertThat(exporter.getScrollId()).isEqualTo("s1");
+    assertThat(exporter.allHitsRead()).isTrue();
+    assertThat(writer.toString()).isEqualTo("{\"sku\":\"A1\",\"tags\":[\"x\",\"y\"]}\n{\"sku\":\"B2\",\"dims\":{\"w\":1.5}}\n");
+  }
+
+  @Test
+  public void export_jsonArray() throws IOException {
+
+    StringWriter writer = new StringWriter();
+    JsonGenerator gen = generator(writer);
+    gen.writeStartArray();
+    new RawSourceExporter(jsonFactory.createParser(RESPONSE), gen, ExportFormat.JSON_ARRAY).export();
+    gen.writeEndArray();
+    gen.flush();
+
+    assertThat(writer.toString()).isEqualTo("[{\"sku\":\"A1\",\"tags\":[\"x\",\"y\"]},{\"sku\":\"B2\",\"dims\":{\"w\":1.5}}]");
+  }
+
+  private JsonGenerator generator(StringWriter writer) throws IOException {
+    JsonGenerator gen = jsonFactory.createGenerator(writer);
+    gen.setRootValueSeparator(null);
+    return gen;
+  }
+}
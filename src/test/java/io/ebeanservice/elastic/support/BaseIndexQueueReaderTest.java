@@ -0,0 +1,129 @@
+package io.ebeanservice.elastic.support;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import integration.BaseTest;
+import io.ebean.DocStoreQueueEntry;
+import io.ebean.Transaction;
+import io.ebean.plugin.SpiServer;
+import io.ebeanservice.elastic.ElasticUpdateProcessor;
+import io.ebeanservice.elastic.bulk.BulkTransaction;
+import io.ebeanservice.elastic.testdoubles.TDIndexMessageSender;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BaseIndexQueueReaderTest extends BaseTest {
+
+  private static final String TABLE = "test_elastic_queue";
+
+  private final SpiServer spiServer = server.pluginApi();
+
+  private final TDIndexMessageSender messageSender = new TDIndexMessageSender();
+
+  private final BaseIndexQueueWriter writer = new BaseIndexQueueWriter(server, TABLE);
+
+  private final ElasticUpdateProcessor updateProcessor = new ElasticUpdateProcessor(spiServer, writer, new JsonFactory(), null,
+    messageSender, 100, null, 100, 1);
+
+  @BeforeClass
+  public void createTables() {
+    QueueTables.create(server, TABLE);
+    writer.onStartup();
+  }
+
+  @BeforeMethod
+  public void clear() {
+    server.sqlUpdate("delete from " + TABLE).execute();
+    messageSender.request = null;
+  }
+
+  @Test
+  public void queue_inTransaction_rollsBackWithIt() {
+
+    try (Transaction transaction = server.beginTransaction()) {
+      writer.queue(transaction, deleteEntries("product"));
+      assertThat(QueueTables.count(server, TABLE)).isEqualTo(1);
+    }
+    assertThat(QueueTables.count(server, TABLE)).isZero();
+  }
+
+  @Test
+  public void queue_onPreCommit_insertsInCommittingTransaction() {
+
+    BulkTransaction docStoreTxn;
+    try (Transaction transaction = server.beginTransaction()) {
+      docStoreTxn = (BulkTransaction) updateProcessor.createTransaction(0);
+      docStoreTxn.queue().queueDelete("product", 42L);
+      assertThat(QueueTables.count(server, TABLE)).isZero();
+      transaction.commit();
+    }
+    assertThat(docStoreTxn.isQueueWritten()).isTrue();
+    assertThat(QueueTables.count(server, TABLE)).isEqualTo(1);
+  }
+
+  @Test
+  public void process_claimProcessDelete() {
+
+    writer.queue(deleteEntries("product"));
+    BaseIndexQueueReader reader = new BaseIndexQueueReader(spiServer, updateProcessor, TABLE, 10, 0);
+
+    assertThat(reader.process()).isEqualTo(1);
+    assertThat(messageSender.request).contains("delete").contains("\"42\"");
+    assertThat(QueueTables.count(server, TABLE)).isZero();
+    assertThat(reader.getProcessedCount()).isEqualTo(1);
+    assertThat(reader.process()).isZero();
+  }
+
+  @Test
+  public void process_failure_releasesEntries() {
+
+    writer.queue(deleteEntries("unknown"));
+    BaseIndexQueueReader reader = new BaseIndexQueueReader(spiServer, updateProcessor, TABLE, 10, 0);
+
+    assertThat(reader.process()).isZero();
+    assertThat(reader.getFailedCount()).isEqualTo(1);
+    assertThat(QueueTables.count(server, TABLE)).isEqualTo(1);
+    assertThat(processingCount()).isZero();
+  }
+
+  @Test
+  public void drain_reclaimsEntriesLeftProcessing() {
+
+    long now = System.currentTimeMillis();
+    insertProcessing("41", now - 3_600_000);
+    insertProcessing("42", now);
+    BaseIndexQueueReader reader = new BaseIndexQueueReader(spiServer, updateProcessor, TABLE, 10, 0, 0, 0, 60_000);
+
+    reader.drain();
+    // the entry claimed an hour ago is reclaimed and processed, the recently claimed one is left
+    assertThat(messageSender.request).contains("\"41\"").doesNotContain("\"42\"");
+    assertThat(QueueTables.count(server, TABLE)).isEqualTo(1);
+    assertThat(processingCount()).isEqualTo(1);
+  }
+
+  private long processingCount() {
+    return server.sqlQuery("select count(*) from " + TABLE + " where processing = " + BaseIndexQueueWriter.PROCESSING_TRUE)
+      .mapToScalar(Long.class).findOne();
+  }
+
+  private void insertProcessing(String docId, long claimedAt) {
+    server.sqlUpdate("insert into " + TABLE + " (queue_id, doc_id, action, processing, claimed_at, when_queued) values (?,?,?,?,?,?)")
+      .setParameter(1, "product")
+      .setParameter(2, docId)
+      .setParameter(3, DocStoreQueueEntry.Action.DELETE.getValue())
+      .setParameter(4, BaseIndexQueueWriter.PROCESSING_TRUE)
+      .setParameter(5, new Timestamp(claimedAt))
+      .setParameter(6, new Timestamp(claimedAt))
+      .execute();
+  }
+
+  private static List<DocStoreQueueEntry> deleteEntries(String queueId) {
+    return Collections.singletonList(new DocStoreQueueEntry(DocStoreQueueEntry.Action.DELETE, queueId, 42L));
+  }
+}
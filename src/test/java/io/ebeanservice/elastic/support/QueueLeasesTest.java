@@ -0,0 +1,170 @@
+package io.ebeanservice.elastic.support;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import integration.BaseTest;
+import io.ebean.DocStoreQueueEntry;
+import io.ebean.plugin.SpiServer;
+import io.ebeanservice.elastic.ElasticUpdateProcessor;
+import io.ebeanservice.elastic.testdoubles.TDIndexMessageSender;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueueLeasesTest extends BaseTest {
+
+  private static final String QUEUE = "test_leased_queue";
+
+  private static final String LEASE = QUEUE + "_lease";
+
+  private final SpiServer spiServer = server.pluginApi();
+
+  @BeforeClass
+  public void createTables() {
+    QueueTables.create(server, QUEUE);
+  }
+
+  @BeforeMethod
+  public void clear() {
+    server.sqlUpdate("delete from " + QUEUE).execute();
+    server.sqlUpdate("delete from " + LEASE).execute();
+  }
+
+  @Test
+  public void target_evenShareRoundedUp() {
+    assertThat(QueueLeases.target(16, 0)).isEqualTo(16);
+    assertThat(QueueLeases.target(16, 1)).isEqualTo(16);
+    assertThat(QueueLeases.target(16, 2)).isEqualTo(8);
+    assertThat(QueueLeases.target(16, 3)).isEqualTo(6);
+    assertThat(QueueLeases.target(16, 20)).isEqualTo(1);
+  }
+
+  @Test
+  public void bucket_sameForDocument() {
+    int bucket = BaseIndexQueueWriter.bucket("order", "42", 16);
+    assertThat(bucket).isBetween(0, 15);
+    assertThat(BaseIndexQueueWriter.bucket("order", "42", 16)).isEqualTo(bucket);
+    assertThat(BaseIndexQueueWriter.bucket("customer", "-7", 3)).isBetween(0, 2);
+  }
+
+  @Test
+  public void rebalance_nodeJoins_bucketsSplit() {
+
+    QueueLeases first = leases(60_000);
+    QueueLeases second = leases(60_000);
+    assertThat(first.rebalance()).containsOnly(0, 1, 2, 3);
+
+    // the buckets are all leased so the joining node waits for the first to release its excess
+    assertThat(second.rebalance()).isEmpty();
+    assertThat(first.rebalance()).hasSize(2);
+    assertThat(second.rebalance()).hasSize(2);
+
+    Set<Integer> all = new HashSet<>(first.owned());
+    all.addAll(second.owned());
+    assertThat(all).containsOnly(0, 1, 2, 3);
+    assertThat(first.renew()).doesNotContainAnyElementsOf(second.renew());
+  }
+
+  @Test
+  public void releaseAll_nodeLeaves_bucketsTakenWithoutReset() {
+
+    QueueLeases first = leases(60_000);
+    QueueLeases second = leases(60_000);
+    first.rebalance();
+    second.rebalance();
+    insertProcessing(0);
+
+    first.releaseAll();
+    assertThat(first.owned()).isEmpty();
+    assertThat(server.sqlQuery("select count(*) from " + LEASE + " where owner is null")
+      .mapToScalar(Long.class).findOne()).isEqualTo(4);
+
+    // the departed node no longer counts as live so the remaining node takes all the buckets
+    assertThat(second.rebalance()).containsOnly(0, 1, 2, 3);
+    assertThat(processingCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void rebalance_leaseExpired_bucketsTakenOverWithReset() throws InterruptedException {
+
+    QueueLeases expiring = leases(100);
+    QueueLeases second = leases(60_000);
+    assertThat(expiring.rebalance()).containsOnly(0, 1, 2, 3);
+    insertProcessing(0);
+    insertProcessing(3);
+
+    Thread.sleep(200);
+    assertThat(expiring.renew()).isEmpty();
+    assertThat(second.rebalance()).containsOnly(0, 1, 2, 3);
+
+    // the entries left processing by the expired owner are reset for processing
+    assertThat(processingCount()).isZero();
+    assertThat(server.sqlQuery("select count(*) from " + LEASE + " where lease_key like 'node:%'")
+      .mapToScalar(Long.class).findOne()).isEqualTo(1);
+  }
+
+  @Test
+  public void process_leaseExpiredDuringProcessing_entriesNotDeleted() {
+
+    TDIndexMessageSender slowSender = new TDIndexMessageSender() {
+      @Override
+      public String postBulk(String urlParams, String json) throws IOException {
+        sleep(300);
+        return super.postBulk(urlParams, json);
+      }
+    };
+    BaseIndexQueueWriter writer = new BaseIndexQueueWriter(server, QUEUE, 1);
+    ElasticUpdateProcessor updateProcessor = new ElasticUpdateProcessor(spiServer, writer, new JsonFactory(), null,
+      slowSender, 100, null, 100, 1);
+    BaseIndexQueueReader reader = new BaseIndexQueueReader(spiServer, updateProcessor, QUEUE, 10, 0, 1, 100);
+
+    writer.queue(Collections.singletonList(new DocStoreQueueEntry(DocStoreQueueEntry.Action.DELETE, "product", 42L)));
+    reader.drain();
+
+    // the bucket lease expired while processing so the entry is left for the next owner
+    assertThat(slowSender.request).contains("\"42\"");
+    assertThat(QueueTables.count(server, QUEUE)).isEqualTo(1);
+    assertThat(processingCount()).isEqualTo(1);
+
+    QueueLeases next = new QueueLeases(spiServer, QUEUE, LEASE, 1, 60_000);
+    assertThat(next.rebalance()).containsOnly(0);
+    assertThat(processingCount()).isZero();
+  }
+
+  private QueueLeases leases(long leaseMillis) {
+    return new QueueLeases(spiServer, QUEUE, LEASE, 4, leaseMillis);
+  }
+
+  private long processingCount() {
+    return server.sqlQuery("select count(*) from " + QUEUE + " where processing = " + BaseIndexQueueWriter.PROCESSING_TRUE)
+      .mapToScalar(Long.class).findOne();
+  }
+
+  private void insertProcessing(int bucket) {
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    server.sqlUpdate("insert into " + QUEUE + " (queue_id, doc_id, action, processing, claimed_at, when_queued, bucket) values (?,?,?,?,?,?,?)")
+      .setParameter(1, "product")
+      .setParameter(2, String.valueOf(bucket))
+      .setParameter(3, DocStoreQueueEntry.Action.DELETE.getValue())
+      .setParameter(4, BaseIndexQueueWriter.PROCESSING_TRUE)
+      .setParameter(5, now)
+      .setParameter(6, now)
+      .setParameter(7, bucket)
+      .execute();
+  }
+
+  private static void sleep(int millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
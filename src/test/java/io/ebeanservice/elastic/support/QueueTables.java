@@ -0,0 +1,50 @@
+package io.ebeanservice.elastic.support;
+
+import io.ebean.Database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Creates the doc store queue and lease tables (from the shipped DDL) under a test table name.
+ */
+class QueueTables {
+
+  private static final String DDL = "/io/ebeanservice/elastic/eb_elastic_queue.sql";
+
+  /**
+   * Drop and create the queue table and its lease table.
+   */
+  static void create(Database server, String queueTable) {
+    server.sqlUpdate("drop table if exists " + queueTable + "_lease").execute();
+    server.sqlUpdate("drop table if exists " + queueTable).execute();
+    for (String statement : ddl().replace("eb_elastic_queue", queueTable).split(";")) {
+      StringBuilder sql = new StringBuilder();
+      for (String line : statement.split("\n")) {
+        if (!line.trim().startsWith("--")) {
+          sql.append(line).append('\n');
+        }
+      }
+      if (!sql.toString().trim().isEmpty()) {
+        server.sqlUpdate(sql.toString()).execute();
+      }
+    }
+  }
+
+  /**
+   * Return the number of rows in the table.
+   */
+  static long count(Database server, String table) {
+    return server.sqlQuery("select count(*) from " + table).mapToScalar(Long.class).findOne();
+  }
+
+  private static String ddl() {
+    try (InputStream is = QueueTables.class.getResourceAsStream(DDL)) {
+      return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
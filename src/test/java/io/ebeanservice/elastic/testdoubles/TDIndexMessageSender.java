@@ -11,37 +11,113 @@ import java.util.Set;
 public class TDIndexMessageSender implements IndexMessageSender {
 
   public String request;
+  public String bulkParams;
+  public IOException bulkError;
   public String response = "{\"something\":42}";
+  public String deleteQuery;
+  public String deleteResponse = "{\"deleted\":2,\"failures\":[]}";
+  public String updateQuery;
+  public int scriptPuts;
+  public int taskPolls;
+  public String taskResponse = "{\"total\":3,\"updated\":2,\"noops\":1,\"failures\":[]}";
+  public String deletedTask;
+  public String docSource = "{\"id\":42}";
+  public String docParams;
+  public int docGets;
+  public String multiGetRequest;
+  public String multiGetResponse;
+  public String multiSearchRequest;
+  public String multiSearchResponse;
 
   public TDIndexMessageSender() {
   }
 
   @Override
-  public String postBulk(String json) throws IOException {
+  public String postBulk(String urlParams, String json) throws IOException {
+    if (bulkError != null) {
+      throw bulkError;
+    }
     request = json;
+    bulkParams = urlParams;
     return response;
   }
 
   @Override
-  public IndexMessageResponse getDocSource(String indexName, String docId) throws IOException {
-    return null;
+  public IndexMessageResponse getDocSource(String indexName, String docId, String urlParams) throws IOException {
+    docGets++;
+    docParams = urlParams;
+    return new IndexMessageResponse(200, docSource);
   }
 
   @Override
-  public IndexMessageResponse postQuery(boolean scroll, String indexName, String jsonQuery) throws IOException {
+  public IndexMessageResponse postQuery(boolean scroll, String indexName, String urlParams, String jsonQuery) throws IOException {
     return null;
   }
 
   @Override
-  public IndexMessageResponse postUpdateQuery(String indexType, String indexName, String jsonQuery) throws IOException {
+  public IndexMessageResponse postMultiGet(String indexName, String sourceIncludes, String urlParams, String jsonIds) throws IOException {
+    multiGetRequest = jsonIds;
+    return new IndexMessageResponse(200, multiGetResponse);
+  }
+
+  @Override
+  public IndexMessageResponse postMultiSearch(String ndJson) throws IOException {
+    multiSearchRequest = ndJson;
+    return new IndexMessageResponse(200, multiSearchResponse);
+  }
+
+  @Override
+  public IndexMessageResponse postCount(String indexName, String urlParams, String jsonQuery) throws IOException {
     return null;
   }
 
+  @Override
+  public IndexMessageResponse postUpdateQuery(String indexName, String urlParams, String jsonQuery) throws IOException {
+    updateQuery = indexName + "?" + urlParams + " " + jsonQuery;
+    return new IndexMessageResponse(200, "{\"task\":\"n1:7\"}");
+  }
+
+  @Override
+  public IndexMessageResponse putScript(String scriptId, String scriptJson) throws IOException {
+    scriptPuts++;
+    return new IndexMessageResponse(200, "{\"acknowledged\":true}");
+  }
+
+  @Override
+  public IndexMessageResponse getTask(String taskId) throws IOException {
+    if (++taskPolls < 2) {
+      return new IndexMessageResponse(200, "{\"completed\":false}");
+    }
+    return new IndexMessageResponse(200, "{\"completed\":true,\"response\":" + taskResponse + "}");
+  }
+
+  @Override
+  public IndexMessageResponse deleteTaskResult(String taskId) throws IOException {
+    deletedTask = taskId;
+    return new IndexMessageResponse(200, "{\"result\":\"deleted\"}");
+  }
+
+  @Override
+  public IndexMessageResponse postDeleteQuery(String indexName, String urlParams, String jsonQuery) throws IOException {
+    deleteQuery = indexName + "?" + urlParams + " " + jsonQuery;
+    return new IndexMessageResponse(200, deleteResponse);
+  }
+
   @Override
   public IndexMessageResponse getScroll(String scrollId) throws IOException {
     return null;
   }
 
+  @Override
+  public IndexMessageResponse openPointInTime(String indexName, String urlParams) throws IOException {
+    return null;
+  }
+
+  @Override
+  public IndexMessageResponse closePointInTime(String pitId) throws IOException {
+    return null;
+  }
+
   @Override
   public IndexMessageResponse clearScrollIds(Set<String> scrollIds) throws IOException {
     return null;
@@ -0,0 +1,52 @@
+package io.ebeanservice.elastic.update;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmbeddedUpdateTest {
+
+  @Test
+  public void one_termsAndParams() throws Exception {
+
+    EmbeddedUpdate update = EmbeddedUpdate.one("customer.id", "customer", "id");
+    update.add(1L, "{\"id\":1,\"name\":\"Rob\"}");
+    update.add(2L, "{\"id\":2,\"name\":\"Jim\"}");
+
+    assertThat(update.size()).isEqualTo(2);
+    assertThat(update.scriptId()).isEqualTo(EmbeddedUpdate.ONE_SCRIPT_ID);
+    assertThat(update.json()).isEqualTo("{\"query\":{\"bool\":{\"filter\":{\"terms\":{\"customer.id\":[\"1\",\"2\"]}}}},"
+      + "\"script\":{\"id\":\"ebean-update-embedded-one\",\"params\":{\"path\":\"customer\",\"id\":\"id\","
+      + "\"values\":{\"1\":{\"id\":1,\"name\":\"Rob\"},\"2\":{\"id\":2,\"name\":\"Jim\"}}}}}");
+
+    update.clear();
+    assertThat(update.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void many_nestedTermsAndElementPath() throws Exception {
+
+    EmbeddedUpdate update = EmbeddedUpdate.many("details.product.id", "details", "product", "id");
+    update.add(5L, "{\"id\":5,\"sku\":\"A1\",\"name\":\"Chair\"}");
+
+    assertThat(update.scriptId()).isEqualTo(EmbeddedUpdate.MANY_SCRIPT_ID);
+    assertThat(update.json()).isEqualTo("{\"query\":{\"bool\":{\"filter\":{\"nested\":{\"path\":\"details\","
+      + "\"query\":{\"terms\":{\"details.product.id\":[\"5\"]}}}}}},"
+      + "\"script\":{\"id\":\"ebean-update-embedded-many\",\"params\":{\"path\":\"details\",\"element\":[\"product\"],\"id\":\"id\","
+      + "\"values\":{\"5\":{\"id\":5,\"sku\":\"A1\",\"name\":\"Chair\"}}}}}");
+  }
+
+  @Test
+  public void exclude_mustNotIds() throws Exception {
+
+    EmbeddedUpdate update = EmbeddedUpdate.one("customer.id", "customer", "id")
+      .exclude(new LinkedHashSet<>(Arrays.asList("10", "11")));
+    update.add(1L, "{\"id\":1}");
+
+    assertThat(update.json()).startsWith("{\"query\":{\"bool\":{\"filter\":{\"terms\":{\"customer.id\":[\"1\"]}},"
+      + "\"must_not\":{\"ids\":{\"values\":[\"10\",\"11\"]}}}},");
+  }
+}
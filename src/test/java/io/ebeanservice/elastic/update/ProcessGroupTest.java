@@ -0,0 +1,68 @@
+package io.ebeanservice.elastic.update;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProcessGroupTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @AfterClass
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void forEachChunked_inIdOrder() {
+
+    List<Object> ids = new ArrayList<>();
+    for (long i = 1; i <= 10; i++) {
+      ids.add(i);
+    }
+    List<Object> consumed = new ArrayList<>();
+    List<Integer> progress = new ArrayList<>();
+
+    ProcessGroup.forEachChunked(ids, 3, 3, executor, chunk -> {
+      // later chunks finish loading first
+      sleep(50 - 10 * ((Long) chunk.get(0)).intValue() / 3);
+      return new ArrayList<>(chunk);
+    }, consumed::add, progress::add);
+
+    assertThat(consumed).isEqualTo(ids);
+    assertThat(progress).containsExactly(3, 6, 9, 10);
+  }
+
+  @Test
+  public void forEachChunked_loadError_stopsAndThrows() {
+
+    List<Object> ids = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L);
+    List<Object> consumed = new CopyOnWriteArrayList<>();
+
+    assertThatThrownBy(() -> ProcessGroup.forEachChunked(ids, 2, 2, executor, chunk -> {
+      if (chunk.contains(3L)) {
+        throw new IllegalStateException("load failed");
+      }
+      return new ArrayList<>(chunk);
+    }, consumed::add, done -> {})).isInstanceOf(IllegalStateException.class).hasMessage("load failed");
+
+    assertThat(consumed).containsExactly(1L, 2L);
+  }
+
+  private static void sleep(int millis) {
+    try {
+      Thread.sleep(Math.max(0, millis));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package io.ebeanservice.elastic.update;
+
+import io.ebean.DocStoreQueueEntry;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UpdateGroupTest {
+
+  @Test
+  public void addEntry_mergesRepeatedIds() {
+
+    UpdateGroup group = new UpdateGroup("order");
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.INDEX, "order", 1L));
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.INDEX, "order", 1L));
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.DELETE, "order", 2L));
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.DELETE, "order", 2L));
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.NESTED, "order", "customer.id", 7L));
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.NESTED, "order", "customer.id", 7L));
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.NESTED, "order", "customer.id", 8L));
+
+    assertThat(group.getIndexIds()).containsExactly(1L);
+    assertThat(group.getDeleteIds()).containsExactly(2L);
+    assertThat(group.getNestedPathIds().get("customer.id").getIds()).containsExactly(7L, 8L);
+  }
+
+  @Test
+  public void getCoveredIds() {
+
+    UpdateGroup group = new UpdateGroup("order");
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.INDEX, "order", 1L));
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.DELETE, "order", "2"));
+    group.addEntry(new DocStoreQueueEntry(DocStoreQueueEntry.Action.NESTED, "order", "customer.id", 3L));
+
+    assertThat(group.getCoveredIds()).containsOnly("1", "2");
+  }
+}
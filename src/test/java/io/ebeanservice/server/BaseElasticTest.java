@@ -4,9 +4,14 @@ package io.ebeanservice.server;
 import io.ebean.DB;
 import io.ebean.plugin.SpiServer;
 import io.ebeaninternal.api.SpiQuery;
+import io.ebeanservice.elastic.querywriter.ChunkedQuery;
+import io.ebeanservice.elastic.querywriter.Collapse;
 import io.ebeanservice.elastic.querywriter.ElasticJsonContext;
+import io.ebeanservice.elastic.querywriter.PagedQuery;
 import io.ebeanservice.elastic.querywriter.ElasticDocQueryContext;
 
+import java.util.List;
+
 public abstract class BaseElasticTest  {
 
   protected static SpiServer server = DB.getDefault().pluginApi();
@@ -16,4 +21,34 @@ public abstract class BaseElasticTest  {
     return ElasticDocQueryContext.asJson(context, query);
   }
 
+  public ChunkedQuery asChunkedJson(SpiQuery<?> query, int inListChunkSize) {
+    ElasticJsonContext context = new ElasticJsonContext(DB.json());
+    return ElasticDocQueryContext.asChunkedJson(context, query, inListChunkSize);
+  }
+
+  public ChunkedQuery asIterateJson(SpiQuery<?> query) {
+    ElasticJsonContext context = new ElasticJsonContext(DB.json());
+    return ElasticDocQueryContext.asIterateJson(context, query, 0);
+  }
+
+  public PagedQuery asPagedJson(SpiQuery<?> query, int trackTotalHits) {
+    ElasticJsonContext context = new ElasticJsonContext(DB.json());
+    return ElasticDocQueryContext.asPagedJson(context, query, trackTotalHits);
+  }
+
+  public PagedQuery asCursorJson(SpiQuery<?> query, List<Object> searchAfter) {
+    ElasticJsonContext context = new ElasticJsonContext(DB.json());
+    return ElasticDocQueryContext.asCursorJson(context, query, 0, searchAfter);
+  }
+
+  public String asCollapseJson(SpiQuery<?> query, Collapse collapse) {
+    ElasticJsonContext context = new ElasticJsonContext(DB.json());
+    return ElasticDocQueryContext.asCollapseJson(context, query, collapse);
+  }
+
+  public String asIdsJson(SpiQuery<?> query, int scrollBatchSize) {
+    ElasticJsonContext context = new ElasticJsonContext(DB.json());
+    return ElasticDocQueryContext.asIdsJson(context, query, scrollBatchSize);
+  }
+
 }
\ No newline at end of file
@@ -1,12 +1,23 @@
 package io.ebeanservice.server;
 
 import io.ebean.DB;
+import io.ebean.Expr;
 import io.ebean.Query;
 import io.ebeaninternal.api.SpiQuery;
+import io.ebeanservice.elastic.querywriter.ChunkedQuery;
+import io.ebeanservice.elastic.querywriter.Collapse;
+import io.ebeanservice.elastic.querywriter.ElasticDocQueryContext;
+import io.ebeanservice.elastic.querywriter.ElasticJsonContext;
+import io.ebeanservice.elastic.querywriter.PagedQuery;
+import io.ebeanservice.elastic.search.PageCursor;
 import org.example.domain.Customer;
+import org.example.domain.Invoice;
 import org.example.domain.Order;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class DefaultOrmQueryElasticTest extends BaseElasticTest {
@@ -80,4 +91,248 @@ public class DefaultOrmQueryElasticTest extends BaseElasticTest {
 
     assertThat(asJson).isEqualTo("{\"track_total_hits\":true,\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.id\":1}}}}}");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void asChunkedJson_idIn() {
+
+    Query<Order> query = DB.find(Order.class)
+        .where().idIn(1, 2, 3, 4, 5)
+        .query();
+
+    ChunkedQuery chunked = asChunkedJson((SpiQuery<Order>)query, 2);
+
+    assertThat(chunked.isChunked()).isTrue();
+    assertThat(chunked.size()).isEqualTo(3);
+    assertThat(chunked.json()).isEqualTo("{\"track_total_hits\":false,\"query\":{\"bool\":{\"filter\":{\"ids\":{\"values\":[1,2,3,4,5]}}}}}");
+    assertThat(chunked.chunk(0)).isEqualTo("{\"track_total_hits\":false,\"size\":2,\"query\":{\"bool\":{\"filter\":{\"ids\":{\"values\":[1,2]}}}}}");
+    assertThat(chunked.chunk(1)).isEqualTo("{\"track_total_hits\":false,\"size\":2,\"query\":{\"bool\":{\"filter\":{\"ids\":{\"values\":[3,4]}}}}}");
+    assertThat(chunked.chunk(2)).isEqualTo("{\"track_total_hits\":false,\"size\":1,\"query\":{\"bool\":{\"filter\":{\"ids\":{\"values\":[5]}}}}}");
+  }
+
+  @Test
+  public void asChunkedJson_idIn_maxRows() {
+
+    Query<Order> query = DB.find(Order.class)
+        .setMaxRows(3)
+        .where().idIn(1, 2, 3, 4, 5)
+        .query();
+
+    ChunkedQuery chunked = asChunkedJson((SpiQuery<Order>)query, 2);
+
+    assertThat(chunked.chunk(0)).isEqualTo("{\"track_total_hits\":false,\"size\":3,\"query\":{\"bool\":{\"filter\":{\"ids\":{\"values\":[1,2]}}}}}");
+    assertThat(chunked.chunk(2)).isEqualTo("{\"track_total_hits\":false,\"size\":3,\"query\":{\"bool\":{\"filter\":{\"ids\":{\"values\":[5]}}}}}");
+  }
+
+  @Test
+  public void asChunkedJson_in_noMaxRows_notChunked() {
+
+    Query<Order> query = DB.find(Order.class)
+        .where().in("customer.id", 1, 2, 3, 4, 5)
+        .query();
+
+    ChunkedQuery chunked = asChunkedJson((SpiQuery<Order>)query, 2);
+    assertThat(chunked.isChunked()).isFalse();
+  }
+
+  @Test
+  public void asChunkedJson_in_maxRows() {
+
+    Query<Order> query = DB.find(Order.class)
+        .setMaxRows(3)
+        .where().in("customer.id", 1, 2, 3, 4, 5)
+        .query();
+
+    ChunkedQuery chunked = asChunkedJson((SpiQuery<Order>)query, 2);
+    assertThat(chunked.size()).isEqualTo(3);
+    assertThat(chunked.chunk(2)).isEqualTo("{\"track_total_hits\":false,\"size\":3,\"query\":{\"bool\":{\"filter\":{\"terms\":{\"customer.id\":[5]}}}}}");
+  }
+
+  @Test
+  public void asChunkedJson_notIn_notChunked() {
+
+    Query<Order> query = DB.find(Order.class)
+        .where().notIn("customer.id", 1, 2, 3, 4, 5)
+        .query();
+
+    ChunkedQuery chunked = asChunkedJson((SpiQuery<Order>)query, 2);
+    assertThat(chunked.isChunked()).isFalse();
+  }
+
+  @Test
+  public void asChunkedJson_orderBy_notChunked() {
+
+    Query<Order> query = DB.find(Order.class)
+        .orderBy("id")
+        .where().in("customer.id", 1, 2, 3, 4, 5)
+        .query();
+
+    ChunkedQuery chunked = asChunkedJson((SpiQuery<Order>)query, 2);
+    assertThat(chunked.isChunked()).isFalse();
+  }
+
+  @Test
+  public void asPagedJson_trackTotalHits() {
+
+    Query<Order> query = DB.find(Order.class)
+        .setMaxRows(10)
+        .where().eq("customer.name", "Rob")
+        .query();
+
+    PagedQuery paged = asPagedJson((SpiQuery<Order>)query, 1000);
+
+    assertThat(paged.json()).isEqualTo("{\"track_total_hits\":1000,\"size\":10,\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+    assertThat(paged.countJson()).isEqualTo("{\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+  }
+
+  @Test
+  public void asIterateJson_docSort() {
+
+    Query<Order> query = DB.find(Order.class)
+        .where().eq("customer.name", "Rob")
+        .query();
+
+    String json = asIterateJson((SpiQuery<Order>)query).json();
+    assertThat(json).isEqualTo("{\"track_total_hits\":true,\"sort\":[\"_doc\"],\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+  }
+
+  @Test
+  public void asIterateJson_orderBy() {
+
+    Query<Order> query = DB.find(Order.class)
+        .orderBy("orderDate")
+        .where().eq("customer.name", "Rob")
+        .query();
+
+    String json = asIterateJson((SpiQuery<Order>)query).json();
+    assertThat(json).isEqualTo("{\"track_total_hits\":true,\"sort\":[{\"orderDate\":{\"order\":\"asc\"}}],\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+  }
+
+  @Test
+  public void asPagedJson_routing_pinnedByEq() {
+
+    Query<Invoice> query = DB.find(Invoice.class)
+        .where().eq("customer.id", 7).eq("reference", "A1")
+        .setMaxRows(10);
+
+    PagedQuery paged = asPagedJson((SpiQuery<Invoice>)query, 0);
+    assertThat(paged.routing()).isEqualTo("7");
+  }
+
+  @Test
+  public void asPagedJson_routing_notEq_notPinned() {
+
+    Query<Invoice> query = DB.find(Invoice.class)
+        .where().not(Expr.eq("customer.id", 7))
+        .setMaxRows(10);
+
+    PagedQuery paged = asPagedJson((SpiQuery<Invoice>)query, 0);
+    assertThat(paged.json()).contains("{\"term\":{\"customer.id\":7}}");
+    assertThat(paged.routing()).isNull();
+  }
+
+  @Test
+  public void asPagedJson_routing_orEq_notPinned() {
+
+    Query<Invoice> query = DB.find(Invoice.class)
+        .where().or(Expr.eq("customer.id", 7), Expr.eq("customer.id", 8))
+        .setMaxRows(10);
+
+    PagedQuery paged = asPagedJson((SpiQuery<Invoice>)query, 0);
+    assertThat(paged.json()).contains("{\"term\":{\"customer.id\":7}}").contains("{\"term\":{\"customer.id\":8}}");
+    assertThat(paged.routing()).isNull();
+  }
+
+  @Test
+  public void asPagedJson_routing_inWithNull_skipsNull() {
+
+    Query<Invoice> query = DB.find(Invoice.class)
+        .where().in("customer.id", 7, null)
+        .setMaxRows(10);
+
+    PagedQuery paged = asPagedJson((SpiQuery<Invoice>)query, 0);
+    assertThat(paged.routing()).isEqualTo("7");
+  }
+
+  @Test
+  public void asCursorJson_searchAfter() throws IOException {
+
+    Query<Order> query = DB.find(Order.class)
+        .setFirstRow(100)
+        .setMaxRows(10)
+        .orderBy("orderDate desc")
+        .where().eq("customer.name", "Rob")
+        .query();
+
+    PagedQuery first = asCursorJson((SpiQuery<Order>)query, null);
+    assertThat(first.json()).isEqualTo("{\"track_total_hits\":false,\"size\":10,\"sort\":[{\"orderDate\":{\"order\":\"desc\"}},{\"_shard_doc\":{\"order\":\"asc\"}}],\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+
+    String cursor = PageCursor.encode("pit42", Arrays.asList(1500000000000L, 42));
+    PageCursor decoded = PageCursor.decode(cursor);
+    assertThat(decoded.pitId()).isEqualTo("pit42");
+    PagedQuery next = asCursorJson((SpiQuery<Order>)query, decoded.searchAfter());
+    assertThat(next.json()).isEqualTo("{\"track_total_hits\":false,\"search_after\":[1500000000000,42],\"size\":10,\"sort\":[{\"orderDate\":{\"order\":\"desc\"}},{\"_shard_doc\":{\"order\":\"asc\"}}],\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+    assertThat(next.pitJson("pit42")).startsWith("{\"pit\":{\"id\":\"pit42\",\"keep_alive\":\"1m\"},\"track_total_hits\":false,\"search_after\":");
+  }
+
+  @Test
+  public void asCollapseJson_innerHits() {
+
+    Query<Order> query = DB.find(Order.class)
+        .setMaxRows(10)
+        .orderBy("orderDate desc")
+        .where().eq("status", Order.Status.NEW)
+        .query();
+
+    String json = asCollapseJson((SpiQuery<Order>)query, Collapse.on("customer.name").innerHits(3));
+    assertThat(json).isEqualTo("{\"track_total_hits\":false,\"size\":10,\"sort\":[{\"orderDate\":{\"order\":\"desc\"}}],\"collapse\":{\"field\":\"customer.name.raw\",\"inner_hits\":{\"name\":\"collapsed\",\"size\":3}},\"query\":{\"bool\":{\"filter\":{\"term\":{\"status\":\"NEW\"}}}}}");
+  }
+
+  @Test
+  public void asIdsJson_noSource() {
+
+    Query<Order> query = DB.find(Order.class)
+        .setMaxRows(10)
+        .where().eq("customer.name", "Rob")
+        .query();
+
+    String json = asIdsJson((SpiQuery<Order>)query, 0);
+    assertThat(json).isEqualTo("{\"track_total_hits\":false,\"size\":10,\"_source\":false,\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+  }
+
+  @Test
+  public void asIdsJson_scroll_batchSizeWithoutMutatingQuery() {
+
+    Query<Order> query = DB.find(Order.class)
+        .where().eq("customer.name", "Rob")
+        .query();
+
+    String json = asIdsJson((SpiQuery<Order>)query, 1000);
+    assertThat(json).isEqualTo("{\"track_total_hits\":true,\"size\":1000,\"_source\":false,\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+    assertThat(query.getMaxRows()).isEqualTo(0);
+  }
+
+  @Test
+  public void asChunkedJson_docValueProjection() {
+
+    Query<Order> query = DB.find(Order.class)
+        .select("status")
+        .where().eq("customer.name", "Rob")
+        .query();
+
+    ElasticJsonContext context = new ElasticJsonContext(DB.json(), 5);
+    ChunkedQuery chunked = ElasticDocQueryContext.asChunkedJson(context, (SpiQuery<Order>)query, 0);
+    assertThat(chunked.json()).isEqualTo("{\"track_total_hits\":false,\"_source\":false,\"docvalue_fields\":[\"status\"],\"query\":{\"bool\":{\"filter\":{\"term\":{\"customer.name.raw\":\"Rob\"}}}}}");
+  }
+
+  @Test
+  public void asChunkedJson_docValueProjection_notForNestedPaths() {
+
+    Query<Order> query = DB.find(Order.class)
+        .select("status, customer.name")
+        .query();
+
+    ElasticJsonContext context = new ElasticJsonContext(DB.json(), 5);
+    ChunkedQuery chunked = ElasticDocQueryContext.asChunkedJson(context, (SpiQuery<Order>)query, 0);
+    assertThat(chunked.json()).startsWith("{\"track_total_hits\":false,\"_source\":{\"includes\":");
+  }
+}
@@ -0,0 +1,36 @@
+package org.example.domain;
+
+import io.ebean.annotation.DocEmbedded;
+import io.ebean.annotation.DocStore;
+import io.ebeanservice.elastic.DocRouting;
+
+import javax.persistence.Entity;
+import javax.persistence.ManyToOne;
+
+@DocStore
+@DocRouting("customer.id")
+@Entity
+public class Invoice extends BasicDomain {
+
+  String reference;
+
+  @DocEmbedded(doc = "id,name")
+  @ManyToOne(optional = false)
+  Customer customer;
+
+  public String getReference() {
+    return reference;
+  }
+
+  public void setReference(String reference) {
+    this.reference = reference;
+  }
+
+  public Customer getCustomer() {
+    return customer;
+  }
+
+  public void setCustomer(Customer customer) {
+    this.customer = customer;
+  }
+}